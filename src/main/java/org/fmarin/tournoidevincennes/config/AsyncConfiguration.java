@@ -37,6 +37,22 @@ public class AsyncConfiguration implements AsyncConfigurer {
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    /**
+     * The executor writing the signups of ProspectResource, so they do not hold servlet threads. It is bounded:
+     * once its queue is full, new signups are rejected with a {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    @Bean(name = "prospectSignupExecutor")
+    public ThreadPoolTaskExecutor prospectSignupExecutor() {
+        log.debug("Creating Prospect Signup Executor");
+        JHipsterProperties.Prospect.Signup properties = jHipsterProperties.getProspect().getSignup();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getPoolSize());
+        executor.setMaxPoolSize(properties.getPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("prospect-signup-");
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
@@ -3,6 +3,9 @@ package org.fmarin.tournoidevincennes.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.web.cors.CorsConfiguration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Properties specific to JHipster.
  *
@@ -31,6 +34,14 @@ public class JHipsterProperties {
 
     private final Ribbon ribbon = new Ribbon();
 
+    private final Mailchimp mailchimp = new Mailchimp();
+
+    private final Prospect prospect = new Prospect();
+
+    private final UserPurge userPurge = new UserPurge();
+
+    private final UserSearch userSearch = new UserSearch();
+
     public Async getAsync() {
         return async;
     }
@@ -67,6 +78,22 @@ public class JHipsterProperties {
         return ribbon;
     }
 
+    public Mailchimp getMailchimp() {
+        return mailchimp;
+    }
+
+    public Prospect getProspect() {
+        return prospect;
+    }
+
+    public UserPurge getUserPurge() {
+        return userPurge;
+    }
+
+    public UserSearch getUserSearch() {
+        return userSearch;
+    }
+
     public static class Async {
 
         private int corePoolSize = 2;
@@ -104,10 +131,32 @@ public class JHipsterProperties {
 
         private final Cache cache = new Cache();
 
+        private final Idempotency idempotency = new Idempotency();
+
+        private final RateLimit rateLimit = new RateLimit();
+
+        private int trustedProxyHops = 0;
+
         public Cache getCache() {
             return cache;
         }
 
+        public Idempotency getIdempotency() {
+            return idempotency;
+        }
+
+        public RateLimit getRateLimit() {
+            return rateLimit;
+        }
+
+        public int getTrustedProxyHops() {
+            return trustedProxyHops;
+        }
+
+        public void setTrustedProxyHops(int trustedProxyHops) {
+            this.trustedProxyHops = trustedProxyHops;
+        }
+
         public static class Cache {
 
             private int timeToLiveInDays = 1461;
@@ -120,6 +169,111 @@ public class JHipsterProperties {
                 this.timeToLiveInDays = timeToLiveInDays;
             }
         }
+
+        public static class Idempotency {
+
+            private long timeToLiveInSeconds = 86400;
+
+            private int maxEntries = 10000;
+
+            private long inFlightTimeoutInSeconds = 5;
+
+            public long getTimeToLiveInSeconds() {
+                return timeToLiveInSeconds;
+            }
+
+            public void setTimeToLiveInSeconds(long timeToLiveInSeconds) {
+                this.timeToLiveInSeconds = timeToLiveInSeconds;
+            }
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public long getInFlightTimeoutInSeconds() {
+                return inFlightTimeoutInSeconds;
+            }
+
+            public void setInFlightTimeoutInSeconds(long inFlightTimeoutInSeconds) {
+                this.inFlightTimeoutInSeconds = inFlightTimeoutInSeconds;
+            }
+        }
+
+        public static class RateLimit {
+
+            private boolean enabled = true;
+
+            private int maxBuckets = 100000;
+
+            private int subnetMultiplier = 8;
+
+            private final List<Limit> limits = new ArrayList<>();
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxBuckets() {
+                return maxBuckets;
+            }
+
+            public void setMaxBuckets(int maxBuckets) {
+                this.maxBuckets = maxBuckets;
+            }
+
+            public int getSubnetMultiplier() {
+                return subnetMultiplier;
+            }
+
+            public void setSubnetMultiplier(int subnetMultiplier) {
+                this.subnetMultiplier = subnetMultiplier;
+            }
+
+            public List<Limit> getLimits() {
+                return limits;
+            }
+
+            public static class Limit {
+
+                private String path;
+
+                private int capacity;
+
+                private int refillPerMinute;
+
+                public String getPath() {
+                    return path;
+                }
+
+                public void setPath(String path) {
+                    this.path = path;
+                }
+
+                public int getCapacity() {
+                    return capacity;
+                }
+
+                public void setCapacity(int capacity) {
+                    this.capacity = capacity;
+                }
+
+                public int getRefillPerMinute() {
+                    return refillPerMinute;
+                }
+
+                public void setRefillPerMinute(int refillPerMinute) {
+                    this.refillPerMinute = refillPerMinute;
+                }
+            }
+        }
     }
 
     public static class Cache {
@@ -170,9 +324,167 @@ public class JHipsterProperties {
 
         private final Authentication authentication = new Authentication();
 
+        private final Password password = new Password();
+
+        private final LoginThrottling loginThrottling = new LoginThrottling();
+
+        private final UserDetailsCache userDetailsCache = new UserDetailsCache();
+
         public Authentication getAuthentication() {
             return authentication;
         }
+
+        public Password getPassword() {
+            return password;
+        }
+
+        public LoginThrottling getLoginThrottling() {
+            return loginThrottling;
+        }
+
+        public UserDetailsCache getUserDetailsCache() {
+            return userDetailsCache;
+        }
+
+        public static class Password {
+
+            private int bcryptCost = 10;
+
+            private int poolSize = 0;
+
+            private int queueCapacity = 100;
+
+            private long timeoutInMillis = 5000;
+
+            public int getBcryptCost() {
+                return bcryptCost;
+            }
+
+            public void setBcryptCost(int bcryptCost) {
+                this.bcryptCost = bcryptCost;
+            }
+
+            public int getPoolSize() {
+                return poolSize;
+            }
+
+            public void setPoolSize(int poolSize) {
+                this.poolSize = poolSize;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public long getTimeoutInMillis() {
+                return timeoutInMillis;
+            }
+
+            public void setTimeoutInMillis(long timeoutInMillis) {
+                this.timeoutInMillis = timeoutInMillis;
+            }
+        }
+
+        public static class LoginThrottling {
+
+            private boolean enabled = true;
+
+            private long windowInSeconds = 900;
+
+            private int maxFailuresPerLogin = 5;
+
+            private int maxFailuresPerIp = 20;
+
+            private long baseDelayInSeconds = 1;
+
+            private long maxDelayInSeconds = 900;
+
+            private int maxEntries = 100000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getWindowInSeconds() {
+                return windowInSeconds;
+            }
+
+            public void setWindowInSeconds(long windowInSeconds) {
+                this.windowInSeconds = windowInSeconds;
+            }
+
+            public int getMaxFailuresPerLogin() {
+                return maxFailuresPerLogin;
+            }
+
+            public void setMaxFailuresPerLogin(int maxFailuresPerLogin) {
+                this.maxFailuresPerLogin = maxFailuresPerLogin;
+            }
+
+            public int getMaxFailuresPerIp() {
+                return maxFailuresPerIp;
+            }
+
+            public void setMaxFailuresPerIp(int maxFailuresPerIp) {
+                this.maxFailuresPerIp = maxFailuresPerIp;
+            }
+
+            public long getBaseDelayInSeconds() {
+                return baseDelayInSeconds;
+            }
+
+            public void setBaseDelayInSeconds(long baseDelayInSeconds) {
+                this.baseDelayInSeconds = baseDelayInSeconds;
+            }
+
+            public long getMaxDelayInSeconds() {
+                return maxDelayInSeconds;
+            }
+
+            public void setMaxDelayInSeconds(long maxDelayInSeconds) {
+                this.maxDelayInSeconds = maxDelayInSeconds;
+            }
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+        }
+
+        public static class UserDetailsCache {
+
+            private int maxEntries = 10000;
+
+            private long timeToLiveInSeconds = 300;
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public long getTimeToLiveInSeconds() {
+                return timeToLiveInSeconds;
+            }
+
+            public void setTimeToLiveInSeconds(long timeToLiveInSeconds) {
+                this.timeToLiveInSeconds = timeToLiveInSeconds;
+            }
+        }
+
         public static class Authentication {
 
             private final Jwt jwt = new Jwt();
@@ -189,6 +501,8 @@ public class JHipsterProperties {
 
                 private long tokenValidityInSecondsForRememberMe = 2592000;
 
+                private int verifiedTokens = 10000;
+
                 public String getSecret() {
                     return secret;
                 }
@@ -212,6 +526,14 @@ public class JHipsterProperties {
                 public void setTokenValidityInSecondsForRememberMe(long tokenValidityInSecondsForRememberMe) {
                     this.tokenValidityInSecondsForRememberMe = tokenValidityInSecondsForRememberMe;
                 }
+
+                public int getVerifiedTokens() {
+                    return verifiedTokens;
+                }
+
+                public void setVerifiedTokens(int verifiedTokens) {
+                    this.verifiedTokens = verifiedTokens;
+                }
             }
         }
     }
@@ -488,4 +810,507 @@ public class JHipsterProperties {
             this.displayOnActiveProfiles = displayOnActiveProfiles;
         }
     }
+
+    public static class Mailchimp {
+
+        private String apiKey;
+
+        private String listId;
+
+        private int connectTimeout = 5000;
+
+        private int readTimeout = 30000;
+
+        private int maxConcurrentCalls = 4;
+
+        private long maxWaitForCall = 1000;
+
+        private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        private final Outbox outbox = new Outbox();
+
+        private final Reconciliation reconciliation = new Reconciliation();
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public String getListId() {
+            return listId;
+        }
+
+        public void setListId(String listId) {
+            this.listId = listId;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public long getMaxWaitForCall() {
+            return maxWaitForCall;
+        }
+
+        public void setMaxWaitForCall(long maxWaitForCall) {
+            this.maxWaitForCall = maxWaitForCall;
+        }
+
+        public CircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        public Outbox getOutbox() {
+            return outbox;
+        }
+
+        public Reconciliation getReconciliation() {
+            return reconciliation;
+        }
+
+        public static class CircuitBreaker {
+
+            private int failureRateThreshold = 50;
+
+            private int slowCallRateThreshold = 80;
+
+            private long slowCallDuration = 10000;
+
+            private int windowSize = 20;
+
+            private int minimumCalls = 10;
+
+            private long openDuration = 30000;
+
+            public int getFailureRateThreshold() {
+                return failureRateThreshold;
+            }
+
+            public void setFailureRateThreshold(int failureRateThreshold) {
+                this.failureRateThreshold = failureRateThreshold;
+            }
+
+            public int getSlowCallRateThreshold() {
+                return slowCallRateThreshold;
+            }
+
+            public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+                this.slowCallRateThreshold = slowCallRateThreshold;
+            }
+
+            public long getSlowCallDuration() {
+                return slowCallDuration;
+            }
+
+            public void setSlowCallDuration(long slowCallDuration) {
+                this.slowCallDuration = slowCallDuration;
+            }
+
+            public int getWindowSize() {
+                return windowSize;
+            }
+
+            public void setWindowSize(int windowSize) {
+                this.windowSize = windowSize;
+            }
+
+            public int getMinimumCalls() {
+                return minimumCalls;
+            }
+
+            public void setMinimumCalls(int minimumCalls) {
+                this.minimumCalls = minimumCalls;
+            }
+
+            public long getOpenDuration() {
+                return openDuration;
+            }
+
+            public void setOpenDuration(long openDuration) {
+                this.openDuration = openDuration;
+            }
+        }
+
+        public static class Outbox {
+
+            private long pollInterval = 5000;
+
+            private int batchSize = 500;
+
+            private boolean batchSubscribe = true;
+
+            private long maxBatchWait = 15000;
+
+            private int concurrency = 4;
+
+            private int maxAttempts = 10;
+
+            private long retryDelay = 30000;
+
+            private long claimLease = 120000;
+
+            public long getPollInterval() {
+                return pollInterval;
+            }
+
+            public void setPollInterval(long pollInterval) {
+                this.pollInterval = pollInterval;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public boolean isBatchSubscribe() {
+                return batchSubscribe;
+            }
+
+            public void setBatchSubscribe(boolean batchSubscribe) {
+                this.batchSubscribe = batchSubscribe;
+            }
+
+            public long getMaxBatchWait() {
+                return maxBatchWait;
+            }
+
+            public void setMaxBatchWait(long maxBatchWait) {
+                this.maxBatchWait = maxBatchWait;
+            }
+
+            public int getConcurrency() {
+                return concurrency;
+            }
+
+            public void setConcurrency(int concurrency) {
+                this.concurrency = concurrency;
+            }
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public long getRetryDelay() {
+                return retryDelay;
+            }
+
+            public void setRetryDelay(long retryDelay) {
+                this.retryDelay = retryDelay;
+            }
+
+            public long getClaimLease() {
+                return claimLease;
+            }
+
+            public void setClaimLease(long claimLease) {
+                this.claimLease = claimLease;
+            }
+        }
+
+        public static class Reconciliation {
+
+            private long pollInterval = 3600000;
+
+            private int pageSize = 1000;
+
+            private long gracePeriod = 600000;
+
+            private long leaseDuration = 3600000;
+
+            public long getPollInterval() {
+                return pollInterval;
+            }
+
+            public void setPollInterval(long pollInterval) {
+                this.pollInterval = pollInterval;
+            }
+
+            public int getPageSize() {
+                return pageSize;
+            }
+
+            public void setPageSize(int pageSize) {
+                this.pageSize = pageSize;
+            }
+
+            public long getGracePeriod() {
+                return gracePeriod;
+            }
+
+            public void setGracePeriod(long gracePeriod) {
+                this.gracePeriod = gracePeriod;
+            }
+
+            public long getLeaseDuration() {
+                return leaseDuration;
+            }
+
+            public void setLeaseDuration(long leaseDuration) {
+                this.leaseDuration = leaseDuration;
+            }
+        }
+    }
+
+    public static class Prospect {
+
+        private final EmailFilter emailFilter = new EmailFilter();
+
+        private final BulkImport bulkImport = new BulkImport();
+
+        private final Export export = new Export();
+
+        private final WriteBehind writeBehind = new WriteBehind();
+
+        private final Stats stats = new Stats();
+
+        private final Signup signup = new Signup();
+
+        public EmailFilter getEmailFilter() {
+            return emailFilter;
+        }
+
+        public BulkImport getBulkImport() {
+            return bulkImport;
+        }
+
+        public Export getExport() {
+            return export;
+        }
+
+        public WriteBehind getWriteBehind() {
+            return writeBehind;
+        }
+
+        public Stats getStats() {
+            return stats;
+        }
+
+        public Signup getSignup() {
+            return signup;
+        }
+
+        public static class EmailFilter {
+
+            private long expectedInsertions = 100000;
+
+            private double falsePositiveRate = 0.01;
+
+            public long getExpectedInsertions() {
+                return expectedInsertions;
+            }
+
+            public void setExpectedInsertions(long expectedInsertions) {
+                this.expectedInsertions = expectedInsertions;
+            }
+
+            public double getFalsePositiveRate() {
+                return falsePositiveRate;
+            }
+
+            public void setFalsePositiveRate(double falsePositiveRate) {
+                this.falsePositiveRate = falsePositiveRate;
+            }
+        }
+
+        public static class BulkImport {
+
+            private int batchSize = 1000;
+
+            private int maxReportedRejections = 100;
+
+            private int maxLineLength = 4096;
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public int getMaxReportedRejections() {
+                return maxReportedRejections;
+            }
+
+            public void setMaxReportedRejections(int maxReportedRejections) {
+                this.maxReportedRejections = maxReportedRejections;
+            }
+
+            public int getMaxLineLength() {
+                return maxLineLength;
+            }
+
+            public void setMaxLineLength(int maxLineLength) {
+                this.maxLineLength = maxLineLength;
+            }
+        }
+
+        public static class Export {
+
+            private int pageSize = 1000;
+
+            public int getPageSize() {
+                return pageSize;
+            }
+
+            public void setPageSize(int pageSize) {
+                this.pageSize = pageSize;
+            }
+        }
+
+        public static class WriteBehind {
+
+            private boolean enabled = false;
+
+            private int queueCapacity = 10000;
+
+            private int batchSize = 500;
+
+            private long maxLingerMs = 5;
+
+            private long offerTimeoutMs = 100;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getMaxLingerMs() {
+                return maxLingerMs;
+            }
+
+            public void setMaxLingerMs(long maxLingerMs) {
+                this.maxLingerMs = maxLingerMs;
+            }
+
+            public long getOfferTimeoutMs() {
+                return offerTimeoutMs;
+            }
+
+            public void setOfferTimeoutMs(long offerTimeoutMs) {
+                this.offerTimeoutMs = offerTimeoutMs;
+            }
+        }
+
+        public static class Stats {
+
+            private long maxAgeInSeconds = 10;
+
+            public long getMaxAgeInSeconds() {
+                return maxAgeInSeconds;
+            }
+
+            public void setMaxAgeInSeconds(long maxAgeInSeconds) {
+                this.maxAgeInSeconds = maxAgeInSeconds;
+            }
+        }
+
+        public static class Signup {
+
+            private int poolSize = 10;
+
+            private int queueCapacity = 1000;
+
+            private long timeoutMs = 5000;
+
+            public int getPoolSize() {
+                return poolSize;
+            }
+
+            public void setPoolSize(int poolSize) {
+                this.poolSize = poolSize;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public long getTimeoutMs() {
+                return timeoutMs;
+            }
+
+            public void setTimeoutMs(long timeoutMs) {
+                this.timeoutMs = timeoutMs;
+            }
+        }
+    }
+
+    public static class UserPurge {
+
+        private int batchSize = 1000;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class UserSearch {
+
+        private int maxUsers = 200000;
+
+        public int getMaxUsers() {
+            return maxUsers;
+        }
+
+        public void setMaxUsers(int maxUsers) {
+            this.maxUsers = maxUsers;
+        }
+    }
 }
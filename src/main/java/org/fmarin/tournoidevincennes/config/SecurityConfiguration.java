@@ -2,10 +2,13 @@ package org.fmarin.tournoidevincennes.config;
 
 import org.fmarin.tournoidevincennes.security.*;
 import org.fmarin.tournoidevincennes.security.jwt.*;
+import org.fmarin.tournoidevincennes.service.UserService;
 
+import com.codahale.metrics.MetricRegistry;
 import org.springframework.beans.factory.BeanInitializationException;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -16,8 +19,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.data.repository.query.SecurityEvaluationContextExtension;
 
 import javax.inject.Inject;
@@ -36,17 +37,27 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Inject
     private TokenProvider tokenProvider;
 
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    // Lazy, as the UserService itself needs the password encoder
+    @Inject
+    @Lazy
+    private UserService userService;
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder() {
+        return new BoundedPasswordEncoder(jHipsterProperties.getSecurity().getPassword(), metricRegistry);
     }
 
     @Inject
     public void configureGlobal(AuthenticationManagerBuilder auth) {
         try {
-            auth
-                .userDetailsService(userDetailsService)
-                    .passwordEncoder(passwordEncoder());
+            auth.authenticationProvider(new RehashingAuthenticationProvider(userDetailsService, passwordEncoder(),
+                userService::upgradePasswordHash));
         } catch (Exception e) {
             throw new BeanInitializationException("Security configuration failed", e);
         }
@@ -87,6 +98,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .antMatchers("/api/account/reset_password/init").permitAll()
             .antMatchers("/api/account/reset_password/finish").permitAll()
             .antMatchers("/api/profile-info").permitAll()
+            .antMatchers(HttpMethod.GET, "/api/prospects/stats").permitAll()
             .antMatchers("/api/**").authenticated()
             .antMatchers("/management/**").hasAuthority(AuthoritiesConstants.ADMIN)
             .antMatchers("/v2/api-docs/**").permitAll()
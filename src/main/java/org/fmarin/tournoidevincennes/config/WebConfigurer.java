@@ -4,6 +4,9 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.servlet.InstrumentedFilter;
 import com.codahale.metrics.servlets.MetricsServlet;
 import org.fmarin.tournoidevincennes.web.filter.CachingHttpHeadersFilter;
+import org.fmarin.tournoidevincennes.web.filter.IdempotencyFilter;
+import org.fmarin.tournoidevincennes.web.filter.ClientIpResolver;
+import org.fmarin.tournoidevincennes.web.filter.RateLimitFilter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +41,9 @@ public class WebConfigurer implements ServletContextInitializer, EmbeddedServlet
     @Inject
     private JHipsterProperties jHipsterProperties;
 
+    @Inject
+    private ClientIpResolver clientIpResolver;
+
     @Autowired(required = false)
     private MetricRegistry metricRegistry;
 
@@ -48,6 +54,10 @@ public class WebConfigurer implements ServletContextInitializer, EmbeddedServlet
         }
         EnumSet<DispatcherType> disps = EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD, DispatcherType.ASYNC);
         initMetrics(servletContext, disps);
+        if (jHipsterProperties.getHttp().getRateLimit().isEnabled()) {
+            initRateLimitFilter(servletContext, disps);
+        }
+        initIdempotencyFilter(servletContext, disps);
         if (env.acceptsProfiles(Constants.SPRING_PROFILE_PRODUCTION)) {
             initCachingHttpHeadersFilter(servletContext, disps);
         }
@@ -114,6 +124,30 @@ public class WebConfigurer implements ServletContextInitializer, EmbeddedServlet
         cachingHttpHeadersFilter.setAsyncSupported(true);
     }
 
+    /**
+     * Initializes the rate limit filter, ahead of the other filters so floods are turned away as cheaply as possible.
+     */
+    private void initRateLimitFilter(ServletContext servletContext, EnumSet<DispatcherType> disps) {
+        log.debug("Registering Rate Limit Filter");
+        FilterRegistration.Dynamic rateLimitFilter = servletContext.addFilter("rateLimitFilter",
+            new RateLimitFilter(jHipsterProperties, clientIpResolver, metricRegistry));
+
+        rateLimitFilter.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/api/*");
+        rateLimitFilter.setAsyncSupported(true);
+    }
+
+    /**
+     * Initializes the idempotency filter.
+     */
+    private void initIdempotencyFilter(ServletContext servletContext, EnumSet<DispatcherType> disps) {
+        log.debug("Registering Idempotency Filter");
+        FilterRegistration.Dynamic idempotencyFilter = servletContext.addFilter("idempotencyFilter",
+            new IdempotencyFilter(jHipsterProperties, clientIpResolver, metricRegistry));
+
+        idempotencyFilter.addMappingForUrlPatterns(disps, true, "/api/*");
+        idempotencyFilter.setAsyncSupported(true);
+    }
+
     /**
      * Initializes Metrics.
      */
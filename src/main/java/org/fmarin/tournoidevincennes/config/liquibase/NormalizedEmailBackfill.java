@@ -0,0 +1,108 @@
+package org.fmarin.tournoidevincennes.config.liquibase;
+
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Liquibase change filling the {@code normalized_email} column of a table from its {@code email} column.
+ * <p>
+ * The normalization is done in Java, see {@link NormalizedEmail}, as SQL cannot convert internationalized domains.
+ * Rows are updated in chunks of {@code chunkSize}, walking the primary key, with a commit after each chunk: only
+ * the rows of the current chunk are ever locked, and an interrupted backfill resumes where it stopped. The
+ * changeSet must not run in a transaction.
+ * </p>
+ */
+public class NormalizedEmailBackfill implements CustomTaskChange {
+
+    private final Logger log = LoggerFactory.getLogger(NormalizedEmailBackfill.class);
+
+    private String tableName;
+
+    private int chunkSize = 1000;
+
+    private long rows;
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public void setChunkSize(String chunkSize) {
+        // Liquibase passes the parameters as strings
+        this.chunkSize = Integer.parseInt(chunkSize);
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        String select = "select id, email from " + tableName + " where id > ? and normalized_email is null order by id";
+        String update = "update " + tableName + " set normalized_email = ? where id = ?";
+        try (PreparedStatement selectStatement = connection.prepareStatement(select);
+             PreparedStatement updateStatement = connection.prepareStatement(update)) {
+            selectStatement.setMaxRows(chunkSize);
+            long lastId = 0;
+            int chunk;
+            do {
+                chunk = 0;
+                selectStatement.setLong(1, lastId);
+                try (ResultSet rs = selectStatement.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong("id");
+                        NormalizedEmail normalizedEmail = NormalizedEmail.of(rs.getString("email"));
+                        updateStatement.setString(1, normalizedEmail != null ? normalizedEmail.getValue() : null);
+                        updateStatement.setLong(2, lastId);
+                        updateStatement.addBatch();
+                        chunk++;
+                    }
+                }
+                if (chunk > 0) {
+                    updateStatement.executeBatch();
+                    if (!connection.getAutoCommit()) {
+                        connection.commit();
+                    }
+                    rows += chunk;
+                    log.debug("Filled the normalized e-mail of {} rows of {}", rows, tableName);
+                }
+            } while (chunk == chunkSize);
+        } catch (SQLException e) {
+            throw new CustomChangeException("Could not fill the normalized e-mails of " + tableName, e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Filled the normalized e-mail of " + rows + " rows of " + tableName;
+    }
+
+    @Override
+    public void setUp() {
+        // Nothing to set up
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+        // No file is read
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        errors.checkRequiredField("tableName", tableName);
+        if (chunkSize <= 0) {
+            errors.addError("chunkSize must be positive");
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,132 @@
+package org.fmarin.tournoidevincennes.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+/**
+ * A Mailchimp subscription which was given up on after too many failed attempts.
+ * <p>
+ * Rows are moved here from the {@link MailchimpOutboxEntry} table by the
+ * {@link org.fmarin.tournoidevincennes.service.MailchimpOutboxDispatcher}, and can be replayed by an administrator
+ * once the cause of the failures is fixed.
+ * </p>
+ */
+@Entity
+@Table(name = "mailchimp_dead_letter")
+public class MailchimpDeadLetter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Size(max = 100)
+    @Column(length = 100, nullable = false)
+    private String email;
+
+    @NotNull
+    @Column(name = "signup_date", nullable = false)
+    private ZonedDateTime signupDate;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Size(max = 255)
+    @Column(name = "last_error")
+    private String lastError;
+
+    @NotNull
+    @Column(name = "failed_date", nullable = false)
+    private ZonedDateTime failedDate = ZonedDateTime.now();
+
+    public MailchimpDeadLetter() {
+    }
+
+    public MailchimpDeadLetter(MailchimpOutboxEntry entry) {
+        this.email = entry.getEmail();
+        this.signupDate = entry.getSignupDate();
+        this.attempts = entry.getAttempts();
+        this.lastError = entry.getLastError();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public ZonedDateTime getSignupDate() {
+        return signupDate;
+    }
+
+    public void setSignupDate(ZonedDateTime signupDate) {
+        this.signupDate = signupDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public ZonedDateTime getFailedDate() {
+        return failedDate;
+    }
+
+    public void setFailedDate(ZonedDateTime failedDate) {
+        this.failedDate = failedDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MailchimpDeadLetter deadLetter = (MailchimpDeadLetter) o;
+        return id != null && id.equals(deadLetter.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id == null ? 0 : id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "MailchimpDeadLetter{" +
+            "id=" + id +
+            ", email='" + email + "'" +
+            ", attempts=" + attempts +
+            ", lastError='" + lastError + "'" +
+            ", failedDate=" + failedDate +
+            '}';
+    }
+}
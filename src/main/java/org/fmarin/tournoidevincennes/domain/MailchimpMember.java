@@ -0,0 +1,102 @@
+package org.fmarin.tournoidevincennes.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+/**
+ * A member of the Mailchimp list, as last read by the
+ * {@link org.fmarin.tournoidevincennes.service.MailchimpReconciliationService}.
+ * <p>
+ * This is a staging table: it only holds the members changed since the last reconciliation, while the next one
+ * runs.
+ * </p>
+ */
+@Entity
+@Table(name = "mailchimp_member")
+public class MailchimpMember implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String SUBSCRIBED = "subscribed";
+
+    // The normalized e-mail, see NormalizedEmail
+    @Id
+    @NotNull
+    @Size(max = 100)
+    @Column(length = 100)
+    private String email;
+
+    @NotNull
+    @Size(max = 20)
+    @Column(length = 20, nullable = false)
+    private String status;
+
+    @Column(name = "last_changed")
+    private ZonedDateTime lastChanged;
+
+    public MailchimpMember() {
+    }
+
+    public MailchimpMember(String email, String status, ZonedDateTime lastChanged) {
+        this.email = email;
+        this.status = status;
+        this.lastChanged = lastChanged;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public boolean isSubscribed() {
+        return SUBSCRIBED.equals(status);
+    }
+
+    public ZonedDateTime getLastChanged() {
+        return lastChanged;
+    }
+
+    public void setLastChanged(ZonedDateTime lastChanged) {
+        this.lastChanged = lastChanged;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MailchimpMember member = (MailchimpMember) o;
+        return email != null && email.equals(member.email);
+    }
+
+    @Override
+    public int hashCode() {
+        return email == null ? 0 : email.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "MailchimpMember{" +
+            "email='" + email + "'" +
+            ", status='" + status + "'" +
+            ", lastChanged=" + lastChanged +
+            '}';
+    }
+}
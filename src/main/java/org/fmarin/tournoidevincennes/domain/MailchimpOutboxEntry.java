@@ -0,0 +1,146 @@
+package org.fmarin.tournoidevincennes.domain;
+
+import org.fmarin.tournoidevincennes.domain.enumeration.OutboxStatus;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+/**
+ * A Mailchimp subscription waiting to be pushed to the list.
+ * <p>
+ * Rows are written in the same transaction as the {@link Prospect} they belong to, and drained
+ * asynchronously by the {@link org.fmarin.tournoidevincennes.service.MailchimpOutboxDispatcher}.
+ * </p>
+ */
+@Entity
+@Table(name = "mailchimp_outbox")
+public class MailchimpOutboxEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Size(max = 100)
+    @Column(length = 100, nullable = false)
+    private String email;
+
+    @NotNull
+    @Column(name = "signup_date", nullable = false)
+    private ZonedDateTime signupDate;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10, nullable = false)
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @NotNull
+    @Column(name = "next_attempt_date", nullable = false)
+    private ZonedDateTime nextAttemptDate = ZonedDateTime.now();
+
+    @Size(max = 255)
+    @Column(name = "last_error")
+    private String lastError;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public MailchimpOutboxEntry email(String email) {
+        this.email = email;
+        return this;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public ZonedDateTime getSignupDate() {
+        return signupDate;
+    }
+
+    public MailchimpOutboxEntry signupDate(ZonedDateTime signupDate) {
+        this.signupDate = signupDate;
+        return this;
+    }
+
+    public void setSignupDate(ZonedDateTime signupDate) {
+        this.signupDate = signupDate;
+    }
+
+    public OutboxStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OutboxStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public ZonedDateTime getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(ZonedDateTime nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MailchimpOutboxEntry entry = (MailchimpOutboxEntry) o;
+        return id != null && id.equals(entry.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id == null ? 0 : id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "MailchimpOutboxEntry{" +
+            "id=" + id +
+            ", email='" + email + "'" +
+            ", status=" + status +
+            ", attempts=" + attempts +
+            ", nextAttemptDate=" + nextAttemptDate +
+            '}';
+    }
+}
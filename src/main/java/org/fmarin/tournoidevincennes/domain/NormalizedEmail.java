@@ -0,0 +1,84 @@
+package org.fmarin.tournoidevincennes.domain;
+
+import java.io.Serializable;
+import java.net.IDN;
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * The normalized form of an e-mail address, which is what tells two registrations apart.
+ * <p>
+ * The address is trimmed, put in Unicode NFC form and lower-cased, and its domain is converted to its ASCII
+ * (punycode) form, without a trailing dot. Provider specific rules, like the dots Gmail ignores, are not applied:
+ * they would merge addresses that other providers deliver to different people. The address as typed is kept aside,
+ * as that is where mail is sent.
+ * </p>
+ */
+public final class NormalizedEmail implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String value;
+
+    private NormalizedEmail(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @param email an e-mail address, as typed
+     * @return its normalized form, or null if the address is null
+     */
+    public static NormalizedEmail of(String email) {
+        if (email == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(email.trim(), Normalizer.Form.NFC);
+        int at = normalized.lastIndexOf('@');
+        if (at < 0) {
+            return new NormalizedEmail(normalized.toLowerCase(Locale.ROOT));
+        }
+        String localPart = normalized.substring(0, at).toLowerCase(Locale.ROOT);
+        String domain = normalized.substring(at + 1);
+        while (domain.endsWith(".")) {
+            domain = domain.substring(0, domain.length() - 1);
+        }
+        try {
+            domain = IDN.toASCII(domain, IDN.ALLOW_UNASSIGNED);
+        } catch (IllegalArgumentException e) {
+            // Not a valid internationalized domain, it is only lower-cased
+        }
+        return new NormalizedEmail(localPart + '@' + domain.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param value a value which is already normalized, as read from the database
+     */
+    public static NormalizedEmail ofNormalized(String value) {
+        return value != null ? new NormalizedEmail(value) : null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return value.equals(((NormalizedEmail) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -1,5 +1,8 @@
 package org.fmarin.tournoidevincennes.domain;
 
+import org.fmarin.tournoidevincennes.domain.util.NormalizedEmailConverter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.validator.constraints.Email;
@@ -26,9 +29,14 @@ public class Prospect extends AbstractAuditingEntity implements Serializable {
     @NotNull
     @Email
     @Size(max = 100)
-    @Column(length = 100, unique = true, nullable = false)
+    @Column(length = 100, nullable = false)
     private String email;
 
+    @JsonIgnore
+    @Convert(converter = NormalizedEmailConverter.class)
+    @Column(name = "normalized_email", nullable = false, unique = true)
+    private NormalizedEmail normalizedEmail;
+
     public Long getId() {
         return id;
     }
@@ -42,11 +50,16 @@ public class Prospect extends AbstractAuditingEntity implements Serializable {
     }
 
     public Prospect email(String email) {
-        this.email = email;
+        setEmail(email);
         return this;
     }
 
     public void setEmail(String email) {
         this.email = email;
+        this.normalizedEmail = NormalizedEmail.of(email);
+    }
+
+    public NormalizedEmail getNormalizedEmail() {
+        return normalizedEmail;
     }
 }
@@ -0,0 +1,84 @@
+package org.fmarin.tournoidevincennes.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+/**
+ * Where a reconciliation job stopped, so the next run only looks at what changed since.
+ * <p>
+ * The lease end also makes sure a single node runs the job at a time.
+ * </p>
+ */
+@Entity
+@Table(name = "reconciliation_watermark")
+public class ReconciliationWatermark implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String MAILCHIMP = "mailchimp";
+
+    @Id
+    @NotNull
+    @Size(max = 50)
+    @Column(length = 50)
+    private String name;
+
+    @Column(name = "watermark")
+    private ZonedDateTime watermark;
+
+    @Column(name = "lease_end")
+    private ZonedDateTime leaseEnd;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public ZonedDateTime getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(ZonedDateTime watermark) {
+        this.watermark = watermark;
+    }
+
+    public ZonedDateTime getLeaseEnd() {
+        return leaseEnd;
+    }
+
+    public void setLeaseEnd(ZonedDateTime leaseEnd) {
+        this.leaseEnd = leaseEnd;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ReconciliationWatermark other = (ReconciliationWatermark) o;
+        return name != null && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name == null ? 0 : name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ReconciliationWatermark{" +
+            "name='" + name + "'" +
+            ", watermark=" + watermark +
+            ", leaseEnd=" + leaseEnd +
+            '}';
+    }
+}
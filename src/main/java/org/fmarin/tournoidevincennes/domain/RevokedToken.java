@@ -0,0 +1,79 @@
+package org.fmarin.tournoidevincennes.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+/**
+ * A JWT token revoked before it expired, by its id (the {@code jti} claim).
+ * <p>
+ * It is kept until the token expires, as the token is refused anyway past that.
+ * </p>
+ */
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @NotNull
+    @Size(max = 36)
+    @Column(length = 36)
+    private String jti;
+
+    @NotNull
+    @Column(name = "expires_at", nullable = false)
+    private ZonedDateTime expiresAt;
+
+    public RevokedToken() {
+    }
+
+    public RevokedToken(String jti, ZonedDateTime expiresAt) {
+        this.jti = jti;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getJti() {
+        return jti;
+    }
+
+    public void setJti(String jti) {
+        this.jti = jti;
+    }
+
+    public ZonedDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(ZonedDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RevokedToken other = (RevokedToken) o;
+        return jti != null && jti.equals(other.jti);
+    }
+
+    @Override
+    public int hashCode() {
+        return jti == null ? 0 : jti.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "RevokedToken{" +
+            "jti='" + jti + "'" +
+            ", expiresAt=" + expiresAt +
+            '}';
+    }
+}
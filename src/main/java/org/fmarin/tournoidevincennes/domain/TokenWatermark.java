@@ -0,0 +1,76 @@
+package org.fmarin.tournoidevincennes.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+/**
+ * The time before which all the JWT tokens of a user are revoked, for instance when their password changed.
+ */
+@Entity
+@Table(name = "token_watermark")
+public class TokenWatermark implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @NotNull
+    @Size(max = 50)
+    @Column(length = 50)
+    private String login;
+
+    @NotNull
+    @Column(name = "issued_before", nullable = false)
+    private ZonedDateTime issuedBefore;
+
+    public TokenWatermark() {
+    }
+
+    public TokenWatermark(String login, ZonedDateTime issuedBefore) {
+        this.login = login;
+        this.issuedBefore = issuedBefore;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public ZonedDateTime getIssuedBefore() {
+        return issuedBefore;
+    }
+
+    public void setIssuedBefore(ZonedDateTime issuedBefore) {
+        this.issuedBefore = issuedBefore;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TokenWatermark other = (TokenWatermark) o;
+        return login != null && login.equals(other.login);
+    }
+
+    @Override
+    public int hashCode() {
+        return login == null ? 0 : login.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TokenWatermark{" +
+            "login='" + login + "'" +
+            ", issuedBefore=" + issuedBefore +
+            '}';
+    }
+}
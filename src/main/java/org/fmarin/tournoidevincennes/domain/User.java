@@ -1,6 +1,7 @@
 package org.fmarin.tournoidevincennes.domain;
 
 import org.fmarin.tournoidevincennes.config.Constants;
+import org.fmarin.tournoidevincennes.domain.util.NormalizedEmailConverter;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.hibernate.annotations.Cache;
@@ -56,6 +57,11 @@ public class User extends AbstractAuditingEntity implements Serializable {
     @Column(length = 100, unique = true)
     private String email;
 
+    @JsonIgnore
+    @Convert(converter = NormalizedEmailConverter.class)
+    @Column(name = "normalized_email")
+    private NormalizedEmail normalizedEmail;
+
     @NotNull
     @Column(nullable = false)
     private boolean activated = false;
@@ -132,6 +138,11 @@ public class User extends AbstractAuditingEntity implements Serializable {
 
     public void setEmail(String email) {
         this.email = email;
+        this.normalizedEmail = NormalizedEmail.of(email);
+    }
+
+    public NormalizedEmail getNormalizedEmail() {
+        return normalizedEmail;
     }
 
     public boolean getActivated() {
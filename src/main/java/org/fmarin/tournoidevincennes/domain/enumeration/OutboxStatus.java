@@ -0,0 +1,8 @@
+package org.fmarin.tournoidevincennes.domain.enumeration;
+
+/**
+ * The OutboxStatus enumeration.
+ */
+public enum OutboxStatus {
+    PENDING, SENT
+}
@@ -0,0 +1,23 @@
+package org.fmarin.tournoidevincennes.domain.util;
+
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Persists a {@link NormalizedEmail} as its value.
+ */
+@Converter
+public class NormalizedEmailConverter implements AttributeConverter<NormalizedEmail, String> {
+
+    @Override
+    public String convertToDatabaseColumn(NormalizedEmail attribute) {
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    @Override
+    public NormalizedEmail convertToEntityAttribute(String dbData) {
+        return NormalizedEmail.ofNormalized(dbData);
+    }
+}
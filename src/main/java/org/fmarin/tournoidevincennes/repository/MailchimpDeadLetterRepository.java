@@ -0,0 +1,26 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpDeadLetter;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the MailchimpDeadLetter entity.
+ */
+public interface MailchimpDeadLetterRepository extends JpaRepository<MailchimpDeadLetter, Long> {
+
+    List<MailchimpDeadLetter> findAllByOrderById(Pageable pageable);
+
+    List<MailchimpDeadLetter> findAllByIdIn(Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from MailchimpDeadLetter deadLetter where deadLetter.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,11 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpMember;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Spring Data JPA repository for the MailchimpMember entity.
+ */
+public interface MailchimpMemberRepository extends JpaRepository<MailchimpMember, String>, MailchimpMemberRepositoryCustom {
+}
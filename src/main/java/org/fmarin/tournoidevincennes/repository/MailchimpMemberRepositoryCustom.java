@@ -0,0 +1,54 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpMember;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Custom queries for the MailchimpMember entity, which Spring Data JPA cannot derive.
+ */
+public interface MailchimpMemberRepositoryCustom {
+
+    /**
+     * Insert the members, or update them if they are already staged, with a single JDBC batch.
+     *
+     * @param members the members, with distinct e-mails
+     */
+    void upsertAll(List<MailchimpMember> members);
+
+    /**
+     * Remove all the staged members, without logging each row like a delete would.
+     */
+    void clear();
+
+    /**
+     * Read the prospects to reconcile and the staged members side by side, both ordered by normalized e-mail, the
+     * way {@link String#compareTo} orders them, whatever the collation of the database.
+     * <p>
+     * The prospects to reconcile are the ones created in the given period, except those still waiting in the
+     * Mailchimp outbox or in its dead letters, plus the ones matching a staged member. Only their e-mail and
+     * creation date are read.
+     * </p>
+     * <p>
+     * Both sides are read with database cursors, so memory use does not depend on their size. The iterators are
+     * only valid while the merge function runs, in the same transaction, which it can write in. PostgreSQL only
+     * streams cursors within a transaction, so if the connection they are read on is not part of one, they get one
+     * of their own, ended once the merge function returns.
+     * </p>
+     *
+     * @param createdFrom the start of the period, inclusive
+     * @param createdTo the end of the period, exclusive
+     * @param fetchSize the number of rows read at once on each side
+     * @param merge the function walking both sides
+     * @return the result of the merge function
+     */
+    @Transactional
+    <T> T mergeWithProspects(ZonedDateTime createdFrom, ZonedDateTime createdTo, int fetchSize,
+                             BiFunction<Iterator<Prospect>, Iterator<MailchimpMember>, T> merge);
+}
@@ -0,0 +1,187 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpMember;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+/**
+ * Implementation of the custom MailchimpMember queries, with plain JDBC as they use database specific SQL and
+ * cursors.
+ */
+public class MailchimpMemberRepositoryImpl implements MailchimpMemberRepositoryCustom {
+
+    static final String POSTGRESQL_UPSERT =
+        "insert into mailchimp_member (email, status, last_changed) values (?, ?, ?) " +
+            "on conflict (email) do update set status = excluded.status, last_changed = excluded.last_changed";
+
+    // H2 only, the other databases of the application being PostgreSQL
+    static final String DEFAULT_UPSERT =
+        "merge into mailchimp_member (email, status, last_changed) key (email) values (?, ?, ?)";
+
+    // Both parts are disjoint, so there is no need for a union removing duplicates
+    private static final String SELECT_PROSPECTS =
+        "select email, normalized_email, created_date from (" +
+            "select p.email, p.normalized_email, p.created_date " +
+            "from mailchimp_member m join prospect p on p.normalized_email = m.email " +
+            "union all " +
+            "select p.email, p.normalized_email, p.created_date from prospect p " +
+            "where p.created_date >= ? and p.created_date < ? " +
+            "and not exists (select 1 from mailchimp_member m where m.email = p.normalized_email) " +
+            "and not exists (select 1 from mailchimp_outbox o where o.email = p.email and o.status = 'PENDING') " +
+            "and not exists (select 1 from mailchimp_dead_letter d where d.email = p.email)" +
+            ") candidates order by normalized_email";
+
+    private static final String TRUNCATE = "truncate table mailchimp_member";
+
+    private static final String SELECT_MEMBERS = "select email, status, last_changed from mailchimp_member order by email";
+
+    // PostgreSQL sorts with the locale of the database by default, the "C" collation sorts like String.compareTo
+    private static final String POSTGRESQL_ORDER = " collate \"C\"";
+
+    private static final RowMapper<Prospect> PROSPECT_MAPPER = (rs, rowNum) -> {
+        Prospect prospect = new Prospect();
+        prospect.setEmail(rs.getString("email"));
+        prospect.setCreatedDate(toZonedDateTime(rs.getTimestamp("created_date")));
+        return prospect;
+    };
+
+    private static final RowMapper<MailchimpMember> MEMBER_MAPPER = (rs, rowNum) ->
+        new MailchimpMember(rs.getString("email"), rs.getString("status"),
+            toZonedDateTime(rs.getTimestamp("last_changed")));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean postgresql;
+
+    @Autowired
+    public MailchimpMemberRepositoryImpl(DataSource dataSource) throws MetaDataAccessException {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        String databaseProductName = (String) JdbcUtils.extractDatabaseMetaData(dataSource, "getDatabaseProductName");
+        this.postgresql = "PostgreSQL".equals(databaseProductName);
+    }
+
+    @Override
+    public void upsertAll(List<MailchimpMember> members) {
+        jdbcTemplate.batchUpdate(postgresql ? POSTGRESQL_UPSERT : DEFAULT_UPSERT, new BatchPreparedStatementSetter() {
+
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                MailchimpMember member = members.get(i);
+                statement.setString(1, member.getEmail());
+                statement.setString(2, member.getStatus());
+                statement.setTimestamp(3, member.getLastChanged() != null ?
+                    Timestamp.from(member.getLastChanged().toInstant()) : null);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return members.size();
+            }
+        });
+    }
+
+    @Override
+    public void clear() {
+        jdbcTemplate.execute(TRUNCATE);
+    }
+
+    @Override
+    public <T> T mergeWithProspects(ZonedDateTime createdFrom, ZonedDateTime createdTo, int fetchSize,
+                                    BiFunction<Iterator<Prospect>, Iterator<MailchimpMember>, T> merge) {
+        String order = postgresql ? POSTGRESQL_ORDER : "";
+        return jdbcTemplate.execute((ConnectionCallback<T>) connection -> {
+            // PostgreSQL ignores the fetch size in auto-commit mode, and reads whole result sets in memory: without
+            // a surrounding transaction, the cursors get one of their own
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement prospects = connection.prepareStatement(SELECT_PROSPECTS + order);
+                 PreparedStatement members = connection.prepareStatement(SELECT_MEMBERS + order)) {
+                prospects.setFetchSize(fetchSize);
+                prospects.setTimestamp(1, Timestamp.from(createdFrom.toInstant()));
+                prospects.setTimestamp(2, Timestamp.from(createdTo.toInstant()));
+                members.setFetchSize(fetchSize);
+                try (ResultSet prospectRows = prospects.executeQuery();
+                     ResultSet memberRows = members.executeQuery()) {
+                    return merge.apply(new ResultSetIterator<>(prospectRows, PROSPECT_MAPPER, SELECT_PROSPECTS),
+                        new ResultSetIterator<>(memberRows, MEMBER_MAPPER, SELECT_MEMBERS));
+                }
+            } finally {
+                if (autoCommit) {
+                    // Only read on this connection, so ending its transaction either way loses nothing
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    private static ZonedDateTime toZonedDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant().atZone(ZoneId.systemDefault()) : null;
+    }
+
+    private static final class ResultSetIterator<T> implements Iterator<T> {
+
+        private final ResultSet resultSet;
+
+        private final RowMapper<T> rowMapper;
+
+        private final String sql;
+
+        private int rowNum;
+
+        private Boolean hasNext;
+
+        ResultSetIterator(ResultSet resultSet, RowMapper<T> rowMapper, String sql) {
+            this.resultSet = resultSet;
+            this.rowMapper = rowMapper;
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                try {
+                    hasNext = resultSet.next();
+                } catch (SQLException e) {
+                    throw new UncategorizedSQLException("Reading the next row", sql, e);
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            try {
+                return rowMapper.mapRow(resultSet, rowNum++);
+            } catch (SQLException e) {
+                throw new UncategorizedSQLException("Reading a row", sql, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.domain.enumeration.OutboxStatus;
+
+import java.time.ZonedDateTime;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the MailchimpOutboxEntry entity.
+ */
+public interface MailchimpOutboxRepository extends JpaRepository<MailchimpOutboxEntry, Long>, MailchimpOutboxRepositoryCustom {
+
+    List<MailchimpOutboxEntry> findAllByStatusAndNextAttemptDateBeforeOrderById(OutboxStatus status, ZonedDateTime dateTime,
+                                                                                Pageable pageable);
+
+    long countByStatus(OutboxStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("update MailchimpOutboxEntry entry set entry.status = 'SENT', entry.lastError = null where entry.id in :ids")
+    int markAsSent(@Param("ids") Collection<Long> ids);
+}
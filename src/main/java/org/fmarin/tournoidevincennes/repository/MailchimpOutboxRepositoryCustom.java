@@ -0,0 +1,37 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Custom queries for the MailchimpOutboxEntry entity, which Spring Data JPA cannot derive.
+ */
+public interface MailchimpOutboxRepositoryCustom {
+
+    /**
+     * Insert the entries with a single JDBC batch, for bulk imports where saving them one by one is too slow.
+     *
+     * @param entries the new entries to insert, their ids are not set
+     */
+    void insertAll(List<MailchimpOutboxEntry> entries);
+
+    /**
+     * Claim the pending entries which are due, so no other node picks them up while they are being sent.
+     * <p>
+     * The entries are locked with {@code SELECT ... FOR UPDATE SKIP LOCKED}, so nodes claiming at the same time get
+     * different entries, and their next attempt date is pushed to {@code leaseEnd} before the lock is released. If
+     * the node dies before sending them, they are due again once the lease ends.
+     * </p>
+     *
+     * @param now the entries due before this date are claimed
+     * @param limit the maximum number of entries to claim, the oldest first
+     * @param leaseEnd the date until which the claimed entries are left alone by the other nodes
+     * @return the claimed entries, with their next attempt date as it was before the claim
+     */
+    @Transactional
+    List<MailchimpOutboxEntry> claimDue(ZonedDateTime now, int limit, ZonedDateTime leaseEnd);
+}
@@ -0,0 +1,112 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.domain.enumeration.OutboxStatus;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the custom MailchimpOutboxEntry queries, with plain JDBC so inserts can be batched and rows
+ * can be locked.
+ */
+public class MailchimpOutboxRepositoryImpl implements MailchimpOutboxRepositoryCustom {
+
+    // Hibernate takes the ids from hibernate_sequence on PostgreSQL, not from the column default
+    private static final String POSTGRESQL_INSERT =
+        "insert into mailchimp_outbox (id, email, signup_date, status, attempts, next_attempt_date) " +
+            "values (nextval('hibernate_sequence'), ?, ?, ?, ?, ?)";
+
+    private static final String DEFAULT_INSERT =
+        "insert into mailchimp_outbox (email, signup_date, status, attempts, next_attempt_date) " +
+            "values (?, ?, ?, ?, ?)";
+
+    private static final String SELECT_DUE =
+        "select id, email, signup_date, status, attempts, next_attempt_date, last_error from mailchimp_outbox " +
+            "where status = ? and next_attempt_date <= ? order by id limit ?";
+
+    // Rows locked by another node are skipped instead of waited for
+    private static final String POSTGRESQL_SELECT_DUE = SELECT_DUE + " for update skip locked";
+
+    private static final String UPDATE_NEXT_ATTEMPT_DATE =
+        "update mailchimp_outbox set next_attempt_date = :nextAttemptDate where id in (:ids)";
+
+    private static final RowMapper<MailchimpOutboxEntry> ENTRY_MAPPER = (rs, rowNum) -> {
+        MailchimpOutboxEntry entry = new MailchimpOutboxEntry()
+            .email(rs.getString("email"))
+            .signupDate(toZonedDateTime(rs.getTimestamp("signup_date")));
+        entry.setId(rs.getLong("id"));
+        entry.setStatus(OutboxStatus.valueOf(rs.getString("status")));
+        entry.setAttempts(rs.getInt("attempts"));
+        entry.setNextAttemptDate(toZonedDateTime(rs.getTimestamp("next_attempt_date")));
+        entry.setLastError(rs.getString("last_error"));
+        return entry;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final boolean postgresql;
+
+    @Autowired
+    public MailchimpOutboxRepositoryImpl(DataSource dataSource) throws MetaDataAccessException {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        String databaseProductName = (String) JdbcUtils.extractDatabaseMetaData(dataSource, "getDatabaseProductName");
+        this.postgresql = "PostgreSQL".equals(databaseProductName);
+    }
+
+    @Override
+    public void insertAll(List<MailchimpOutboxEntry> entries) {
+        jdbcTemplate.batchUpdate(postgresql ? POSTGRESQL_INSERT : DEFAULT_INSERT, new BatchPreparedStatementSetter() {
+
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                MailchimpOutboxEntry entry = entries.get(i);
+                statement.setString(1, entry.getEmail());
+                statement.setTimestamp(2, Timestamp.from(entry.getSignupDate().toInstant()));
+                statement.setString(3, entry.getStatus().name());
+                statement.setInt(4, entry.getAttempts());
+                statement.setTimestamp(5, Timestamp.from(entry.getNextAttemptDate().toInstant()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    @Override
+    public List<MailchimpOutboxEntry> claimDue(ZonedDateTime now, int limit, ZonedDateTime leaseEnd) {
+        // Without SKIP LOCKED, the rows are not locked at all, which is only safe with a single node
+        List<MailchimpOutboxEntry> entries = jdbcTemplate.query(postgresql ? POSTGRESQL_SELECT_DUE : SELECT_DUE,
+            ENTRY_MAPPER, OutboxStatus.PENDING.name(), Timestamp.from(now.toInstant()), limit);
+        if (!entries.isEmpty()) {
+            namedParameterJdbcTemplate.update(UPDATE_NEXT_ATTEMPT_DATE, new MapSqlParameterSource()
+                .addValue("nextAttemptDate", Timestamp.from(leaseEnd.toInstant()))
+                .addValue("ids", entries.stream().map(MailchimpOutboxEntry::getId).collect(Collectors.toList())));
+        }
+        return entries;
+    }
+
+    private static ZonedDateTime toZonedDateTime(Timestamp timestamp) {
+        return timestamp.toInstant().atZone(ZoneId.systemDefault());
+    }
+}
@@ -1,16 +1,61 @@
 package org.fmarin.tournoidevincennes.repository;
 
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
 import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.service.dto.ProspectExportDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * Spring Data JPA repository for the Prospect entity.
  */
 @SuppressWarnings("unused")
-public interface ProspectRepository extends JpaRepository<Prospect,Long> {
+public interface ProspectRepository extends JpaRepository<Prospect,Long>, ProspectRepositoryCustom {
+
+    /**
+     * Prospects are looked up by their normalized e-mail, which is indexed, so variants of a registered e-mail are
+     * found too.
+     */
+    default Optional<Prospect> findOneByEmail(String email) {
+        return findOneByNormalizedEmail(NormalizedEmail.of(email));
+    }
+
+    Optional<Prospect> findOneByNormalizedEmail(NormalizedEmail normalizedEmail);
+
+    default boolean existsByEmail(String email) {
+        return existsByNormalizedEmail(NormalizedEmail.of(email));
+    }
+
+    @Query("select case when count(prospect) > 0 then true else false end from Prospect prospect " +
+        "where prospect.normalizedEmail = :normalizedEmail")
+    boolean existsByNormalizedEmail(@Param("normalizedEmail") NormalizedEmail normalizedEmail);
+
+    /**
+     * Must be called within a transaction, and the stream closed once consumed.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select prospect.normalizedEmail from Prospect prospect")
+    Stream<NormalizedEmail> streamAllNormalizedEmails();
 
-    Optional<Prospect> findOneByEmail(String email);
+    /**
+     * Keyset pagination over the prospects: each page starts after the last id of the previous one, so every page
+     * is an index range scan, however deep in the table it is. The prospects are not loaded as entities, so they
+     * neither fill the persistence context nor the second level cache.
+     */
+    @Query("select new org.fmarin.tournoidevincennes.service.dto.ProspectExportDTO(prospect.id, prospect.email, prospect.createdDate) " +
+        "from Prospect prospect where prospect.id > :id and prospect.createdDate >= :createdDate order by prospect.id")
+    List<ProspectExportDTO> findExportPageAfter(@Param("id") long id, @Param("createdDate") ZonedDateTime createdDate,
+                                                Pageable pageable);
 
 }
@@ -0,0 +1,36 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.Prospect;
+
+import java.util.List;
+
+/**
+ * Custom queries for the Prospect entity, which Spring Data JPA cannot derive.
+ */
+public interface ProspectRepositoryCustom {
+
+    /**
+     * Insert the prospect unless its e-mail is already registered, in a single round trip.
+     * <p>
+     * This relies on the unique index on {@code prospect.normalized_email}, so concurrent signups with the same
+     * e-mail, or variants of it, never insert twice, and never fail either.
+     * </p>
+     *
+     * @param prospect the prospect to insert, its id is set when it was inserted
+     * @return true if the prospect was inserted, false if its e-mail, or a variant of it, was already registered
+     */
+    boolean insertIfAbsent(Prospect prospect);
+
+    /**
+     * Insert the prospects whose e-mail is not registered yet, with a single JDBC batch.
+     * <p>
+     * Must be called within a transaction, so a batch failing on a concurrent duplicate is rolled back to a
+     * savepoint before its prospects are inserted one by one.
+     * </p>
+     *
+     * @param prospects the prospects to insert, with distinct normalized e-mails, their ids are set when they were
+     * inserted
+     * @return for each prospect, in the same order, true if it was inserted, false if its e-mail was already registered
+     */
+    boolean[] insertAllIfAbsent(List<Prospect> prospects);
+}
@@ -0,0 +1,201 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.Prospect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementation of the custom Prospect queries, with plain JDBC as they use database specific SQL.
+ */
+public class ProspectRepositoryImpl implements ProspectRepositoryCustom {
+
+    private final Logger log = LoggerFactory.getLogger(ProspectRepositoryImpl.class);
+
+    private static final String POSTGRESQL_INSERT_IF_ABSENT =
+        "insert into prospect (id, email, normalized_email, created_by, created_date, last_modified_by, last_modified_date) " +
+            "values (nextval('hibernate_sequence'), ?, ?, ?, ?, ?, ?) " +
+            "on conflict (normalized_email) do nothing returning id";
+
+    private static final String POSTGRESQL_ALLOCATE_IDS =
+        "select nextval('hibernate_sequence') from generate_series(1, ?)";
+
+    private static final String POSTGRESQL_BATCH_INSERT_IF_ABSENT =
+        "insert into prospect (id, email, normalized_email, created_by, created_date, last_modified_by, last_modified_date) " +
+            "values (?, ?, ?, ?, ?, ?, ?) " +
+            "on conflict (normalized_email) do nothing";
+
+    // H2 1.4 has no MERGE ... USING, and MERGE ... KEY would overwrite the existing prospect
+    private static final String DEFAULT_INSERT_IF_ABSENT =
+        "insert into prospect (email, normalized_email, created_by, created_date, last_modified_by, last_modified_date) " +
+            "select ?, ?, ?, ?, ?, ? from dual where not exists (select 1 from prospect where normalized_email = ?)";
+
+    private static final String SELECT_IDS_BY_NORMALIZED_EMAIL =
+        "select id, normalized_email from prospect where normalized_email in (:normalizedEmails)";
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final boolean postgresql;
+
+    @Autowired
+    public ProspectRepositoryImpl(DataSource dataSource) throws MetaDataAccessException {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        String databaseProductName = (String) JdbcUtils.extractDatabaseMetaData(dataSource, "getDatabaseProductName");
+        this.postgresql = "PostgreSQL".equals(databaseProductName);
+        log.debug("Using {} SQL to insert prospects", postgresql ? "PostgreSQL" : "standard");
+    }
+
+    @Override
+    public boolean insertIfAbsent(Prospect prospect) {
+        Timestamp createdDate = Timestamp.from(prospect.getCreatedDate().toInstant());
+        Timestamp lastModifiedDate = Timestamp.from(prospect.getLastModifiedDate().toInstant());
+        if (postgresql) {
+            Long id = jdbcTemplate.query(POSTGRESQL_INSERT_IF_ABSENT,
+                rs -> rs.next() ? rs.getLong(1) : null,
+                prospect.getEmail(), prospect.getNormalizedEmail().getValue(), prospect.getCreatedBy(), createdDate,
+                prospect.getLastModifiedBy(), lastModifiedDate);
+            prospect.setId(id);
+            return id != null;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        try {
+            int inserted = jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(DEFAULT_INSERT_IF_ABSENT, new String[]{"id"});
+                statement.setString(1, prospect.getEmail());
+                statement.setString(2, prospect.getNormalizedEmail().getValue());
+                statement.setString(3, prospect.getCreatedBy());
+                statement.setTimestamp(4, createdDate);
+                statement.setString(5, prospect.getLastModifiedBy());
+                statement.setTimestamp(6, lastModifiedDate);
+                statement.setString(7, prospect.getNormalizedEmail().getValue());
+                return statement;
+            }, keyHolder);
+            if (inserted == 0) {
+                return false;
+            }
+        } catch (DuplicateKeyException e) {
+            // A concurrent signup inserted the same e-mail between the check and the insert
+            return false;
+        }
+        prospect.setId(keyHolder.getKey().longValue());
+        return true;
+    }
+
+    @Override
+    public boolean[] insertAllIfAbsent(List<Prospect> prospects) {
+        boolean[] inserted = new boolean[prospects.size()];
+        if (prospects.isEmpty()) {
+            return inserted;
+        }
+        // On PostgreSQL, the ids of the whole batch are allocated with a single query
+        List<Long> ids = postgresql ?
+            jdbcTemplate.queryForList(POSTGRESQL_ALLOCATE_IDS, Long.class, prospects.size()) : null;
+        int[] updateCounts;
+        // Outside of PostgreSQL, a failed batch may have written some of its rows: they are rolled back to a
+        // savepoint, so the prospects retried one by one are all inserted again
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        Savepoint savepoint = null;
+        try {
+            if (!connection.getAutoCommit()) {
+                savepoint = connection.setSavepoint();
+            }
+            updateCounts = jdbcTemplate.batchUpdate(postgresql ? POSTGRESQL_BATCH_INSERT_IF_ABSENT : DEFAULT_INSERT_IF_ABSENT,
+                new BatchPreparedStatementSetter() {
+
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        Prospect prospect = prospects.get(i);
+                        int column = 1;
+                        if (postgresql) {
+                            statement.setLong(column++, ids.get(i));
+                        }
+                        statement.setString(column++, prospect.getEmail());
+                        statement.setString(column++, prospect.getNormalizedEmail().getValue());
+                        statement.setString(column++, prospect.getCreatedBy());
+                        statement.setTimestamp(column++, Timestamp.from(prospect.getCreatedDate().toInstant()));
+                        statement.setString(column++, prospect.getLastModifiedBy());
+                        statement.setTimestamp(column++, Timestamp.from(prospect.getLastModifiedDate().toInstant()));
+                        if (!postgresql) {
+                            statement.setString(column, prospect.getNormalizedEmail().getValue());
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return prospects.size();
+                    }
+                });
+            if (savepoint != null) {
+                connection.releaseSavepoint(savepoint);
+            }
+        } catch (DuplicateKeyException e) {
+            // A concurrent signup raced one of the prospects, which fails the whole batch outside of PostgreSQL
+            log.debug("Duplicate e-mail in a batch of {} prospects, inserting them one by one", prospects.size());
+            rollback(connection, savepoint);
+            for (int i = 0; i < prospects.size(); i++) {
+                inserted[i] = insertIfAbsent(prospects.get(i));
+            }
+            return inserted;
+        } catch (SQLException e) {
+            throw jdbcTemplate.getExceptionTranslator().translate("Savepoint of a prospect batch", null, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        Map<String, Prospect> insertedByNormalizedEmail = new HashMap<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            inserted[i] = updateCounts[i] > 0;
+            if (inserted[i] && postgresql) {
+                prospects.get(i).setId(ids.get(i));
+            } else if (inserted[i]) {
+                insertedByNormalizedEmail.put(prospects.get(i).getNormalizedEmail().getValue(), prospects.get(i));
+            }
+        }
+        if (!insertedByNormalizedEmail.isEmpty()) {
+            // Batches cannot return generated keys, so they are read back in a single query
+            namedParameterJdbcTemplate.query(SELECT_IDS_BY_NORMALIZED_EMAIL,
+                Collections.singletonMap("normalizedEmails", insertedByNormalizedEmail.keySet()),
+                (RowCallbackHandler) rs -> insertedByNormalizedEmail.get(rs.getString("normalized_email"))
+                    .setId(rs.getLong("id")));
+        }
+        return inserted;
+    }
+
+    private void rollback(Connection connection, Savepoint savepoint) {
+        if (savepoint == null) {
+            return;
+        }
+        try {
+            connection.rollback(savepoint);
+        } catch (SQLException e) {
+            throw jdbcTemplate.getExceptionTranslator().translate("Rollback of a prospect batch", null, e);
+        }
+    }
+}
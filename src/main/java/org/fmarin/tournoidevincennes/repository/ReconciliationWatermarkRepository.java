@@ -0,0 +1,38 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.ReconciliationWatermark;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Spring Data JPA repository for the ReconciliationWatermark entity.
+ */
+public interface ReconciliationWatermarkRepository extends JpaRepository<ReconciliationWatermark, String> {
+
+    /**
+     * @return 1 if the lease was acquired, 0 if another node holds it
+     */
+    @Transactional
+    @Modifying
+    @Query("update ReconciliationWatermark watermark set watermark.leaseEnd = :leaseEnd " +
+        "where watermark.name = :name and (watermark.leaseEnd is null or watermark.leaseEnd < :now)")
+    int acquireLease(@Param("name") String name, @Param("now") ZonedDateTime now,
+                     @Param("leaseEnd") ZonedDateTime leaseEnd);
+
+    @Transactional
+    @Modifying
+    @Query("update ReconciliationWatermark watermark set watermark.watermark = :watermark, watermark.leaseEnd = null " +
+        "where watermark.name = :name")
+    int advance(@Param("name") String name, @Param("watermark") ZonedDateTime watermark);
+
+    @Transactional
+    @Modifying
+    @Query("update ReconciliationWatermark watermark set watermark.leaseEnd = null where watermark.name = :name")
+    int releaseLease(@Param("name") String name);
+}
@@ -0,0 +1,22 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.TokenWatermark;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Spring Data JPA repository for the TokenWatermark entity.
+ */
+public interface TokenWatermarkRepository extends JpaRepository<TokenWatermark, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from TokenWatermark watermark where watermark.issuedBefore < :before")
+    int deleteIssuedBefore(@Param("before") ZonedDateTime before);
+}
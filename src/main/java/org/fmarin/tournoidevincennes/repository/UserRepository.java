@@ -1,20 +1,36 @@
 package org.fmarin.tournoidevincennes.repository;
 
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
 import org.fmarin.tournoidevincennes.domain.User;
+import org.fmarin.tournoidevincennes.service.dto.ManagedUserDTO;
+import org.fmarin.tournoidevincennes.service.dto.UserSummaryDTO;
 
 import java.time.ZonedDateTime;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * Spring Data JPA repository for the User entity.
  */
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
+
+    String MANAGED_USER_DTO = "org.fmarin.tournoidevincennes.service.dto.ManagedUserDTO(user.id, user.login, " +
+        "user.firstName, user.lastName, user.email, user.activated, user.langKey, user.createdBy, user.createdDate, " +
+        "user.lastModifiedBy, user.lastModifiedDate)";
 
     Optional<User> findOneByActivationKey(String activationKey);
 
@@ -22,11 +38,71 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findOneByResetKey(String resetKey);
 
-    Optional<User> findOneByEmail(String email);
+    /**
+     * Users are looked up by their normalized e-mail, which is indexed, so variants of a registered e-mail are
+     * found too. The index is not unique, as users registered before it may share a normalized e-mail: the user
+     * with exactly this e-mail is then preferred, and else the oldest one.
+     */
+    default Optional<User> findOneByEmail(String email) {
+        return findAllByEmail(email).stream().min(byEmailMatch(email));
+    }
+
+    /**
+     * @return the users with the same normalized e-mail, which are several for some users registered before it
+     */
+    default List<User> findAllByEmail(String email) {
+        return findAllByNormalizedEmail(NormalizedEmail.of(email));
+    }
+
+    List<User> findAllByNormalizedEmail(NormalizedEmail normalizedEmail);
+
+    /**
+     * @return an order of the users sharing a normalized e-mail: the ones with exactly the given e-mail first, then
+     * the oldest ones
+     */
+    static Comparator<User> byEmailMatch(String email) {
+        return Comparator.comparing((User user) -> !email.equals(user.getEmail())).thenComparing(User::getId);
+    }
 
     Optional<User> findOneByLogin(String login);
 
-    @Query(value = "select distinct user from User user left join fetch user.authorities",
+    /**
+     * @return the user with its authorities, fetched in the same query
+     */
+    @EntityGraph(attributePaths = "authorities")
+    Optional<User> findOneWithAuthoritiesByLogin(String login);
+
+    /**
+     * The users are read straight into a flat {@link ManagedUserDTO}, without hydrating managed entities. Their
+     * authorities cannot be part of a constructor expression, and fetching them in the same query would make
+     * Hibernate page the whole table in memory (HHH000104): they are read with {@link #findAuthoritiesByUserIdIn}.
+     */
+    @Query(value = "select new " + MANAGED_USER_DTO + " from User user",
         countQuery = "select count(user) from User user")
-    Page<User> findAllWithAuthorities(Pageable pageable);
+    Page<ManagedUserDTO> findAllManagedUsers(Pageable pageable);
+
+    @Query("select new " + MANAGED_USER_DTO + " from User user order by user.login, user.id")
+    List<ManagedUserDTO> findFirstManagedUsers(Pageable pageable);
+
+    /**
+     * @return the users after the given one in the (login, id) order, so a page of users is an index range scan
+     * however deep it is, as opposed to an offset
+     */
+    @Query("select new " + MANAGED_USER_DTO + " from User user " +
+        "where user.login > :login or (user.login = :login and user.id > :id) order by user.login, user.id")
+    List<ManagedUserDTO> findManagedUsersAfter(@Param("login") String login, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Must be called within a transaction, and the stream closed once consumed.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new org.fmarin.tournoidevincennes.service.dto.UserSummaryDTO(user.id, user.login, user.email, " +
+        "user.firstName, user.lastName, user.activated) from User user")
+    Stream<UserSummaryDTO> streamAllUserSummaries();
+
+    /**
+     * @return the pairs of user id and authority name of the given users
+     */
+    @Query("select user.id, authority.name from User user join user.authorities authority where user.id in :ids")
+    List<Object[]> findAuthoritiesByUserIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,25 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Custom queries for the User entity, which Spring Data JPA cannot derive.
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Delete a chunk of the users not activated since a given date, with their authorities, in a single transaction.
+     * <p>
+     * The chunk is the first {@code limit} such users with an id greater than {@code afterId}. They are locked, then
+     * deleted with two bulk deletes on their id range, so there are no entities in memory and no statement per
+     * user. The second-level cache is left to the caller.
+     * </p>
+     *
+     * @param createdBefore only delete the users created before this date
+     * @param afterId only delete the users with a greater id, typically the last id of the previous chunk
+     * @param limit the maximum number of users to delete
+     * @return the ids of the deleted users, in ascending order, empty when there are no more users to delete
+     */
+    List<Long> deleteNotActivatedUsers(ZonedDateTime createdBefore, long afterId, int limit);
+}
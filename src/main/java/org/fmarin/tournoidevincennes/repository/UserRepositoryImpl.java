@@ -0,0 +1,53 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Implementation of the custom User queries, with plain JDBC as they work on ranges of rows, not on entities.
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final String NOT_ACTIVATED = "activated = false and created_date < ?";
+
+    private static final String LOCK_NOT_ACTIVATED_IDS =
+        "select id from jhi_user where id > ? and " + NOT_ACTIVATED + " order by id limit ? for update";
+
+    // The conditions are checked again, so the users of the range which were activated are kept
+    private static final String DELETE_AUTHORITIES =
+        "delete from jhi_user_authority where user_id in " +
+            "(select id from jhi_user where id between ? and ? and " + NOT_ACTIVATED + ")";
+
+    private static final String DELETE_USERS =
+        "delete from jhi_user where id between ? and ? and " + NOT_ACTIVATED;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public UserRepositoryImpl(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    @Transactional
+    public List<Long> deleteNotActivatedUsers(ZonedDateTime createdBefore, long afterId, int limit) {
+        Timestamp before = Timestamp.from(createdBefore.toInstant());
+        // Locked until the end of the transaction, so a user activated meanwhile is either kept or deleted whole
+        List<Long> ids = jdbcTemplate.queryForList(LOCK_NOT_ACTIVATED_IDS, Long.class, afterId, before, limit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long firstId = ids.get(0);
+        long lastId = ids.get(ids.size() - 1);
+        jdbcTemplate.update(DELETE_AUTHORITIES, firstId, lastId, before);
+        jdbcTemplate.update(DELETE_USERS, firstId, lastId, before);
+        return ids;
+    }
+}
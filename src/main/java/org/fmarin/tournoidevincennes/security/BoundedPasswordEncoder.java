@@ -0,0 +1,158 @@
+package org.fmarin.tournoidevincennes.security;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt password encoder running the hashes on a dedicated executor, so a login storm cannot take the CPU of
+ * every request thread.
+ * <p>
+ * The executor has as many threads as {@code jhipster.security.password.pool-size}, the number of cores by default,
+ * and a fair queue of {@code jhipster.security.password.queue-capacity} hashes. Once the queue is full, hashes are
+ * rejected right away with a {@link PasswordEncoderBusyException}, which the web layer turns into a 503 Service
+ * Unavailable, so the clients do not wait.
+ * </p>
+ * <p>
+ * The request thread waits for its hash, queued and computed, for at most
+ * {@code jhipster.security.password.timeout-in-millis}, and then gets a {@link PasswordEncoderBusyException} too.
+ * A queued hash is then dropped; a hash already being computed cannot be interrupted, so it keeps its executor
+ * thread until it is done, and its result is discarded.
+ * </p>
+ * <p>
+ * The cost of the new hashes is {@code jhipster.security.password.bcrypt-cost}; {@link #needsRehash(String)} tells
+ * the hashes made with another cost, so they are upgraded when their users log in.
+ * </p>
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final Logger log = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private final int cost;
+
+    private final BCryptPasswordEncoder encoder;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutInMillis;
+
+    private final Timer hashes;
+
+    private final Timer waits;
+
+    private final Meter rejected;
+
+    private final Meter timeouts;
+
+    public BoundedPasswordEncoder(JHipsterProperties.Security.Password properties, MetricRegistry metricRegistry) {
+        if (properties.getTimeoutInMillis() <= 0) {
+            throw new IllegalArgumentException("jhipster.security.password.timeout-in-millis must be positive, but " +
+                "was " + properties.getTimeoutInMillis());
+        }
+        this.cost = properties.getBcryptCost();
+        this.timeoutInMillis = properties.getTimeoutInMillis();
+        this.encoder = new BCryptPasswordEncoder(cost);
+        int poolSize = properties.getPoolSize() > 0 ?
+            properties.getPoolSize() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(properties.getQueueCapacity(), true), runnable -> {
+                Thread thread = new Thread(runnable, "password-encoder-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.hashes = metricRegistry.timer(MetricRegistry.name(BoundedPasswordEncoder.class, "hashes"));
+        this.waits = metricRegistry.timer(MetricRegistry.name(BoundedPasswordEncoder.class, "waits"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(BoundedPasswordEncoder.class, "rejected"));
+        this.timeouts = metricRegistry.meter(MetricRegistry.name(BoundedPasswordEncoder.class, "timeouts"));
+        metricRegistry.register(MetricRegistry.name(BoundedPasswordEncoder.class, "queue"),
+            (Gauge<Integer>) () -> executor.getQueue().size());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * @param encodedPassword a password hash
+     * @return true if the hash was not made with the configured cost, and should be made again
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != cost;
+    }
+
+    /**
+     * Stop the executor, with the application context.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T execute(Callable<T> hash) {
+        Timer.Context wait = waits.time();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                wait.stop();
+                try (Timer.Context ignored = hashes.time()) {
+                    return hash.call();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            log.warn("Rejected a password hash, {} are already waiting", executor.getQueue().size());
+            throw new PasswordEncoderBusyException("Too many passwords being hashed", e);
+        }
+        try {
+            return result.get(timeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Dropped from the queue if still in it, a running hash cannot be interrupted and is left to finish
+            result.cancel(false);
+            executor.purge();
+            timeouts.mark();
+            log.warn("Gave up on a password hash after {} ms, {} are waiting", timeoutInMillis,
+                executor.getQueue().size());
+            throw new PasswordEncoderBusyException("Timed out while hashing a password", e);
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordEncoderBusyException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package org.fmarin.tournoidevincennes.security;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the failed logins, per login and per client IP, to block brute-force and credential stuffing attempts
+ * before they reach the database or BCrypt.
+ * <p>
+ * Failures are counted over a sliding window of {@code jhipster.security.login-throttling.window-in-seconds}. Past
+ * the maximum number of failures, the login or the IP is blocked for a delay starting at
+ * {@code base-delay-in-seconds} and doubled on each new failure, up to {@code max-delay-in-seconds}. A successful
+ * login resets the counter of its login, but not the one of its IP, which could otherwise be reset with any valid
+ * account.
+ * </p>
+ * <p>
+ * At most {@code max-entries} counters are kept for each of the logins and IPs: past that, the idle counters are
+ * evicted first, then the ones which are not blocking anything. The counters are lock-free.
+ * </p>
+ */
+@Component
+public class LoginAttemptService {
+
+    /**
+     * Rough footprint of a counter with its map node and key, not counting the characters of the key.
+     */
+    static final int ENTRY_BYTES = 136;
+
+    private final Logger log = LoggerFactory.getLogger(LoginAttemptService.class);
+
+    private final boolean enabled;
+
+    private final long window;
+
+    private final long baseDelay;
+
+    private final long maxDelay;
+
+    private final Counters logins;
+
+    private final Counters ips;
+
+    @Autowired
+    public LoginAttemptService(JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry) {
+        JHipsterProperties.Security.LoginThrottling properties =
+            jHipsterProperties.getSecurity().getLoginThrottling();
+        this.enabled = properties.isEnabled();
+        this.window = TimeUnit.SECONDS.toMillis(properties.getWindowInSeconds());
+        this.baseDelay = TimeUnit.SECONDS.toMillis(properties.getBaseDelayInSeconds());
+        this.maxDelay = TimeUnit.SECONDS.toMillis(properties.getMaxDelayInSeconds());
+        this.logins = new Counters("logins", properties.getMaxFailuresPerLogin(), properties.getMaxEntries(),
+            metricRegistry);
+        this.ips = new Counters("ips", properties.getMaxFailuresPerIp(), properties.getMaxEntries(),
+            metricRegistry);
+        metricRegistry.register(MetricRegistry.name(LoginAttemptService.class, "memory"),
+            (Gauge<Long>) () -> logins.memory() + ips.memory());
+    }
+
+    /**
+     * @param login the login of the attempt
+     * @param ip the client IP of the attempt
+     * @return 0 if the attempt can go on, or else the time until the login and the IP are unblocked, in milliseconds
+     */
+    public long getRetryAfter(String login, String ip) {
+        return getRetryAfter(login, ip, System.currentTimeMillis());
+    }
+
+    long getRetryAfter(String login, String ip, long now) {
+        if (!enabled) {
+            return 0;
+        }
+        return Math.max(logins.retryAfter(key(login), now), ips.retryAfter(ip, now));
+    }
+
+    /**
+     * Count a failed attempt against its login and its IP.
+     *
+     * @param login the login of the attempt
+     * @param ip the client IP of the attempt
+     */
+    public void loginFailed(String login, String ip) {
+        loginFailed(login, ip, System.currentTimeMillis());
+    }
+
+    void loginFailed(String login, String ip, long now) {
+        if (!enabled) {
+            return;
+        }
+        logins.failed(key(login), now);
+        ips.failed(ip, now);
+    }
+
+    /**
+     * Forget the failed attempts of a login, once its user logged in.
+     *
+     * @param login the login of the user
+     */
+    public void loginSucceeded(String login) {
+        logins.counters.remove(key(login));
+    }
+
+    private static String key(String login) {
+        return login.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The counters of the logins or of the IPs.
+     */
+    private final class Counters {
+
+        private final String name;
+
+        private final int maxFailures;
+
+        private final int maxEntries;
+
+        private final ConcurrentHashMap<String, FailureCounter> counters = new ConcurrentHashMap<>();
+
+        private final ReentrantLock evictionLock = new ReentrantLock();
+
+        private final Meter blocked;
+
+        Counters(String name, int maxFailures, int maxEntries, MetricRegistry metricRegistry) {
+            this.name = name;
+            this.maxFailures = maxFailures;
+            this.maxEntries = maxEntries;
+            this.blocked = metricRegistry.meter(MetricRegistry.name(LoginAttemptService.class, "blocked", name));
+            metricRegistry.register(MetricRegistry.name(LoginAttemptService.class, name),
+                (Gauge<Integer>) counters::size);
+        }
+
+        long retryAfter(String key, long now) {
+            // Only failures create counters, so checking the other logins and IPs costs no memory
+            FailureCounter counter = counters.get(key);
+            if (counter == null) {
+                return 0;
+            }
+            long retryAfter = counter.retryAfter(now);
+            if (retryAfter > 0) {
+                blocked.mark();
+            }
+            return retryAfter;
+        }
+
+        void failed(String key, long now) {
+            FailureCounter counter = counters.get(key);
+            if (counter == null) {
+                if (counters.size() >= maxEntries) {
+                    evict(now);
+                }
+                counter = counters.computeIfAbsent(key, k -> new FailureCounter(now));
+            }
+            long delay = counter.failed(now, window, maxFailures, baseDelay, maxDelay);
+            if (delay > 0) {
+                log.debug("Blocked {} {} for {} ms", name, key, delay);
+            }
+        }
+
+        private void evict(long now) {
+            // A single thread evicts, the others carry on while the map is briefly over its bound
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                counters.values().removeIf(counter -> counter.isIdle(now, window));
+                if (counters.size() >= maxEntries) {
+                    counters.values().removeIf(counter -> counter.retryAfter(now) == 0);
+                }
+                if (counters.size() >= maxEntries) {
+                    // Flooded by more blocked logins or IPs than there is room for: forget some of them
+                    log.warn("Login attempt counters for {} still full after eviction, dropping some of them", name);
+                    Iterator<FailureCounter> iterator = counters.values().iterator();
+                    for (int i = counters.size() - maxEntries / 2; i > 0 && iterator.hasNext(); i--) {
+                        iterator.next();
+                        iterator.remove();
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        long memory() {
+            long memory = 0;
+            for (String key : counters.keySet()) {
+                memory += ENTRY_BYTES + 2L * key.length();
+            }
+            return memory;
+        }
+    }
+
+    /**
+     * A sliding window counter: the failures of the current window, plus the ones of the previous window weighted
+     * by how much of it still overlaps the sliding window. Two counts instead of a timestamp per failure.
+     * <p>
+     * The counts are held in an immutable state swapped with a compare-and-set, so concurrent attempts on the same
+     * login or IP never wait for each other.
+     * </p>
+     */
+    static final class FailureCounter {
+
+        private final AtomicReference<State> state;
+
+        FailureCounter(long now) {
+            this.state = new AtomicReference<>(new State(now, 0, 0, 0));
+        }
+
+        /**
+         * @return the delay for which the counter now blocks, in milliseconds, or 0 if it does not
+         */
+        long failed(long now, long window, int maxFailures, long baseDelay, long maxDelay) {
+            while (true) {
+                State current = state.get();
+                State slid = current.slide(now, window);
+                int count = slid.current + 1;
+                double elapsed = (double) (now - slid.windowStart) / window;
+                int failures = (int) (slid.previous * (1 - elapsed)) + count;
+                long delay = 0;
+                long blockedUntil = slid.blockedUntil;
+                if (failures >= maxFailures) {
+                    delay = Math.min(baseDelay << Math.min(failures - maxFailures, 30), maxDelay);
+                    blockedUntil = now + delay;
+                }
+                if (state.compareAndSet(current, new State(slid.windowStart, slid.previous, count, blockedUntil))) {
+                    return delay;
+                }
+            }
+        }
+
+        long retryAfter(long now) {
+            return Math.max(state.get().blockedUntil - now, 0);
+        }
+
+        boolean isIdle(long now, long window) {
+            State slid = state.get().slide(now, window);
+            return slid.previous == 0 && slid.current == 0 && slid.blockedUntil <= now;
+        }
+    }
+
+    private static final class State {
+
+        private final long windowStart;
+
+        private final int previous;
+
+        private final int current;
+
+        private final long blockedUntil;
+
+        private State(long windowStart, int previous, int current, long blockedUntil) {
+            this.windowStart = windowStart;
+            this.previous = previous;
+            this.current = current;
+            this.blockedUntil = blockedUntil;
+        }
+
+        private State slide(long now, long window) {
+            long windows = (now - windowStart) / window;
+            if (windows <= 0) {
+                return this;
+            }
+            return new State(windowStart + windows * window, windows == 1 ? current : 0, 0, blockedUntil);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.fmarin.tournoidevincennes.security;
+
+/**
+ * Thrown by the {@link BoundedPasswordEncoder} when too many passwords are being hashed, so the request can be
+ * retried later.
+ */
+public class PasswordEncoderBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordEncoderBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
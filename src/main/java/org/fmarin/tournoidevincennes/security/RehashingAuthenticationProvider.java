@@ -0,0 +1,57 @@
+package org.fmarin.tournoidevincennes.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Authenticates the users with their password, and upgrades the hashes of the ones made with another cost than the
+ * configured one.
+ * <p>
+ * Whether a hash needs upgrading is told from the hash the authentication just checked, so the logins with an
+ * up to date hash do nothing more. The upgrade is best-effort: if it fails, for instance because the
+ * {@link BoundedPasswordEncoder} is saturated, the user is still logged in, and the hash is upgraded on a later
+ * login.
+ * </p>
+ */
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final Logger log = LoggerFactory.getLogger(RehashingAuthenticationProvider.class);
+
+    private final BoundedPasswordEncoder passwordEncoder;
+
+    private final BiConsumer<String, String> passwordHashUpgrade;
+
+    /**
+     * @param userDetailsService the service loading the users
+     * @param passwordEncoder the encoder of the passwords
+     * @param passwordHashUpgrade hashes the password, the second argument, of the user with the login, the first one
+     */
+    public RehashingAuthenticationProvider(UserDetailsService userDetailsService,
+                                           BoundedPasswordEncoder passwordEncoder,
+                                           BiConsumer<String, String> passwordHashUpgrade) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashUpgrade = passwordHashUpgrade;
+        setUserDetailsService(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                         UserDetails user) {
+        // The credentials are not erased yet at this point
+        if (passwordEncoder.needsRehash(user.getPassword()) && authentication.getCredentials() != null) {
+            try {
+                passwordHashUpgrade.accept(user.getUsername(), authentication.getCredentials().toString());
+            } catch (RuntimeException e) {
+                log.warn("Could not upgrade the password hash of User {}: {}", user.getUsername(), e.getMessage());
+            }
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
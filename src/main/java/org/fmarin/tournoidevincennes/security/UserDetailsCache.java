@@ -0,0 +1,195 @@
+package org.fmarin.tournoidevincennes.security;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the users loaded by the {@link UserDetailsService}, so a password login does not query the user and its
+ * authorities each time.
+ * <p>
+ * The users are kept by lower-cased login as immutable snapshots, and each lookup gets its own {@link UserDetails}:
+ * the authentication manager erases the password of the ones it authenticated, which would otherwise erase the
+ * cached one. At most {@code jhipster.security.user-details-cache.max-entries} users are kept, the least recently
+ * used being evicted first, each for at most {@code time-to-live-in-seconds}.
+ * </p>
+ * <p>
+ * The {@code UserService} invalidates a user as soon as it changes it, and again once its transaction completed.
+ * Each invalidation also drops the users being loaded at that time, which could have read the user before the
+ * change was committed.
+ * </p>
+ */
+@Component
+public class UserDetailsCache {
+
+    private final long timeToLive;
+
+    private final Map<String, Snapshot> snapshots;
+
+    private long generation;
+
+    private final Meter hits;
+
+    private final Meter misses;
+
+    private final Meter evictions;
+
+    private final Meter invalidations;
+
+    @Autowired
+    public UserDetailsCache(JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry) {
+        JHipsterProperties.Security.UserDetailsCache properties =
+            jHipsterProperties.getSecurity().getUserDetailsCache();
+        this.timeToLive = TimeUnit.SECONDS.toMillis(properties.getTimeToLiveInSeconds());
+        int maxEntries = properties.getMaxEntries();
+        this.snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                if (size() > maxEntries) {
+                    evictions.mark();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = metricRegistry.meter(MetricRegistry.name(UserDetailsCache.class, "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(UserDetailsCache.class, "misses"));
+        this.evictions = metricRegistry.meter(MetricRegistry.name(UserDetailsCache.class, "evictions"));
+        this.invalidations = metricRegistry.meter(MetricRegistry.name(UserDetailsCache.class, "invalidations"));
+        metricRegistry.register(MetricRegistry.name(UserDetailsCache.class, "size"),
+            (Gauge<Integer>) () -> {
+                synchronized (snapshots) {
+                    return snapshots.size();
+                }
+            });
+    }
+
+    /**
+     * @param login the login of the user
+     * @return the user, or null if it is not cached
+     */
+    public UserDetails get(String login) {
+        return get(login, System.currentTimeMillis());
+    }
+
+    UserDetails get(String login, long now) {
+        String key = key(login);
+        Snapshot snapshot;
+        synchronized (snapshots) {
+            snapshot = snapshots.get(key);
+            if (snapshot != null && now >= snapshot.expiration) {
+                snapshots.remove(key);
+                evictions.mark();
+                snapshot = null;
+            }
+        }
+        if (snapshot == null) {
+            misses.mark();
+            return null;
+        }
+        hits.mark();
+        return new User(snapshot.login, snapshot.password, snapshot.authorities);
+    }
+
+    /**
+     * @return the generation to give to {@link #put(UserDetails, long)}, to be taken before loading the user
+     */
+    public long generation() {
+        synchronized (snapshots) {
+            return generation;
+        }
+    }
+
+    /**
+     * Cache a user, unless a user was invalidated since the given generation.
+     *
+     * @param user the user, which is copied
+     * @param generation the generation taken before loading the user
+     */
+    public void put(UserDetails user, long generation) {
+        put(user, generation, System.currentTimeMillis());
+    }
+
+    void put(UserDetails user, long generation, long now) {
+        Snapshot snapshot = new Snapshot(user.getUsername(), user.getPassword(), user.getAuthorities(),
+            now + timeToLive);
+        synchronized (snapshots) {
+            if (generation == this.generation) {
+                snapshots.put(key(user.getUsername()), snapshot);
+            }
+        }
+    }
+
+    /**
+     * Forget a user now, and once the current transaction, if any, completed.
+     *
+     * @param login the login of the user
+     */
+    public void invalidate(String login) {
+        if (login == null) {
+            return;
+        }
+        String key = key(login);
+        remove(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(int status) {
+                    remove(key);
+                }
+            });
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (snapshots) {
+            generation++;
+            if (snapshots.remove(key) != null) {
+                invalidations.mark();
+            }
+        }
+    }
+
+    private static String key(String login) {
+        return login.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final class Snapshot {
+
+        private final String login;
+
+        private final String password;
+
+        private final List<GrantedAuthority> authorities;
+
+        private final long expiration;
+
+        private Snapshot(String login, String password, Collection<? extends GrantedAuthority> authorities,
+                         long expiration) {
+            this.login = login;
+            this.password = password;
+            this.authorities = Collections.unmodifiableList(new ArrayList<>(authorities));
+            this.expiration = expiration;
+        }
+    }
+}
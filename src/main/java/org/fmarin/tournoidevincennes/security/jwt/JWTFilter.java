@@ -35,8 +35,8 @@ public class JWTFilter extends GenericFilterBean {
             HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
             String jwt = resolveToken(httpServletRequest);
             if (StringUtils.hasText(jwt)) {
-                if (this.tokenProvider.validateToken(jwt)) {
-                    Authentication authentication = this.tokenProvider.getAuthentication(jwt);
+                Authentication authentication = this.tokenProvider.getAuthentication(jwt);
+                if (authentication != null) {
                     SecurityContextHolder.getContext().setAuthentication(authentication);
                 }
             }
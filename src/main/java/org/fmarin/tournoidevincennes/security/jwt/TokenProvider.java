@@ -2,11 +2,19 @@ package org.fmarin.tournoidevincennes.security.jwt;
 
 import org.fmarin.tournoidevincennes.config.JHipsterProperties;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -18,6 +26,24 @@ import org.springframework.stereotype.Component;
 
 import io.jsonwebtoken.*;
 
+/**
+ * Creates the JWT tokens, and verifies them into an authentication.
+ * <p>
+ * A token is verified and turned into an authentication in a single parse, and the authentication is then
+ * remembered until the token expires, so the following requests with the same token skip the HMAC and the JSON
+ * parsing. The tokens are remembered by their SHA-256 digest in a concurrent map, so the requests do not share a
+ * lock. When {@code jhipster.security.authentication.jwt.verified-tokens} tokens are remembered, a single thread
+ * sweeps the expired ones, and if there are still too many, forgets some of them, which are then verified again on
+ * their next request. The authentications are shared by the requests of a token and never modified.
+ * </p>
+ * <p>
+ * Revoked tokens are refused, whether they are remembered or not, as told by the {@link TokenRevocationStore}.
+ * </p>
+ * <p>
+ * The authorities are interned by the claim listing them, as most tokens have one of a few combinations of
+ * authorities.
+ * </p>
+ */
 @Component
 public class TokenProvider {
 
@@ -25,15 +51,45 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    private static final String ISSUED_AT_MILLIS_KEY = "iat_ms";
+
+    private static final int MAX_INTERNED_AUTHORITIES = 1000;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+    });
+
     private String secretKey;
 
     private long tokenValidityInMilliseconds;
 
     private long tokenValidityInMillisecondsForRememberMe;
 
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private int maxVerifiedTokens;
+
+    private final Map<String, List<GrantedAuthority>> authorityLists = new ConcurrentHashMap<>();
+
+    private Meter hits;
+
+    private Meter misses;
+
     @Inject
     private JHipsterProperties jHipsterProperties;
 
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private TokenRevocationStore tokenRevocationStore;
+
     @PostConstruct
     public void init() {
         this.secretKey =
@@ -43,6 +99,12 @@ public class TokenProvider {
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
         this.tokenValidityInMillisecondsForRememberMe =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSecondsForRememberMe();
+
+        this.maxVerifiedTokens = jHipsterProperties.getSecurity().getAuthentication().getJwt().getVerifiedTokens();
+        this.hits = metricRegistry.meter(MetricRegistry.name(TokenProvider.class, "verifiedTokens", "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(TokenProvider.class, "verifiedTokens", "misses"));
+        metricRegistry.register(MetricRegistry.name(TokenProvider.class, "verifiedTokens", "size"),
+            (Gauge<Integer>) verifiedTokens::size);
     }
 
     public String createToken(Authentication authentication, Boolean rememberMe) {
@@ -59,36 +121,163 @@ public class TokenProvider {
         }
 
         return Jwts.builder()
+            .setId(UUID.randomUUID().toString())
             .setSubject(authentication.getName())
+            .setIssuedAt(new Date(now))
+            .claim(ISSUED_AT_MILLIS_KEY, now)
             .claim(AUTHORITIES_KEY, authorities)
             .signWith(SignatureAlgorithm.HS512, secretKey)
             .setExpiration(validity)
             .compact();
     }
 
+    /**
+     * Verify a token and get its authentication.
+     *
+     * @param token the token
+     * @return the authentication of the token, or null if its signature is not valid or it was revoked
+     * @throws ExpiredJwtException if the token expired
+     */
     public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parser()
-            .setSigningKey(secretKey)
-            .parseClaimsJws(token)
-            .getBody();
+        String digest = digest(token);
+        VerifiedToken verified = verifiedTokens.get(digest);
+        if (verified != null && System.currentTimeMillis() < verified.expiration) {
+            hits.mark();
+            return isRevoked(verified.jti, verified.authentication.getName(), verified.issuedAt) ?
+                null : verified.authentication;
+        }
+        misses.mark();
 
-        Collection<? extends GrantedAuthority> authorities =
-            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+        Claims claims;
+        try {
+            claims = Jwts.parser()
+                .setSigningKey(secretKey)
+                .parseClaimsJws(token)
+                .getBody();
+        } catch (SignatureException e) {
+            log.info("Invalid JWT signature: " + e.getMessage());
+            return null;
+        } catch (ExpiredJwtException e) {
+            if (verified != null) {
+                verifiedTokens.remove(digest, verified);
+            }
+            throw e;
+        }
 
+        List<GrantedAuthority> authorities = authorities(claims.get(AUTHORITIES_KEY).toString());
         User principal = new User(claims.getSubject(), "", authorities);
+        Authentication authentication = new UsernamePasswordAuthenticationToken(principal, "", authorities);
+        long issuedAt = issuedAt(claims);
+        // A token without expiration is verified every time, as it would never leave the cache otherwise
+        if (claims.getExpiration() != null) {
+            if (verifiedTokens.size() >= maxVerifiedTokens) {
+                evict();
+            }
+            verifiedTokens.put(digest, new VerifiedToken(authentication, claims.getId(), issuedAt,
+                claims.getExpiration().getTime()));
+        }
+        return isRevoked(claims.getId(), claims.getSubject(), issuedAt) ? null : authentication;
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, "", authorities);
+    /**
+     * Revoke a token, so it is refused until it expires.
+     *
+     * @param token the token
+     * @return false if the token could not be revoked, as it is not valid or has no id
+     */
+    public boolean revokeToken(String token) {
+        Claims claims;
+        try {
+            claims = Jwts.parser()
+                .setSigningKey(secretKey)
+                .parseClaimsJws(token)
+                .getBody();
+        } catch (JwtException e) {
+            log.info("Could not revoke JWT: " + e.getMessage());
+            return false;
+        }
+        if (claims.getId() == null || claims.getExpiration() == null) {
+            return false;
+        }
+        tokenRevocationStore.revoke(claims.getId(), claims.getExpiration().getTime());
+        return true;
     }
 
-    public boolean validateToken(String authToken) {
+    private void evict() {
+        // A single thread evicts, the others carry on while the map is briefly over its bound
+        if (!evictionLock.tryLock()) {
+            return;
+        }
         try {
-            Jwts.parser().setSigningKey(secretKey).parseClaimsJws(authToken);
+            long now = System.currentTimeMillis();
+            verifiedTokens.values().removeIf(verified -> now >= verified.expiration);
+            if (verifiedTokens.size() >= maxVerifiedTokens) {
+                Iterator<VerifiedToken> iterator = verifiedTokens.values().iterator();
+                for (int i = verifiedTokens.size() - maxVerifiedTokens / 2; i > 0 && iterator.hasNext(); i--) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static long issuedAt(Claims claims) {
+        // The iat claim is truncated to the second, which would not tell the tokens issued in the second of a
+        // revocation apart; the tokens issued before the claim in milliseconds was added fall back to it
+        Number millis = claims.get(ISSUED_AT_MILLIS_KEY, Number.class);
+        if (millis != null) {
+            return millis.longValue();
+        }
+        return claims.getIssuedAt() == null ? 0 : claims.getIssuedAt().getTime();
+    }
+
+    private boolean isRevoked(String jti, String login, long issuedAt) {
+        if (tokenRevocationStore.isRevoked(jti, login, issuedAt)) {
+            log.info("Revoked JWT for user {}", login);
             return true;
-        } catch (SignatureException e) {
-            log.info("Invalid JWT signature: " + e.getMessage());
-            return false;
+        }
+        return false;
+    }
+
+    private List<GrantedAuthority> authorities(String claim) {
+        List<GrantedAuthority> authorities = authorityLists.get(claim);
+        if (authorities == null) {
+            authorities = Collections.unmodifiableList(Arrays.stream(claim.split(","))
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList()));
+            // The claims are signed by this application, but in case of a leaked secret they cannot fill the memory
+            if (authorityLists.size() < MAX_INTERNED_AUTHORITIES) {
+                List<GrantedAuthority> interned = authorityLists.putIfAbsent(claim, authorities);
+                if (interned != null) {
+                    authorities = interned;
+                }
+            }
+        }
+        return authorities;
+    }
+
+    private static String digest(String token) {
+        MessageDigest sha256 = SHA_256.get();
+        return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static final class VerifiedToken {
+
+        private final Authentication authentication;
+
+        private final String jti;
+
+        private final long issuedAt;
+
+        private final long expiration;
+
+        private VerifiedToken(Authentication authentication, String jti, long issuedAt, long expiration) {
+            this.authentication = authentication;
+            this.jti = jti;
+            this.issuedAt = issuedAt;
+            this.expiration = expiration;
         }
     }
 }
@@ -0,0 +1,156 @@
+package org.fmarin.tournoidevincennes.security.jwt;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.RevokedToken;
+import org.fmarin.tournoidevincennes.domain.TokenWatermark;
+import org.fmarin.tournoidevincennes.repository.RevokedTokenRepository;
+import org.fmarin.tournoidevincennes.repository.TokenWatermarkRepository;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The JWT tokens revoked before they expire, checked by the {@link TokenProvider} on every request, in memory.
+ * <p>
+ * A token is revoked either by its id, the {@code jti} claim, until it expires; or with all the tokens of its user
+ * issued before a watermark, for instance when their password changed. The watermarks are in a map replaced as a
+ * whole on each write, as they are rare, so the reads need no lock.
+ * </p>
+ * <p>
+ * Everything is written to the database, and loaded again when the application is ready. A revocation made on
+ * another instance is only seen once this one restarts. Revocations are forgotten once the tokens they revoke
+ * expired.
+ * </p>
+ */
+@Component
+public class TokenRevocationStore {
+
+    private final Logger log = LoggerFactory.getLogger(TokenRevocationStore.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final TokenWatermarkRepository tokenWatermarkRepository;
+
+    private final long maxTokenValidity;
+
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    private volatile Map<String, Long> watermarks = new HashMap<>();
+
+    @Autowired
+    public TokenRevocationStore(RevokedTokenRepository revokedTokenRepository,
+                                TokenWatermarkRepository tokenWatermarkRepository,
+                                JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.tokenWatermarkRepository = tokenWatermarkRepository;
+        JHipsterProperties.Security.Authentication.Jwt jwt =
+            jHipsterProperties.getSecurity().getAuthentication().getJwt();
+        this.maxTokenValidity = 1000 * Math.max(jwt.getTokenValidityInSeconds(),
+            jwt.getTokenValidityInSecondsForRememberMe());
+        metricRegistry.register(MetricRegistry.name(TokenRevocationStore.class, "revokedTokens"),
+            (Gauge<Integer>) revokedTokens::size);
+        metricRegistry.register(MetricRegistry.name(TokenRevocationStore.class, "watermarks"),
+            (Gauge<Integer>) () -> watermarks.size());
+    }
+
+    /**
+     * Load the revocations from the database, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long now = System.currentTimeMillis();
+        for (RevokedToken token : revokedTokenRepository.findAll()) {
+            long expiration = token.getExpiresAt().toInstant().toEpochMilli();
+            if (expiration > now) {
+                revokedTokens.put(token.getJti(), expiration);
+            }
+        }
+        Map<String, Long> loaded = new HashMap<>();
+        for (TokenWatermark watermark : tokenWatermarkRepository.findAll()) {
+            loaded.put(watermark.getLogin(), watermark.getIssuedBefore().toInstant().toEpochMilli());
+        }
+        synchronized (this) {
+            // Watermarks set before the load are kept, rather than lost
+            loaded.putAll(watermarks);
+            watermarks = loaded;
+        }
+        log.debug("Loaded {} revoked tokens and {} token watermarks", revokedTokens.size(), loaded.size());
+    }
+
+    /**
+     * @param jti the id of the token, null for the tokens issued before ids were added
+     * @param login the login of the user of the token
+     * @param issuedAt the time the token was issued, in milliseconds, 0 if unknown
+     * @return true if the token was revoked
+     */
+    public boolean isRevoked(String jti, String login, long issuedAt) {
+        if (jti != null && revokedTokens.containsKey(jti)) {
+            return true;
+        }
+        return issuedAt <= watermarks.getOrDefault(login, Long.MIN_VALUE);
+    }
+
+    /**
+     * Revoke a token.
+     *
+     * @param jti the id of the token
+     * @param expiration the expiration of the token, in milliseconds
+     */
+    public void revoke(String jti, long expiration) {
+        revokedTokens.put(jti, expiration);
+        revokedTokenRepository.save(new RevokedToken(jti, toZonedDateTime(expiration)));
+        log.debug("Revoked the token {}", jti);
+    }
+
+    /**
+     * Revoke all the tokens of a user issued until now.
+     *
+     * @param login the login of the user
+     */
+    public void revokeAll(String login) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Map<String, Long> updated = new HashMap<>(watermarks);
+            updated.put(login, now);
+            watermarks = updated;
+        }
+        tokenWatermarkRepository.save(new TokenWatermark(login, toZonedDateTime(now)));
+        log.debug("Revoked the tokens of {}", login);
+    }
+
+    /**
+     * Forget the revocations of the tokens which expired since, every hour.
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiration -> expiration <= now);
+        long oldestValid = now - maxTokenValidity;
+        synchronized (this) {
+            Map<String, Long> updated = new HashMap<>(watermarks);
+            updated.values().removeIf(issuedBefore -> issuedBefore < oldestValid);
+            watermarks = updated;
+        }
+        int tokens = revokedTokenRepository.deleteExpired(toZonedDateTime(now));
+        int users = tokenWatermarkRepository.deleteIssuedBefore(toZonedDateTime(oldestValid));
+        log.debug("Removed {} expired revoked tokens and {} expired token watermarks", tokens, users);
+    }
+
+    private static ZonedDateTime toZonedDateTime(long millis) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,96 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.domain.Authority;
+import org.fmarin.tournoidevincennes.repository.AuthorityRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory registry of the authorities, so user writes resolve their authority names without a query per name.
+ * <p>
+ * The authorities are loaded once the application is ready, into an immutable map which is replaced as a whole on
+ * {@link #refresh()}. An authority the registry does not know yet, like one added by a migration run after the
+ * application started, triggers a refresh before it is given up on.
+ * </p>
+ * <p>
+ * The authorities are detached entities: they only stand for their primary key when added to a user, which
+ * Hibernate writes to the join table without loading them.
+ * </p>
+ */
+@Service
+public class AuthorityRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(AuthorityRegistry.class);
+
+    private final AuthorityRepository authorityRepository;
+
+    private volatile Map<String, Authority> authorities = Collections.emptyMap();
+
+    @Autowired
+    public AuthorityRegistry(AuthorityRepository authorityRepository) {
+        this.authorityRepository = authorityRepository;
+    }
+
+    /**
+     * Load the authorities again, for the ones added or removed since the last time.
+     *
+     * @return the names of the authorities
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized Set<String> refresh() {
+        Map<String, Authority> loaded = new HashMap<>();
+        authorityRepository.findAll().forEach(authority -> loaded.put(authority.getName(), authority));
+        authorities = Collections.unmodifiableMap(loaded);
+        log.debug("Loaded the authorities {}", loaded.keySet());
+        return loaded.keySet();
+    }
+
+    /**
+     * @param name the name of the authority
+     * @return the authority, or null if there is none with that name
+     */
+    public Authority get(String name) {
+        Authority authority = authorities.get(name);
+        if (authority == null) {
+            authority = refreshFor(name);
+        }
+        return authority;
+    }
+
+    /**
+     * @param names the names of the authorities
+     * @return the authorities, leaving out the names of none
+     */
+    public Set<Authority> getAll(Collection<String> names) {
+        Set<Authority> result = new HashSet<>();
+        for (String name : names) {
+            Authority authority = get(name);
+            if (authority == null) {
+                log.warn("Ignored the unknown authority {}", name);
+            } else {
+                result.add(authority);
+            }
+        }
+        return result;
+    }
+
+    private synchronized Authority refreshFor(String name) {
+        // Another thread may have refreshed the registry while this one was waiting
+        if (!authorities.containsKey(name)) {
+            refresh();
+        }
+        return authorities.get(name);
+    }
+}
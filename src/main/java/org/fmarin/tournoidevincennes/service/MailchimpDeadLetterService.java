@@ -0,0 +1,112 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpDeadLetter;
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.repository.MailchimpDeadLetterRepository;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service for the Mailchimp subscriptions the outbox gave up on.
+ */
+@Service
+@Transactional
+public class MailchimpDeadLetterService {
+
+    private static final int REPLAY_CHUNK_SIZE = 500;
+
+    private final Logger log = LoggerFactory.getLogger(MailchimpDeadLetterService.class);
+
+    private final MailchimpDeadLetterRepository deadLetterRepository;
+
+    private final MailchimpOutboxRepository outboxRepository;
+
+    private final Meter deadLettered;
+
+    private final Meter replayed;
+
+    @Autowired
+    public MailchimpDeadLetterService(MailchimpDeadLetterRepository deadLetterRepository,
+                                      MailchimpOutboxRepository outboxRepository, MetricRegistry metricRegistry) {
+        this.deadLetterRepository = deadLetterRepository;
+        this.outboxRepository = outboxRepository;
+        this.deadLettered = metricRegistry.meter(MetricRegistry.name(MailchimpDeadLetterService.class, "deadLettered"));
+        this.replayed = metricRegistry.meter(MetricRegistry.name(MailchimpDeadLetterService.class, "replayed"));
+    }
+
+    /**
+     * Move outbox entries to the dead letter table.
+     *
+     * @param entries the entries which exhausted their attempts
+     */
+    public void deadLetter(List<MailchimpOutboxEntry> entries) {
+        deadLetterRepository.save(entries.stream().map(MailchimpDeadLetter::new).collect(Collectors.toList()));
+        outboxRepository.deleteInBatch(entries);
+        deadLettered.mark(entries.size());
+    }
+
+    @Transactional(readOnly = true)
+    public Page<MailchimpDeadLetter> findAll(Pageable pageable) {
+        return deadLetterRepository.findAll(pageable);
+    }
+
+    /**
+     * Put dead letters back in the outbox, as new entries with all their attempts left.
+     *
+     * @param ids the ids of the dead letters to replay, unknown ids are ignored
+     * @return the number of dead letters replayed
+     */
+    public int replay(Collection<Long> ids) {
+        return replay(deadLetterRepository.findAllByIdIn(ids));
+    }
+
+    /**
+     * Put all the dead letters back in the outbox, as new entries with all their attempts left.
+     *
+     * @return the number of dead letters replayed
+     */
+    public int replayAll() {
+        int count = 0;
+        List<MailchimpDeadLetter> chunk;
+        do {
+            // Replayed dead letters are deleted, so the first page is always the next chunk
+            chunk = deadLetterRepository.findAllByOrderById(new PageRequest(0, REPLAY_CHUNK_SIZE));
+            count += replay(chunk);
+        } while (chunk.size() == REPLAY_CHUNK_SIZE);
+        return count;
+    }
+
+    private int replay(List<MailchimpDeadLetter> deadLetters) {
+        if (deadLetters.isEmpty()) {
+            return 0;
+        }
+        List<MailchimpOutboxEntry> entries = new ArrayList<>(deadLetters.size());
+        List<Long> ids = new ArrayList<>(deadLetters.size());
+        for (MailchimpDeadLetter deadLetter : deadLetters) {
+            entries.add(new MailchimpOutboxEntry()
+                .email(deadLetter.getEmail())
+                .signupDate(deadLetter.getSignupDate()));
+            ids.add(deadLetter.getId());
+        }
+        outboxRepository.insertAll(entries);
+        deadLetterRepository.deleteByIdIn(ids);
+        replayed.mark(deadLetters.size());
+        log.info("Replayed {} Mailchimp dead letters", deadLetters.size());
+        return deadLetters.size();
+    }
+}
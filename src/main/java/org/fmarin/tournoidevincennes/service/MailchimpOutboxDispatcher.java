@@ -0,0 +1,295 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
+import org.fmarin.tournoidevincennes.domain.enumeration.OutboxStatus;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the Mailchimp outbox.
+ * <p>
+ * Pending entries are picked up in batches and pushed to Mailchimp on a small dedicated pool, so a slow
+ * Mailchimp never holds a request thread or a database connection. Failed entries are retried with an
+ * exponential backoff with jitter, and moved to the dead letters after
+ * {@code jhipster.mailchimp.outbox.max-attempts}, see {@link MailchimpDeadLetterService}. Entries which
+ * {@link MailchimpService} refuses to send, because Mailchimp is unavailable, are deferred without counting an
+ * attempt.
+ * </p>
+ * <p>
+ * Entries are claimed before being sent, see {@link MailchimpOutboxRepository#claimDue}, so several nodes can
+ * drain the outbox at the same time without sending an entry twice.
+ * </p>
+ * <p>
+ * By default each batch is sent with a single Mailchimp batch subscribe call. A batch is sent as soon as it is
+ * full, or once its oldest entry has waited {@code jhipster.mailchimp.outbox.max-batch-wait}, so bursts are
+ * grouped while a lone signup is still pushed quickly.
+ * </p>
+ */
+@Service
+public class MailchimpOutboxDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(MailchimpOutboxDispatcher.class);
+
+    private final MailchimpOutboxRepository outboxRepository;
+
+    private final MailchimpService mailchimpService;
+
+    private final MailchimpDeadLetterService deadLetterService;
+
+    private final JHipsterProperties.Mailchimp.Outbox properties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final Meter sent;
+
+    private final Meter retried;
+
+    private final Meter failed;
+
+    private final Meter deferred;
+
+    private final Timer deliveries;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @Autowired
+    public MailchimpOutboxDispatcher(MailchimpOutboxRepository outboxRepository, MailchimpService mailchimpService,
+                                     MailchimpDeadLetterService deadLetterService,
+                                     JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.mailchimpService = mailchimpService;
+        this.deadLetterService = deadLetterService;
+        this.properties = jHipsterProperties.getMailchimp().getOutbox();
+        this.metricRegistry = metricRegistry;
+        this.sent = metricRegistry.meter(MetricRegistry.name(MailchimpOutboxDispatcher.class, "sent"));
+        this.retried = metricRegistry.meter(MetricRegistry.name(MailchimpOutboxDispatcher.class, "retried"));
+        this.failed = metricRegistry.meter(MetricRegistry.name(MailchimpOutboxDispatcher.class, "failed"));
+        this.deferred = metricRegistry.meter(MetricRegistry.name(MailchimpOutboxDispatcher.class, "deferred"));
+        this.deliveries = metricRegistry.timer(MetricRegistry.name(MailchimpOutboxDispatcher.class, "deliveries"));
+    }
+
+    @PostConstruct
+    public void init() {
+        log.debug("Creating Mailchimp outbox executor");
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getConcurrency());
+        executor.setMaxPoolSize(properties.getConcurrency());
+        executor.setQueueCapacity(properties.getBatchSize());
+        executor.setThreadNamePrefix("mailchimp-outbox-");
+        executor.initialize();
+
+        metricRegistry.register(MetricRegistry.name(MailchimpOutboxDispatcher.class, "pending"),
+            new CachedGauge<Long>(10, TimeUnit.SECONDS) {
+                @Override
+                protected Long loadValue() {
+                    return outboxRepository.countByStatus(OutboxStatus.PENDING);
+                }
+            });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        log.debug("Shutting down Mailchimp outbox executor");
+        executor.shutdown();
+    }
+
+    /**
+     * Push the pending entries which are due to Mailchimp.
+     * <p>
+     * Runs with a fixed delay, so a round is always finished before the next one is picked up. A round keeps
+     * going while it finds full batches, so a burst is drained without waiting for the next poll.
+     * </p>
+     */
+    @Scheduled(initialDelayString = "${jhipster.mailchimp.outbox.poll-interval:5000}",
+        fixedDelayString = "${jhipster.mailchimp.outbox.poll-interval:5000}")
+    public void dispatch() {
+        List<MailchimpOutboxEntry> entries;
+        do {
+            if (!isReady()) {
+                return;
+            }
+            ZonedDateTime now = ZonedDateTime.now();
+            entries = outboxRepository.claimDue(now, properties.getBatchSize(),
+                now.plus(properties.getClaimLease(), ChronoUnit.MILLIS));
+            if (entries.isEmpty()) {
+                return;
+            }
+            log.debug("Dispatching {} Mailchimp outbox entries", entries.size());
+            List<Future<?>> results = new ArrayList<>();
+            if (properties.isBatchSubscribe()) {
+                int chunkSize = Math.min(properties.getBatchSize(), MailchimpService.MAX_BATCH_SIZE);
+                for (int i = 0; i < entries.size(); i += chunkSize) {
+                    List<MailchimpOutboxEntry> chunk = entries.subList(i, Math.min(i + chunkSize, entries.size()));
+                    results.add(executor.submit(() -> deliver(chunk)));
+                }
+            } else {
+                for (MailchimpOutboxEntry entry : entries) {
+                    results.add(executor.submit(() -> deliver(entry)));
+                }
+            }
+            if (!await(results)) {
+                return;
+            }
+        } while (entries.size() == properties.getBatchSize());
+    }
+
+    private boolean isReady() {
+        if (!properties.isBatchSubscribe() || properties.getMaxBatchWait() <= 0) {
+            return true;
+        }
+        // Only a peek: claiming a partial batch to give it back would cost a write on every poll
+        List<MailchimpOutboxEntry> entries = outboxRepository.findAllByStatusAndNextAttemptDateBeforeOrderById(
+            OutboxStatus.PENDING, ZonedDateTime.now(), new PageRequest(0, properties.getBatchSize()));
+        if (entries.size() >= properties.getBatchSize()) {
+            return true;
+        }
+        ZonedDateTime threshold = ZonedDateTime.now().minus(properties.getMaxBatchWait(), ChronoUnit.MILLIS);
+        return entries.stream().anyMatch(entry -> entry.getNextAttemptDate().isBefore(threshold));
+    }
+
+    private boolean await(List<Future<?>> results) {
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                log.error("Unexpected error while dispatching Mailchimp outbox entries", e.getCause());
+            }
+        }
+        return true;
+    }
+
+    private void deliver(MailchimpOutboxEntry entry) {
+        Timer.Context context = deliveries.time();
+        try {
+            mailchimpService.subscribe(entry.getEmail(), entry.getSignupDate());
+            succeed(entry);
+        } catch (MailchimpUnavailableException e) {
+            defer(entry, e.getMessage());
+        } catch (Exception e) {
+            fail(entry, e.toString());
+        } finally {
+            context.stop();
+        }
+        save(Collections.singletonList(entry));
+    }
+
+    private void deliver(List<MailchimpOutboxEntry> entries) {
+        // Mailchimp reports the errors by address, so a batch holds a single entry per normalized address: the
+        // errors of an address are then told apart from the ones of its case variants and duplicates
+        Map<String, MailchimpOutboxEntry> batch = new LinkedHashMap<>();
+        List<MailchimpOutboxEntry> rejected = new ArrayList<>();
+        for (MailchimpOutboxEntry entry : entries) {
+            if (batch.putIfAbsent(NormalizedEmail.of(entry.getEmail()).getValue(), entry) != null) {
+                defer(entry, "another entry with the same address is in the batch");
+                rejected.add(entry);
+            }
+        }
+        Map<String, ZonedDateTime> signupDates = new LinkedHashMap<>();
+        batch.values().forEach(entry -> signupDates.put(entry.getEmail(), entry.getSignupDate()));
+        List<Long> delivered = new ArrayList<>(batch.size());
+        Timer.Context context = deliveries.time();
+        try {
+            Map<String, String> errors = mailchimpService.batchSubscribe(signupDates);
+            batch.forEach((email, entry) -> {
+                if (errors.containsKey(email)) {
+                    fail(entry, errors.get(email));
+                    rejected.add(entry);
+                } else {
+                    delivered.add(entry.getId());
+                    sent.mark();
+                }
+            });
+        } catch (MailchimpUnavailableException e) {
+            batch.values().forEach(entry -> defer(entry, e.getMessage()));
+            rejected.addAll(batch.values());
+        } catch (Exception e) {
+            batch.values().forEach(entry -> fail(entry, e.toString()));
+            rejected.addAll(batch.values());
+        } finally {
+            context.stop();
+        }
+        if (!delivered.isEmpty()) {
+            outboxRepository.markAsSent(delivered);
+        }
+        save(rejected);
+    }
+
+    private void save(List<MailchimpOutboxEntry> entries) {
+        List<MailchimpOutboxEntry> exhausted = new ArrayList<>();
+        List<MailchimpOutboxEntry> others = new ArrayList<>();
+        for (MailchimpOutboxEntry entry : entries) {
+            (entry.getAttempts() >= properties.getMaxAttempts() ? exhausted : others).add(entry);
+        }
+        if (!others.isEmpty()) {
+            outboxRepository.save(others);
+        }
+        if (!exhausted.isEmpty()) {
+            deadLetterService.deadLetter(exhausted);
+        }
+    }
+
+    private void succeed(MailchimpOutboxEntry entry) {
+        entry.setStatus(OutboxStatus.SENT);
+        entry.setLastError(null);
+        sent.mark();
+    }
+
+    private void fail(MailchimpOutboxEntry entry, String error) {
+        entry.setAttempts(entry.getAttempts() + 1);
+        entry.setLastError(StringUtils.abbreviate(error, 255));
+        if (entry.getAttempts() >= properties.getMaxAttempts()) {
+            log.error("Giving up on subscribing {} to Mailchimp after {} attempts, moving it to the dead letters: {}",
+                entry.getEmail(), entry.getAttempts(), error);
+            failed.mark();
+        } else {
+            log.warn("Could not subscribe {} to Mailchimp, attempt {}: {}", entry.getEmail(),
+                entry.getAttempts(), error);
+            entry.setNextAttemptDate(ZonedDateTime.now().plus(backoff(entry.getAttempts()), ChronoUnit.MILLIS));
+            retried.mark();
+        }
+    }
+
+    private void defer(MailchimpOutboxEntry entry, String reason) {
+        // Mailchimp was not called, so this does not count as an attempt
+        log.debug("Deferring the subscription of {} to Mailchimp: {}", entry.getEmail(), reason);
+        entry.setNextAttemptDate(ZonedDateTime.now().plus(properties.getRetryDelay(), ChronoUnit.MILLIS));
+        deferred.mark();
+    }
+
+    private long backoff(int attempts) {
+        long delay = properties.getRetryDelay() << Math.min(attempts - 1, 16);
+        // Half of the delay is random, so entries which failed together are not all retried together
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
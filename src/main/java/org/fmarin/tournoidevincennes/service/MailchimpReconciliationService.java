@@ -0,0 +1,210 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.MailchimpMember;
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.domain.ReconciliationWatermark;
+import org.fmarin.tournoidevincennes.repository.MailchimpMemberRepository;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ReconciliationWatermarkRepository;
+import org.fmarin.tournoidevincennes.service.dto.MailchimpReconciliationReportDTO;
+import org.fmarin.tournoidevincennes.service.util.SortedMerge;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ecwid.maleorang.MailchimpException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compares the Mailchimp list with the prospects, to catch the subscriptions the outbox missed.
+ * <p>
+ * Each run only looks at what changed since the previous one, its watermark: the members changed since then are
+ * read page by page and staged in the {@code mailchimp_member} table, then compared with the prospects created
+ * since then, see {@link MailchimpMemberRepository#mergeWithProspects}. As the Mailchimp API cannot sort members by
+ * e-mail, staging them lets the database sort both sides, which are then walked side by side with a
+ * {@link SortedMerge}: memory use depends on {@code jhipster.mailchimp.reconciliation.page-size}, not on the size of
+ * the list.
+ * </p>
+ * <p>
+ * Prospects missing from the list are queued in the Mailchimp outbox again. Members which are not prospects, and
+ * prospects which unsubscribed, are only counted, as they are legitimate. Prospects created in the last
+ * {@code jhipster.mailchimp.reconciliation.grace-period} are left to the next run, so the outbox has time to send
+ * them.
+ * </p>
+ * <p>
+ * A run holds a lease on its watermark, so a single node runs it at a time. A failed run keeps the previous
+ * watermark, so the next one compares the same period again.
+ * </p>
+ */
+@Service
+public class MailchimpReconciliationService {
+
+    private static final ZonedDateTime FIRST_WATERMARK = Instant.EPOCH.atZone(ZoneId.systemDefault());
+
+    private final Logger log = LoggerFactory.getLogger(MailchimpReconciliationService.class);
+
+    private final MailchimpService mailchimpService;
+
+    private final MailchimpMemberRepository memberRepository;
+
+    private final MailchimpOutboxRepository outboxRepository;
+
+    private final ReconciliationWatermarkRepository watermarkRepository;
+
+    private final JHipsterProperties.Mailchimp.Reconciliation properties;
+
+    private final Timer runs;
+
+    private final Meter membersRead;
+
+    private final Meter matched;
+
+    private final Meter missingInMailchimp;
+
+    private final Meter missingLocally;
+
+    private final Meter unsubscribed;
+
+    @Autowired
+    public MailchimpReconciliationService(MailchimpService mailchimpService, MailchimpMemberRepository memberRepository,
+                                          MailchimpOutboxRepository outboxRepository,
+                                          ReconciliationWatermarkRepository watermarkRepository,
+                                          JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry) {
+        this.mailchimpService = mailchimpService;
+        this.memberRepository = memberRepository;
+        this.outboxRepository = outboxRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.properties = jHipsterProperties.getMailchimp().getReconciliation();
+        this.runs = metricRegistry.timer(MetricRegistry.name(MailchimpReconciliationService.class, "runs"));
+        this.membersRead = metricRegistry.meter(MetricRegistry.name(MailchimpReconciliationService.class, "membersRead"));
+        this.matched = metricRegistry.meter(MetricRegistry.name(MailchimpReconciliationService.class, "matched"));
+        this.missingInMailchimp =
+            metricRegistry.meter(MetricRegistry.name(MailchimpReconciliationService.class, "missingInMailchimp"));
+        this.missingLocally =
+            metricRegistry.meter(MetricRegistry.name(MailchimpReconciliationService.class, "missingLocally"));
+        this.unsubscribed = metricRegistry.meter(MetricRegistry.name(MailchimpReconciliationService.class, "unsubscribed"));
+    }
+
+    @Scheduled(initialDelayString = "${jhipster.mailchimp.reconciliation.poll-interval:3600000}",
+        fixedDelayString = "${jhipster.mailchimp.reconciliation.poll-interval:3600000}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * Compare the Mailchimp list with the prospects, since the previous run.
+     *
+     * @return the report of the run, or null if another node is running it, or if it failed
+     */
+    public MailchimpReconciliationReportDTO reconcile() {
+        ZonedDateTime now = ZonedDateTime.now();
+        if (watermarkRepository.acquireLease(ReconciliationWatermark.MAILCHIMP, now,
+            now.plus(properties.getLeaseDuration(), ChronoUnit.MILLIS)) == 0) {
+            log.debug("Mailchimp reconciliation already running on another node");
+            return null;
+        }
+        boolean advanced = false;
+        try (Timer.Context ignored = runs.time()) {
+            ZonedDateTime since = watermarkRepository.findOne(ReconciliationWatermark.MAILCHIMP).getWatermark();
+            if (since == null) {
+                since = FIRST_WATERMARK;
+            }
+            ZonedDateTime until = now.minus(properties.getGracePeriod(), ChronoUnit.MILLIS);
+            MailchimpReconciliationReportDTO report = new MailchimpReconciliationReportDTO(since, until);
+            log.debug("Reconciling the Mailchimp list since {}", since);
+
+            memberRepository.clear();
+            report.setMembersRead(stageMembersChangedSince(since));
+            memberRepository.mergeWithProspects(since, until, properties.getPageSize(),
+                (prospects, members) -> merge(prospects, members, report));
+            memberRepository.clear();
+
+            watermarkRepository.advance(ReconciliationWatermark.MAILCHIMP, until);
+            advanced = true;
+            membersRead.mark(report.getMembersRead());
+            matched.mark(report.getMatched());
+            missingInMailchimp.mark(report.getMissingInMailchimp());
+            missingLocally.mark(report.getMissingLocally());
+            unsubscribed.mark(report.getUnsubscribed());
+            log.info("Reconciled the Mailchimp list: {}", report);
+            return report;
+        } catch (IOException | MailchimpException | MailchimpUnavailableException e) {
+            log.warn("Could not read the Mailchimp list, the reconciliation will be retried: {}", e.getMessage());
+            return null;
+        } finally {
+            if (!advanced) {
+                watermarkRepository.releaseLease(ReconciliationWatermark.MAILCHIMP);
+            }
+        }
+    }
+
+    private long stageMembersChangedSince(ZonedDateTime since)
+        throws IOException, MailchimpException, MailchimpUnavailableException {
+        int pageSize = Math.min(properties.getPageSize(), MailchimpService.MAX_PAGE_SIZE);
+        long read = 0;
+        List<MailchimpMember> page;
+        do {
+            // Members changing while the list is read may shift between pages, the next run will see them again
+            page = mailchimpService.getMembersChangedSince(since, (int) read, pageSize);
+            if (!page.isEmpty()) {
+                memberRepository.upsertAll(page);
+            }
+            read += page.size();
+        } while (page.size() == pageSize);
+        return read;
+    }
+
+    private Void merge(Iterator<Prospect> prospects, Iterator<MailchimpMember> members,
+                       MailchimpReconciliationReportDTO report) {
+        List<MailchimpOutboxEntry> entries = new ArrayList<>();
+        SortedMerge.merge(prospects, prospect -> prospect.getNormalizedEmail().getValue(),
+            members, MailchimpMember::getEmail,
+            new SortedMerge.Handler<Prospect, MailchimpMember>() {
+
+                @Override
+                public void onLeftOnly(Prospect prospect) {
+                    report.setMissingInMailchimp(report.getMissingInMailchimp() + 1);
+                    entries.add(new MailchimpOutboxEntry()
+                        .email(prospect.getEmail())
+                        .signupDate(prospect.getCreatedDate()));
+                    if (entries.size() == properties.getPageSize()) {
+                        outboxRepository.insertAll(entries);
+                        entries.clear();
+                    }
+                }
+
+                @Override
+                public void onRightOnly(MailchimpMember member) {
+                    report.setMissingLocally(report.getMissingLocally() + 1);
+                }
+
+                @Override
+                public void onBoth(Prospect prospect, MailchimpMember member) {
+                    if (member.isSubscribed()) {
+                        report.setMatched(report.getMatched() + 1);
+                    } else {
+                        report.setUnsubscribed(report.getUnsubscribed() + 1);
+                    }
+                }
+            });
+        if (!entries.isEmpty()) {
+            outboxRepository.insertAll(entries);
+        }
+        return null;
+    }
+}
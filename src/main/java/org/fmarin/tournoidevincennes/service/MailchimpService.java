@@ -0,0 +1,411 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.MailchimpMember;
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
+import org.fmarin.tournoidevincennes.service.util.CircuitBreaker;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ecwid.maleorang.MailchimpClient;
+import com.ecwid.maleorang.MailchimpException;
+import com.ecwid.maleorang.MailchimpMethod;
+import com.ecwid.maleorang.MailchimpObject;
+import com.ecwid.maleorang.annotation.APIVersion;
+import com.ecwid.maleorang.annotation.Field;
+import com.ecwid.maleorang.annotation.HttpMethod;
+import com.ecwid.maleorang.annotation.Method;
+import com.ecwid.maleorang.annotation.PathParam;
+import com.ecwid.maleorang.annotation.QueryStringParameter;
+import com.ecwid.maleorang.connector.HttpClientConnector;
+import com.ecwid.maleorang.method.v3_0.lists.members.EditMemberMethod;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for pushing prospects to the Mailchimp list, and reading it back.
+ * <p>
+ * This is only called by the {@link MailchimpOutboxDispatcher} and the {@link MailchimpReconciliationService}, never
+ * from a request thread.
+ * </p>
+ * <p>
+ * A single Mailchimp client is shared by all calls, so its HTTP connections are kept alive and reused. Its pool
+ * holds a connection for each call the bulkhead lets through, so no call waits for a connection in the client. Calls
+ * are guarded by:
+ * <ul>
+ * <li>a bulkhead, at most {@code jhipster.mailchimp.max-concurrent-calls} calls being in flight at once,</li>
+ * <li>a {@link CircuitBreaker}, configured in {@code jhipster.mailchimp.circuit-breaker}, which stops calling
+ * Mailchimp while it fails or is too slow.</li>
+ * </ul>
+ * A call refused by either throws a {@link MailchimpUnavailableException} right away.
+ * </p>
+ * <p>
+ * Without an API key, as in development, Mailchimp is never called and every call is refused the same way, so the
+ * outbox keeps the prospects until a key is configured. The production profile requires the key.
+ * </p>
+ */
+@Service
+public class MailchimpService {
+
+    private final Logger log = LoggerFactory.getLogger(MailchimpService.class);
+
+    /**
+     * Maximum number of members accepted by a single batch subscribe call.
+     */
+    public static final int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Maximum number of members returned by a single list members call.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String SUBSCRIBED = "subscribed";
+
+    private static final String CONTACT_EXISTS = "ERROR_CONTACT_EXISTS";
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final String listId;
+
+    private final long maxWaitForCall;
+
+    private final MailchimpClient mailchimpClient;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final Semaphore bulkhead;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Timer subscribeCalls;
+
+    private final Timer batchSubscribeCalls;
+
+    private final Timer listMembersCalls;
+
+    private final Meter failures;
+
+    private final Meter shortCircuited;
+
+    private final Meter bulkheadRejected;
+
+    @Autowired
+    public MailchimpService(JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry) {
+        this(jHipsterProperties, metricRegistry, HttpClients.custom());
+    }
+
+    /**
+     * @param httpClientBuilder the builder of the HTTP client, given the connection pool and the timeouts here
+     */
+    MailchimpService(JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry,
+                     HttpClientBuilder httpClientBuilder) {
+        JHipsterProperties.Mailchimp properties = jHipsterProperties.getMailchimp();
+        JHipsterProperties.Mailchimp.CircuitBreaker circuitBreakerProperties = properties.getCircuitBreaker();
+        this.listId = properties.getListId();
+        this.maxWaitForCall = properties.getMaxWaitForCall();
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxConcurrentCalls());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConcurrentCalls());
+        String apiKey = properties.getApiKey();
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            log.warn("No Mailchimp API key is set, in the MAILCHIMP_API_KEY environment variable: the prospects " +
+                "are kept in the outbox and not pushed to Mailchimp");
+            this.mailchimpClient = null;
+        } else if (apiKey.startsWith("${")) {
+            // An unset environment variable without a default leaves its placeholder as the value
+            throw new IllegalArgumentException("jhipster.mailchimp.api-key must be set, from the MAILCHIMP_API_KEY " +
+                "environment variable");
+        } else {
+            this.mailchimpClient = new MailchimpClient(apiKey, new HttpClientConnector(httpClientBuilder
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                    .setConnectTimeout(properties.getConnectTimeout())
+                    .setSocketTimeout(properties.getReadTimeout())
+                    .setConnectionRequestTimeout((int) maxWaitForCall)
+                    .build())
+                .build()));
+        }
+        this.bulkhead = new Semaphore(properties.getMaxConcurrentCalls());
+        this.circuitBreaker = new CircuitBreaker(circuitBreakerProperties.getFailureRateThreshold(),
+            circuitBreakerProperties.getSlowCallRateThreshold(),
+            TimeUnit.MILLISECONDS.toNanos(circuitBreakerProperties.getSlowCallDuration()),
+            circuitBreakerProperties.getWindowSize(), circuitBreakerProperties.getMinimumCalls(),
+            TimeUnit.MILLISECONDS.toNanos(circuitBreakerProperties.getOpenDuration()));
+        this.subscribeCalls = metricRegistry.timer(MetricRegistry.name(MailchimpService.class, "subscribe"));
+        this.batchSubscribeCalls = metricRegistry.timer(MetricRegistry.name(MailchimpService.class, "batchSubscribe"));
+        this.listMembersCalls = metricRegistry.timer(MetricRegistry.name(MailchimpService.class, "listMembers"));
+        this.failures = metricRegistry.meter(MetricRegistry.name(MailchimpService.class, "failures"));
+        this.shortCircuited = metricRegistry.meter(MetricRegistry.name(MailchimpService.class, "shortCircuited"));
+        this.bulkheadRejected = metricRegistry.meter(MetricRegistry.name(MailchimpService.class, "bulkheadRejected"));
+        metricRegistry.register(MetricRegistry.name(MailchimpService.class, "circuitBreaker", "state"),
+            (Gauge<String>) () -> circuitBreaker.getState().name());
+        metricRegistry.register(MetricRegistry.name(MailchimpService.class, "circuitBreaker", "failureRate"),
+            (Gauge<Float>) circuitBreaker::getFailureRate);
+        metricRegistry.register(MetricRegistry.name(MailchimpService.class, "circuitBreaker", "slowCallRate"),
+            (Gauge<Float>) circuitBreaker::getSlowCallRate);
+        metricRegistry.register(MetricRegistry.name(MailchimpService.class, "inFlight"),
+            (Gauge<Integer>) () -> properties.getMaxConcurrentCalls() - bulkhead.availablePermits());
+        metricRegistry.register(MetricRegistry.name(MailchimpService.class, "connections", "leased"),
+            (Gauge<Integer>) () -> connectionManager.getTotalStats().getLeased());
+        metricRegistry.register(MetricRegistry.name(MailchimpService.class, "connections", "available"),
+            (Gauge<Integer>) () -> connectionManager.getTotalStats().getAvailable());
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        log.debug("Closing Mailchimp client");
+        if (mailchimpClient != null) {
+            mailchimpClient.close();
+        }
+        connectionManager.close();
+    }
+
+    public void subscribe(String email, ZonedDateTime signupDate)
+        throws IOException, MailchimpException, MailchimpUnavailableException {
+        log.debug("Subscribing {} to the Mailchimp list", email);
+        EditMemberMethod.Create subscribeProspectToListMethod = new EditMemberMethod.Create(listId, email);
+        subscribeProspectToListMethod.status = SUBSCRIBED;
+        subscribeProspectToListMethod.timestamp_signup = Date.from(signupDate.toInstant());
+        execute(subscribeProspectToListMethod, subscribeCalls);
+    }
+
+    /**
+     * Subscribe several members to the list in a single call.
+     *
+     * @param signupDates the signup date of each member, by e-mail
+     * @return the error reported by Mailchimp for each rejected member, by normalized e-mail, as Mailchimp may not
+     * report the address as it was given; members already on the list are not reported
+     * @throws IOException if the call itself failed, in which case no member was subscribed
+     * @throws MailchimpException if Mailchimp rejected the whole call
+     * @throws MailchimpUnavailableException if the call was not attempted, in which case it should be deferred
+     */
+    public Map<String, String> batchSubscribe(Map<String, ZonedDateTime> signupDates)
+        throws IOException, MailchimpException, MailchimpUnavailableException {
+        log.debug("Subscribing {} members to the Mailchimp list", signupDates.size());
+        if (signupDates.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Mailchimp accepts at most " + MAX_BATCH_SIZE + " members per batch");
+        }
+        BatchSubscribeMethod method = new BatchSubscribeMethod(listId);
+        signupDates.forEach((email, signupDate) -> method.members.add(new BatchMember(email, signupDate)));
+        BatchSubscribeResult result = execute(method, batchSubscribeCalls);
+
+        Map<String, String> errors = new HashMap<>();
+        if (result.errors != null) {
+            result.errors.stream()
+                .filter(error -> !CONTACT_EXISTS.equals(error.error_code) && error.email_address != null)
+                .forEach(error -> errors.put(NormalizedEmail.of(error.email_address).getValue(), error.error));
+        }
+        return errors;
+    }
+
+    /**
+     * Read a page of the members of the list changed since the given date, oldest change first.
+     *
+     * @param since the date members must have changed after
+     * @param offset the number of members to skip
+     * @param count the number of members to read, Mailchimp returns at most {@link #MAX_PAGE_SIZE}
+     * @return the members, with their normalized e-mail, fewer than count on the last page
+     * @throws IOException if the call itself failed
+     * @throws MailchimpException if Mailchimp rejected the call
+     * @throws MailchimpUnavailableException if the call was not attempted
+     */
+    public List<MailchimpMember> getMembersChangedSince(ZonedDateTime since, int offset, int count)
+        throws IOException, MailchimpException, MailchimpUnavailableException {
+        log.debug("Reading {} Mailchimp members changed since {}, from {}", count, since, offset);
+        ListMembersMethod method = new ListMembersMethod(listId);
+        method.since_last_changed = since.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        method.offset = Integer.toString(offset);
+        method.count = Integer.toString(Math.min(count, MAX_PAGE_SIZE));
+        ListMembersResult result = execute(method, listMembersCalls);
+
+        List<MailchimpMember> members = new ArrayList<>();
+        if (result.members != null) {
+            for (ListMember member : result.members) {
+                ZonedDateTime lastChanged = member.last_changed != null ?
+                    ZonedDateTime.parse(member.last_changed, DateTimeFormatter.ISO_OFFSET_DATE_TIME) : null;
+                members.add(new MailchimpMember(NormalizedEmail.of(member.email_address).getValue(), member.status,
+                    lastChanged));
+            }
+        }
+        return members;
+    }
+
+    private <R extends MailchimpObject> R execute(MailchimpMethod<R> method, Timer timer)
+        throws IOException, MailchimpException, MailchimpUnavailableException {
+        if (mailchimpClient == null) {
+            throw new MailchimpUnavailableException("No Mailchimp API key is set");
+        }
+        if (!circuitBreaker.tryAcquirePermission(System.nanoTime())) {
+            shortCircuited.mark();
+            throw new MailchimpUnavailableException("The Mailchimp circuit breaker is open");
+        }
+        if (!acquireBulkhead()) {
+            circuitBreaker.releasePermission();
+            bulkheadRejected.mark();
+            throw new MailchimpUnavailableException("Too many calls to Mailchimp in flight");
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            R result = mailchimpClient.execute(method);
+            failed = false;
+            return result;
+        } catch (MailchimpException e) {
+            // Mailchimp answered, so it is up, unless it says otherwise
+            failed = e.code >= 500 || e.code == TOO_MANY_REQUESTS;
+            throw e;
+        } finally {
+            bulkhead.release();
+            long end = System.nanoTime();
+            timer.update(end - start, TimeUnit.NANOSECONDS);
+            if (failed) {
+                failures.mark();
+                circuitBreaker.onFailure(end - start, end);
+            } else {
+                circuitBreaker.onSuccess(end - start, end);
+            }
+            if (circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+                log.warn("Mailchimp circuit breaker is open, calls are deferred for now");
+            }
+        }
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(maxWaitForCall, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Batch subscribe to a list, see http://developer.mailchimp.com/documentation/mailchimp/reference/lists/#create-post_lists_list_id
+     */
+    @Method(httpMethod = HttpMethod.POST, version = APIVersion.v3_0, path = "/lists/{list_id}")
+    public static class BatchSubscribeMethod extends MailchimpMethod<BatchSubscribeResult> {
+
+        @PathParam
+        public final String list_id;
+
+        @Field
+        public final List<BatchMember> members = new ArrayList<>();
+
+        @Field
+        public Boolean update_existing = false;
+
+        public BatchSubscribeMethod(String listId) {
+            this.list_id = listId;
+        }
+    }
+
+    public static class BatchMember extends MailchimpObject {
+
+        @Field
+        public String email_address;
+
+        @Field
+        public String status = SUBSCRIBED;
+
+        @Field
+        public Date timestamp_signup;
+
+        public BatchMember() {
+        }
+
+        BatchMember(String email, ZonedDateTime signupDate) {
+            this.email_address = email;
+            this.timestamp_signup = Date.from(signupDate.toInstant());
+        }
+    }
+
+    public static class BatchSubscribeResult extends MailchimpObject {
+
+        @Field
+        public Integer total_created;
+
+        @Field
+        public Integer error_count;
+
+        @Field
+        public List<BatchError> errors;
+    }
+
+    public static class BatchError extends MailchimpObject {
+
+        @Field
+        public String email_address;
+
+        @Field
+        public String error;
+
+        @Field
+        public String error_code;
+    }
+
+    /**
+     * List the members of a list, see http://developer.mailchimp.com/documentation/mailchimp/reference/lists/members/#read-get_lists_list_id_members
+     */
+    @Method(httpMethod = HttpMethod.GET, version = APIVersion.v3_0, path = "/lists/{list_id}/members")
+    public static class ListMembersMethod extends MailchimpMethod<ListMembersResult> {
+
+        @PathParam
+        public final String list_id;
+
+        @QueryStringParameter("since_last_changed")
+        public String since_last_changed;
+
+        @QueryStringParameter("offset")
+        public String offset;
+
+        @QueryStringParameter("count")
+        public String count;
+
+        @QueryStringParameter("sort_field")
+        public String sort_field = "last_changed";
+
+        @QueryStringParameter("sort_dir")
+        public String sort_dir = "ASC";
+
+        @QueryStringParameter("fields")
+        public String fields = "members.email_address,members.status,members.last_changed";
+
+        public ListMembersMethod(String listId) {
+            this.list_id = listId;
+        }
+    }
+
+    public static class ListMembersResult extends MailchimpObject {
+
+        @Field
+        public List<ListMember> members;
+    }
+
+    public static class ListMember extends MailchimpObject {
+
+        @Field
+        public String email_address;
+
+        @Field
+        public String status;
+
+        @Field
+        public String last_changed;
+    }
+}
@@ -0,0 +1,14 @@
+package org.fmarin.tournoidevincennes.service;
+
+/**
+ * Thrown when a call to Mailchimp is not even attempted, because its circuit breaker is open or too many calls are
+ * already in flight. The call should be deferred, not counted as a failed attempt.
+ */
+public class MailchimpUnavailableException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public MailchimpUnavailableException(String message) {
+        super(message);
+    }
+}
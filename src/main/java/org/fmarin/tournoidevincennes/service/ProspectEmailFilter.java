@@ -0,0 +1,117 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+import org.fmarin.tournoidevincennes.service.util.ScalableBloomFilter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+/**
+ * In-memory Bloom filter of the registered prospect e-mails, in their normalized form.
+ * <p>
+ * It tells for sure when an e-mail was never registered, so most signups skip the duplicate check entirely,
+ * and only the "possibly registered" ones go to the database. The database stays the source of truth: the
+ * filter is only a shortcut, and says "possibly registered" for everything until it has been loaded.
+ * </p>
+ * <p>
+ * It is loaded in the background once the application is ready, and kept current by {@link ProspectService}.
+ * Being local to each instance, it misses the e-mails registered by other instances since it was loaded, which
+ * is fine as the insert itself still refuses duplicates.
+ * </p>
+ */
+@Service
+public class ProspectEmailFilter {
+
+    private final Logger log = LoggerFactory.getLogger(ProspectEmailFilter.class);
+
+    private final ProspectRepository repository;
+
+    private final ScalableBloomFilter filter;
+
+    private final Counter definitelyNew;
+
+    private final Counter possiblyRegistered;
+
+    private final Counter falsePositives;
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public ProspectEmailFilter(ProspectRepository repository, JHipsterProperties jHipsterProperties,
+                               MetricRegistry metricRegistry) {
+        this.repository = repository;
+        JHipsterProperties.Prospect.EmailFilter properties = jHipsterProperties.getProspect().getEmailFilter();
+        this.filter = new ScalableBloomFilter(properties.getExpectedInsertions(), properties.getFalsePositiveRate());
+        this.definitelyNew = metricRegistry.counter(MetricRegistry.name(ProspectEmailFilter.class, "definitely-new"));
+        this.possiblyRegistered = metricRegistry.counter(MetricRegistry.name(ProspectEmailFilter.class, "possibly-registered"));
+        this.falsePositives = metricRegistry.counter(MetricRegistry.name(ProspectEmailFilter.class, "false-positives"));
+        metricRegistry.register(MetricRegistry.name(ProspectEmailFilter.class, "size"),
+            (Gauge<Long>) filter::approximateSize);
+        metricRegistry.register(MetricRegistry.name(ProspectEmailFilter.class, "memory-bytes"),
+            (Gauge<Long>) filter::memoryInBytes);
+        metricRegistry.register(MetricRegistry.name(ProspectEmailFilter.class, "expected-false-positive-rate"),
+            (Gauge<Double>) filter::expectedFalsePositiveProbability);
+    }
+
+    /**
+     * Load all the registered e-mails, once the application is ready.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        log.debug("Loading the prospect e-mail filter");
+        long start = System.currentTimeMillis();
+        try (Stream<NormalizedEmail> emails = repository.streamAllNormalizedEmails()) {
+            emails.forEach(email -> filter.add(email.getValue()));
+            loaded = true;
+            log.info("Loaded the prospect e-mail filter with {} e-mails in {} ms, using {} bytes",
+                filter.approximateSize(), System.currentTimeMillis() - start, filter.memoryInBytes());
+        } catch (RuntimeException e) {
+            // Without the filter every signup is checked against the database, which is slower but still correct
+            log.error("Could not load the prospect e-mail filter, falling back to database checks", e);
+        }
+    }
+
+    /**
+     * @return false if the e-mail is definitely not registered, true if it might be
+     */
+    public boolean mightBeRegistered(String email) {
+        if (loaded && !filter.mightContain(NormalizedEmail.of(email).getValue())) {
+            definitelyNew.inc();
+            return false;
+        }
+        possiblyRegistered.inc();
+        return true;
+    }
+
+    public void registered(String email) {
+        filter.add(NormalizedEmail.of(email).getValue());
+    }
+
+    /**
+     * Record that an e-mail reported as possibly registered was not.
+     */
+    public void falsePositive() {
+        if (loaded) {
+            falsePositives.inc();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+}
@@ -0,0 +1,122 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+import org.fmarin.tournoidevincennes.service.dto.ProspectExportDTO;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Service for exporting prospects in bulk, typically for nightly CRM dumps.
+ * <p>
+ * Prospects are read page by page with keyset pagination on their id, and each page is written out before the
+ * next one is read, so memory use does not depend on the size of the table.
+ * </p>
+ */
+@Service
+public class ProspectExportService {
+
+    private final Logger log = LoggerFactory.getLogger(ProspectExportService.class);
+
+    private static final ZonedDateTime EPOCH = Instant.EPOCH.atZone(ZoneOffset.UTC);
+
+    private final ProspectRepository prospectRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final JHipsterProperties.Prospect.Export properties;
+
+    @Autowired
+    public ProspectExportService(ProspectRepository prospectRepository, ObjectMapper objectMapper,
+                                 JHipsterProperties jHipsterProperties) {
+        this.prospectRepository = prospectRepository;
+        this.objectMapper = objectMapper;
+        this.properties = jHipsterProperties.getProspect().getExport();
+    }
+
+    /**
+     * Export the prospects, ordered by id.
+     * <p>
+     * Each row has the id, e-mail and creation date of the prospect, the last id written being the watermark to
+     * resume from on the next incremental export.
+     * </p>
+     *
+     * @param sinceId only export the prospects with a greater id, if not null
+     * @param sinceCreatedDate only export the prospects created at or after this date, if not null
+     * @param format the format to write
+     * @param writer where to write the prospects
+     * @return the number of prospects exported
+     * @throws IOException if the prospects could not be written
+     */
+    public long exportProspects(Long sinceId, ZonedDateTime sinceCreatedDate, ProspectFileFormat format,
+                                Writer writer) throws IOException {
+        long lastId = sinceId != null ? sinceId : 0;
+        ZonedDateTime createdDate = sinceCreatedDate != null ? sinceCreatedDate : EPOCH;
+        PageRequest pageRequest = new PageRequest(0, properties.getPageSize());
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)
+            .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        // Rows are separated by new lines, not by the default space
+        generator.setRootValueSeparator(null);
+        if (format == ProspectFileFormat.CSV) {
+            writer.write("id,email,created_date\n");
+        }
+        long exported = 0;
+        List<ProspectExportDTO> page;
+        do {
+            page = prospectRepository.findExportPageAfter(lastId, createdDate, pageRequest);
+            for (ProspectExportDTO prospect : page) {
+                if (format == ProspectFileFormat.CSV) {
+                    writeCsv(prospect, writer);
+                } else {
+                    writeJson(prospect, generator);
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+            exported += page.size();
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == pageRequest.getPageSize());
+        log.debug("Exported {} prospects, up to id {}", exported, lastId);
+        return exported;
+    }
+
+    private static void writeCsv(ProspectExportDTO prospect, Writer writer) throws IOException {
+        writer.write(Long.toString(prospect.getId()));
+        writer.write(',');
+        writer.write(escapeCsv(prospect.getEmail()));
+        writer.write(',');
+        writer.write(prospect.getCreatedDate().toInstant().toString());
+        writer.write('\n');
+    }
+
+    private static void writeJson(ProspectExportDTO prospect, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", prospect.getId());
+        generator.writeStringField("email", prospect.getEmail());
+        generator.writeStringField("createdDate", prospect.getCreatedDate().toInstant().toString());
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
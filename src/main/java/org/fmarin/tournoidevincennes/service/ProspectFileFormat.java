@@ -0,0 +1,27 @@
+package org.fmarin.tournoidevincennes.service;
+
+/**
+ * The file formats prospects are imported from and exported to.
+ */
+public enum ProspectFileFormat {
+
+    /** One prospect per line, with a header line */
+    CSV(ProspectFileFormat.TEXT_CSV),
+
+    /** One JSON object per line */
+    NDJSON(ProspectFileFormat.APPLICATION_NDJSON);
+
+    public static final String TEXT_CSV = "text/csv";
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final String mediaType;
+
+    ProspectFileFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+}
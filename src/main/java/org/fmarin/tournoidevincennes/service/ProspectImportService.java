@@ -0,0 +1,243 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.service.dto.ProspectImportReportDTO;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service for importing prospects in bulk, typically from partner mailing lists.
+ * <p>
+ * The upload is read line by line and written in JDBC batches, each in its own transaction, so memory use does
+ * not depend on the size of the upload and a failure only loses the current batch. Lines are read up to
+ * {@code jhipster.prospect.bulk-import.max-line-length} characters, longer ones being rejected, so neither does it
+ * depend on the length of a line. E-mails are validated with
+ * the same rules as {@link Prospect}, and the ones already registered, or seen earlier in the upload, are skipped.
+ * </p>
+ */
+@Service
+public class ProspectImportService {
+
+    private final Logger log = LoggerFactory.getLogger(ProspectImportService.class);
+
+    private static final int MAX_REPORTED_VALUE_LENGTH = 100;
+
+    private final ProspectService prospectService;
+
+    private final Validator validator;
+
+    private final ObjectMapper objectMapper;
+
+    private final JHipsterProperties.Prospect.BulkImport properties;
+
+    private final Meter imported;
+
+    private final Meter rejected;
+
+    @Autowired
+    public ProspectImportService(ProspectService prospectService, ObjectMapper objectMapper,
+                                 JHipsterProperties jHipsterProperties, MetricRegistry metricRegistry) {
+        this.prospectService = prospectService;
+        this.validator = Validation.buildDefaultValidatorFactory().getValidator();
+        this.objectMapper = objectMapper;
+        this.properties = jHipsterProperties.getProspect().getBulkImport();
+        this.imported = metricRegistry.meter(MetricRegistry.name(ProspectImportService.class, "imported"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(ProspectImportService.class, "rejected"));
+    }
+
+    /**
+     * Import the prospects of an upload.
+     * <p>
+     * In CSV, the e-mail is read from the "email" column, or from the first one when there is no header. In NDJSON,
+     * it is read from the "email" property.
+     * </p>
+     * <p>
+     * The batches imported before a failure to read the upload stay imported.
+     * </p>
+     *
+     * @param reader the upload
+     * @param format the format of the upload
+     * @return the report of the import
+     * @throws IOException if the upload could not be read
+     */
+    public ProspectImportReportDTO importProspects(Reader reader, ProspectFileFormat format) throws IOException {
+        ProspectImportReportDTO report = new ProspectImportReportDTO();
+        BufferedReader lines = new BufferedReader(reader);
+        StringBuilder buffer = new StringBuilder();
+        Map<NormalizedEmail, String> batch = new LinkedHashMap<>();
+        int emailColumn = -1;
+        long batches = 0;
+        String line;
+        while ((line = readLine(lines, buffer, properties.getMaxLineLength())) != null) {
+            report.setLines(report.getLines() + 1);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (line.length() > properties.getMaxLineLength()) {
+                reject(report, line, "Line too long");
+                continue;
+            }
+            String email;
+            if (format == ProspectFileFormat.CSV) {
+                List<String> cells = parseCsvLine(line);
+                if (emailColumn < 0) {
+                    emailColumn = findEmailColumn(cells);
+                    if (emailColumn >= 0) {
+                        // This is the header
+                        continue;
+                    }
+                    emailColumn = 0;
+                }
+                email = emailColumn < cells.size() ? cells.get(emailColumn).trim() : null;
+            } else {
+                try {
+                    JsonNode value = objectMapper.readTree(line).get("email");
+                    email = value != null && value.isTextual() ? value.asText().trim() : null;
+                } catch (IOException e) {
+                    reject(report, line, "Invalid JSON");
+                    continue;
+                }
+            }
+            String violation = validate(email);
+            if (violation != null) {
+                reject(report, line, violation);
+                continue;
+            }
+            if (batch.putIfAbsent(NormalizedEmail.of(email), email) != null) {
+                report.setDuplicates(report.getDuplicates() + 1);
+                continue;
+            }
+            if (batch.size() >= properties.getBatchSize()) {
+                flush(batch, report);
+                if (++batches % 50 == 0) {
+                    log.info("Importing prospects, {} lines read so far: {}", report.getLines(), report);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch, report);
+        }
+        log.info("Imported prospects: {}", report);
+        return report;
+    }
+
+    private void flush(Map<NormalizedEmail, String> batch, ProspectImportReportDTO report) {
+        List<Prospect> registered = prospectService.createProspects(new ArrayList<>(batch.values()));
+        // E-mails repeated across batches are only caught by the database, they are reported as already registered
+        report.setImported(report.getImported() + registered.size());
+        report.setAlreadyRegistered(report.getAlreadyRegistered() + batch.size() - registered.size());
+        imported.mark(registered.size());
+        log.debug("Imported a batch of {} prospects, {} were already registered", batch.size(),
+            batch.size() - registered.size());
+        batch.clear();
+    }
+
+    private String validate(String email) {
+        if (email == null || email.isEmpty()) {
+            return "Missing email";
+        }
+        for (ConstraintViolation<Prospect> violation : validator.validateValue(Prospect.class, "email", email)) {
+            return violation.getMessage();
+        }
+        return null;
+    }
+
+    private void reject(ProspectImportReportDTO report, String line, String reason) {
+        report.setRejected(report.getRejected() + 1);
+        rejected.mark();
+        if (report.getRejections().size() < properties.getMaxReportedRejections()) {
+            report.getRejections().add(new ProspectImportReportDTO.RejectedRow(report.getLines(),
+                StringUtils.abbreviate(line, MAX_REPORTED_VALUE_LENGTH), reason));
+        }
+    }
+
+    /**
+     * Read a line like {@link BufferedReader#readLine()}, but keep at most {@code maxLength + 1} of its characters,
+     * so a line without line breaks cannot fill the memory.
+     *
+     * @return the line, longer than {@code maxLength} if it was cut, or null at the end of the upload
+     */
+    static String readLine(BufferedReader reader, StringBuilder line, int maxLength) throws IOException {
+        line.setLength(0);
+        boolean read = false;
+        int c;
+        while ((c = reader.read()) >= 0) {
+            read = true;
+            if (c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                reader.mark(1);
+                if (reader.read() != '\n') {
+                    reader.reset();
+                }
+                break;
+            }
+            if (line.length() <= maxLength) {
+                line.append((char) c);
+            }
+        }
+        return read ? line.toString() : null;
+    }
+
+    private static int findEmailColumn(List<String> cells) {
+        for (int i = 0; i < cells.size(); i++) {
+            if ("email".equalsIgnoreCase(cells.get(i).trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Split a CSV line into its cells, following RFC 4180 quoting, except that quoted line breaks are not supported.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+}
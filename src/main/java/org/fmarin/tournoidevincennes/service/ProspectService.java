@@ -1,17 +1,21 @@
 package org.fmarin.tournoidevincennes.service;
 
-import com.ecwid.maleorang.MailchimpClient;
-import com.ecwid.maleorang.MailchimpException;
-import com.ecwid.maleorang.method.v3_0.lists.members.EditMemberMethod;
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
 import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
 import org.fmarin.tournoidevincennes.repository.ProspectRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.io.IOException;
-import java.util.Date;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Transactional
@@ -19,29 +23,121 @@ public class ProspectService {
 
     private final ProspectRepository repository;
 
+    private final MailchimpOutboxRepository outboxRepository;
+
+    private final AuditorAware<String> auditorAware;
+
+    private final ProspectEmailFilter emailFilter;
+
+    private final ProspectSignupCounter signupCounter;
+
     @Autowired
-    public ProspectService(ProspectRepository repository) {
+    public ProspectService(ProspectRepository repository, MailchimpOutboxRepository outboxRepository,
+                           AuditorAware<String> auditorAware, ProspectEmailFilter emailFilter,
+                           ProspectSignupCounter signupCounter) {
         this.repository = repository;
+        this.outboxRepository = outboxRepository;
+        this.auditorAware = auditorAware;
+        this.emailFilter = emailFilter;
+        this.signupCounter = signupCounter;
+    }
+
+    /**
+     * Register a prospect, unless its e-mail is already registered.
+     *
+     * @param email the e-mail of the prospect
+     * @return the new prospect, or null if the e-mail was already registered
+     */
+    public Prospect createProspect(String email) {
+        // Only the e-mails the filter cannot rule out are looked up, the others go straight to the insert
+        if (emailFilter.mightBeRegistered(email)) {
+            if (repository.existsByEmail(email)) {
+                return null;
+            }
+            emailFilter.falsePositive();
+        }
+        // Database registration, skipped if the email already exists
+        Prospect prospect = new Prospect();
+        prospect.setEmail(email);
+        prospect.setCreatedBy(auditorAware.getCurrentAuditor());
+        if (!repository.insertIfAbsent(prospect)) {
+            return null;
+        }
+        // Mailchimp registration, pushed later by the MailchimpOutboxDispatcher
+        outboxRepository.save(new MailchimpOutboxEntry()
+            .email(email)
+            .signupDate(prospect.getCreatedDate()));
+        afterCommit(() -> {
+            emailFilter.registered(email);
+            signupCounter.registered(1);
+        });
+        return prospect;
     }
 
-    public Prospect createProspect(String email) throws IOException, MailchimpException {
-        // Email already exists
-        Optional<Prospect> isEmailRegistred = repository.findOneByEmail(email);
-        if (!isEmailRegistred.isPresent()) {
-            // Database registration
+    /**
+     * Register a prospect on the signup executor, unless its e-mail is already registered.
+     *
+     * @param email the e-mail of the prospect
+     * @return a future completed with the new prospect, or with null if the e-mail was already registered
+     * @throws java.util.concurrent.RejectedExecutionException if the signup executor is saturated
+     */
+    @Async("prospectSignupExecutor")
+    public CompletableFuture<Prospect> createProspectAsync(String email) {
+        return CompletableFuture.completedFuture(createProspect(email));
+    }
+
+    /**
+     * Register the prospects whose e-mail is not registered yet, with JDBC batches.
+     *
+     * @param emails the e-mails of the prospects, without duplicates once normalized, see {@link NormalizedEmail}
+     * @return the new prospects, with their ids, in the order of their e-mails
+     */
+    public List<Prospect> createProspects(List<String> emails) {
+        String auditor = auditorAware.getCurrentAuditor();
+        List<Prospect> prospects = new ArrayList<>(emails.size());
+        for (String email : emails) {
             Prospect prospect = new Prospect();
             prospect.setEmail(email);
-            repository.save(prospect);
-            // Mailchimp registration
-
-            MailchimpClient mailchimpClient = new MailchimpClient("1cff0308c78788350f314f0f2f479fcc-us14");
-            EditMemberMethod.Create subscribeProspectToListMethod = new EditMemberMethod.Create("eb7c2e54fd", email);
-            subscribeProspectToListMethod.status = "subscribed";
-            subscribeProspectToListMethod.timestamp_signup = Date.from(prospect.getCreatedDate().toInstant());
-            mailchimpClient.execute(subscribeProspectToListMethod);
-            // Mailchimp mail sent
-            return prospect;
+            prospect.setCreatedBy(auditor);
+            prospects.add(prospect);
+        }
+        boolean[] inserted = repository.insertAllIfAbsent(prospects);
+        List<Prospect> registered = new ArrayList<>();
+        List<MailchimpOutboxEntry> entries = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i]) {
+                Prospect prospect = prospects.get(i);
+                registered.add(prospect);
+                entries.add(new MailchimpOutboxEntry()
+                    .email(prospect.getEmail())
+                    .signupDate(prospect.getCreatedDate()));
+            }
+        }
+        if (!entries.isEmpty()) {
+            outboxRepository.insertAll(entries);
         }
-        return null;
+        afterCommit(() -> {
+            registered.forEach(prospect -> emailFilter.registered(prospect.getEmail()));
+            signupCounter.registered(registered.size());
+        });
+        return registered;
+    }
+
+    /**
+     * Run an action once the current transaction committed, so a rolled back registration leaves no trace in
+     * memory. Until then, the database still refuses a second registration of the same e-mail.
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
@@ -0,0 +1,98 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+import org.fmarin.tournoidevincennes.service.dto.ProspectStatsDTO;
+import org.fmarin.tournoidevincennes.service.util.RingCounter;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory counters of the registered prospects, for the "N people already registered" counter of the landing
+ * page, so page views never count the prospect table.
+ * <p>
+ * The total is seeded once from the database when the application is ready, and kept current by
+ * {@link ProspectService}, along with the signups of each of the last 60 minutes and 24 hours. Everything is a
+ * {@link LongAdder}, so signups never contend on the counters.
+ * </p>
+ * <p>
+ * Being local to each instance, it misses the signups of the other instances since it was seeded: the figures are
+ * meant for display, not for accounting.
+ * </p>
+ */
+@Service
+public class ProspectSignupCounter {
+
+    public static final int MINUTES = 60;
+
+    public static final int HOURS = 24;
+
+    private final Logger log = LoggerFactory.getLogger(ProspectSignupCounter.class);
+
+    private final ProspectRepository repository;
+
+    private final LongAdder registered = new LongAdder();
+
+    private final RingCounter perMinute = new RingCounter(MINUTES, TimeUnit.MINUTES.toMillis(1));
+
+    private final RingCounter perHour = new RingCounter(HOURS, TimeUnit.HOURS.toMillis(1));
+
+    @Autowired
+    public ProspectSignupCounter(ProspectRepository repository, MetricRegistry metricRegistry) {
+        this.repository = repository;
+        metricRegistry.register(MetricRegistry.name(ProspectSignupCounter.class, "registered"),
+            (Gauge<Long>) registered::sum);
+    }
+
+    /**
+     * Seed the total with the prospects already registered, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long count = repository.count();
+        // Signups counted before the seed are added to it, rather than lost
+        registered.add(count);
+        log.debug("Seeded the prospect signup counter with {} prospects", count);
+    }
+
+    /**
+     * Count new prospects.
+     *
+     * @param prospects the number of new prospects
+     */
+    public void registered(int prospects) {
+        long now = System.currentTimeMillis();
+        registered.add(prospects);
+        perMinute.add(prospects, now);
+        perHour.add(prospects, now);
+    }
+
+    public long getRegistered() {
+        return registered.sum();
+    }
+
+    /**
+     * @return the total, with the signups of each of the last 60 minutes and 24 hours, the current ones last
+     */
+    public ProspectStatsDTO getStats() {
+        long now = System.currentTimeMillis();
+        ProspectStatsDTO stats = new ProspectStatsDTO();
+        stats.setRegistered(registered.sum());
+        stats.setMinute(ZonedDateTime.ofInstant(Instant.ofEpochMilli(perMinute.periodStart(now)), ZoneOffset.UTC));
+        stats.setPerMinute(perMinute.snapshot(now));
+        stats.setPerHour(perHour.snapshot(now));
+        return stats;
+    }
+}
@@ -0,0 +1,206 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for prospect signups, to absorb bursts like the ones following a TV spot.
+ * <p>
+ * Signups are queued, and a single writer thread inserts them with JDBC batches of up to
+ * {@code jhipster.prospect.write-behind.batch-size} prospects, one transaction per batch, instead of one
+ * transaction per signup. The writer waits up to {@code jhipster.prospect.write-behind.max-linger-ms} for a batch
+ * to fill up, so a lone signup is still written right away.
+ * </p>
+ * <p>
+ * The queue is bounded by {@code jhipster.prospect.write-behind.queue-capacity}: when the writer falls behind,
+ * new signups are rejected instead of piling up in memory. Disabled by default, see
+ * {@code jhipster.prospect.write-behind.enabled}.
+ * </p>
+ */
+@Service
+public class ProspectWriteBuffer {
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(ProspectWriteBuffer.class);
+
+    private final ProspectService prospectService;
+
+    private final JHipsterProperties.Prospect.WriteBehind properties;
+
+    private final BlockingQueue<PendingProspect> queue;
+
+    private final Histogram batchSizes;
+
+    private final Timer flushes;
+
+    private final Meter rejected;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    @Autowired
+    public ProspectWriteBuffer(ProspectService prospectService, JHipsterProperties jHipsterProperties,
+                               MetricRegistry metricRegistry) {
+        this.prospectService = prospectService;
+        this.properties = jHipsterProperties.getProspect().getWriteBehind();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSizes = metricRegistry.histogram(MetricRegistry.name(ProspectWriteBuffer.class, "batchSizes"));
+        this.flushes = metricRegistry.timer(MetricRegistry.name(ProspectWriteBuffer.class, "flushes"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(ProspectWriteBuffer.class, "rejected"));
+        metricRegistry.register(MetricRegistry.name(ProspectWriteBuffer.class, "queued"), (Gauge<Integer>) queue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        log.debug("Starting prospect write-behind writer");
+        running = true;
+        writer = new Thread(this::run, "prospect-writer");
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        // The writer drains the queue before stopping, so accepted signups are not lost
+        log.debug("Stopping prospect write-behind writer, {} signups left to write", queue.size());
+        running = false;
+        writer.join();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Queue a prospect signup.
+     *
+     * @param email the e-mail of the prospect
+     * @return a future completed with the new prospect once it is committed, or with null if the e-mail was already
+     * registered
+     * @throws RejectedExecutionException if the queue is still full after
+     * {@code jhipster.prospect.write-behind.offer-timeout-ms}, or the buffer is not running
+     */
+    public CompletableFuture<Prospect> submit(String email) {
+        PendingProspect pending = new PendingProspect(email);
+        boolean queued = false;
+        if (running) {
+            try {
+                queued = queue.offer(pending, properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued) {
+            rejected.mark();
+            throw new RejectedExecutionException("The prospect write-behind queue is full");
+        }
+        return pending.result;
+    }
+
+    private void run() {
+        List<PendingProspect> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingProspect first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                linger(batch);
+                queue.drainTo(batch, properties.getBatchSize() - batch.size());
+            } catch (InterruptedException e) {
+                log.warn("Prospect writer interrupted, {} signups left to write", queue.size());
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void linger(List<PendingProspect> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getMaxLingerMs());
+        while (batch.size() + queue.size() < properties.getBatchSize()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingProspect next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<PendingProspect> batch) {
+        // The same e-mail may be submitted twice in a burst: only the first signup creates the prospect
+        Map<NormalizedEmail, PendingProspect> byEmail = new LinkedHashMap<>();
+        List<PendingProspect> duplicates = new ArrayList<>();
+        for (PendingProspect pending : batch) {
+            if (byEmail.putIfAbsent(NormalizedEmail.of(pending.email), pending) != null) {
+                duplicates.add(pending);
+            }
+        }
+        batchSizes.update(byEmail.size());
+        List<Prospect> registered;
+        try (Timer.Context ignored = flushes.time()) {
+            List<String> emails = new ArrayList<>(byEmail.size());
+            byEmail.values().forEach(pending -> emails.add(pending.email));
+            registered = prospectService.createProspects(emails);
+        } catch (RuntimeException e) {
+            log.error("Could not write a batch of {} prospects", byEmail.size(), e);
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+        Map<NormalizedEmail, Prospect> registeredByEmail = new HashMap<>();
+        registered.forEach(prospect -> registeredByEmail.put(prospect.getNormalizedEmail(), prospect));
+        byEmail.forEach((email, pending) -> pending.result.complete(registeredByEmail.get(email)));
+        duplicates.forEach(pending -> pending.result.complete(null));
+        log.debug("Wrote a batch of {} prospects, {} were already registered", byEmail.size(),
+            batch.size() - registered.size());
+    }
+
+    private static final class PendingProspect {
+
+        private final String email;
+
+        private final CompletableFuture<Prospect> result = new CompletableFuture<>();
+
+        PendingProspect(String email) {
+            this.email = email;
+        }
+    }
+}
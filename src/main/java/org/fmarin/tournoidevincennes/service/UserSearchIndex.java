@@ -0,0 +1,133 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.User;
+import org.fmarin.tournoidevincennes.repository.UserRepository;
+import org.fmarin.tournoidevincennes.service.dto.UserSummaryDTO;
+import org.fmarin.tournoidevincennes.service.util.PrefixIndex;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the users by the start of their login, e-mail, first and last name, for the admin user search,
+ * so searches never hit the database.
+ * <p>
+ * The index is built once the application is ready, streaming the users from the database, and kept current by the
+ * {@link UserSearchIndexListener}, once the transactions writing the users are committed. Users written with SQL are
+ * not seen by the listener: their writers update the index themselves, like the purge of
+ * {@link UserService#removeNotActivatedUsers()}.
+ * </p>
+ * <p>
+ * The users written while the index is being built are newer than the ones streamed, which may have been read
+ * before: the streamed users are only indexed if they were not written yet.
+ * </p>
+ * <p>
+ * It holds at most {@code jhipster.user-search.max-users} users, to bound its memory: users past that are not
+ * found, which is logged once.
+ * </p>
+ */
+@Service
+public class UserSearchIndex {
+
+    private final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private final UserRepository userRepository;
+
+    private final PrefixIndex<UserSummaryDTO> index;
+
+    private final AtomicBoolean full = new AtomicBoolean();
+
+    // The ids of the users written until the index is built, null once it is
+    private volatile Map<Long, Boolean> writtenWhileLoading = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserSearchIndex(UserRepository userRepository, JHipsterProperties jHipsterProperties,
+                           MetricRegistry metricRegistry) {
+        this.userRepository = userRepository;
+        this.index = new PrefixIndex<>(jHipsterProperties.getUserSearch().getMaxUsers());
+        metricRegistry.register(MetricRegistry.name(UserSearchIndex.class, "users"), (Gauge<Integer>) index::size);
+        metricRegistry.register(MetricRegistry.name(UserSearchIndex.class, "terms"),
+            (Gauge<Integer>) index::termCount);
+    }
+
+    /**
+     * Index the users of the database, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        Map<Long, Boolean> written = writtenWhileLoading;
+        if (written == null) {
+            return;
+        }
+        try (Stream<UserSummaryDTO> users = userRepository.streamAllUserSummaries()) {
+            // Indexed under the lock of its id in the map, so a write of the user waits for it, and overwrites it
+            users.forEach(user -> written.computeIfAbsent(user.getId(), id -> {
+                index(user);
+                return null;
+            }));
+        }
+        writtenWhileLoading = null;
+        log.debug("Indexed {} users for the search", index.size());
+    }
+
+    /**
+     * @param query the start of the login, e-mail, first or last name of the users, whatever its case
+     * @param limit the maximum number of users
+     * @return the users found, the ones with the first matching login, e-mail or name first
+     */
+    public List<UserSummaryDTO> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    public void put(UserSummaryDTO user) {
+        write(user.getId(), () -> index(user));
+    }
+
+    public void remove(Long id) {
+        write(id, () -> index.remove(id));
+    }
+
+    private void write(Long id, Runnable write) {
+        Map<Long, Boolean> written = writtenWhileLoading;
+        if (written == null) {
+            write.run();
+        } else {
+            written.compute(id, (key, value) -> {
+                write.run();
+                return Boolean.TRUE;
+            });
+        }
+    }
+
+    private void index(UserSummaryDTO user) {
+        List<String> terms = new ArrayList<>(Arrays.asList(user.getLogin(), user.getEmail(), user.getFirstName(),
+            user.getLastName()));
+        // Compound names are found by any of their words
+        for (String name : Arrays.asList(user.getFirstName(), user.getLastName())) {
+            if (name != null && name.indexOf(' ') >= 0) {
+                terms.addAll(Arrays.asList(name.split(" +")));
+            }
+        }
+        if (!index.put(user.getId(), user, terms) && full.compareAndSet(false, true)) {
+            log.warn("The user search index is full with {} users, the new users will not be found",
+                index.getMaxValues());
+        }
+    }
+}
@@ -1,22 +1,35 @@
 package org.fmarin.tournoidevincennes.service;
 
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
 import org.fmarin.tournoidevincennes.domain.Authority;
 import org.fmarin.tournoidevincennes.domain.User;
-import org.fmarin.tournoidevincennes.repository.AuthorityRepository;
 import org.fmarin.tournoidevincennes.repository.UserRepository;
 import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
+import org.fmarin.tournoidevincennes.security.BoundedPasswordEncoder;
 import org.fmarin.tournoidevincennes.security.SecurityUtils;
+import org.fmarin.tournoidevincennes.security.UserDetailsCache;
+import org.fmarin.tournoidevincennes.security.jwt.TokenRevocationStore;
+import org.fmarin.tournoidevincennes.service.dto.ManagedUserDTO;
 import org.fmarin.tournoidevincennes.service.util.RandomUtil;
 import org.fmarin.tournoidevincennes.web.rest.vm.ManagedUserVM;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZonedDateTime;
 import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
 import java.util.*;
 
 /**
@@ -29,13 +42,31 @@ public class UserService {
     private final Logger log = LoggerFactory.getLogger(UserService.class);
 
     @Inject
-    private PasswordEncoder passwordEncoder;
+    private BoundedPasswordEncoder passwordEncoder;
 
     @Inject
     private UserRepository userRepository;
 
     @Inject
-    private AuthorityRepository authorityRepository;
+    private AuthorityRegistry authorityRegistry;
+
+    @Inject
+    private UserSearchIndex userSearchIndex;
+
+    @Inject
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Inject
+    private UserDetailsCache userDetailsCache;
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
 
     public Optional<User> activateRegistration(String key) {
         log.debug("Activating user for activation key {}", key);
@@ -44,6 +75,7 @@ public class UserService {
                 // activate given user for the registration key.
                 user.setActivated(true);
                 user.setActivationKey(null);
+                userDetailsCache.invalidate(user.getLogin());
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -61,13 +93,16 @@ public class UserService {
                 user.setPassword(passwordEncoder.encode(newPassword));
                 user.setResetKey(null);
                 user.setResetDate(null);
+                tokenRevocationStore.revokeAll(user.getLogin());
+                userDetailsCache.invalidate(user.getLogin());
                 return user;
            });
     }
 
     public Optional<User> requestPasswordReset(String mail) {
-        return userRepository.findOneByEmail(mail)
+        return userRepository.findAllByEmail(mail).stream()
             .filter(User::getActivated)
+            .min(UserRepository.byEmailMatch(mail))
             .map(user -> {
                 user.setResetKey(RandomUtil.generateResetKey());
                 user.setResetDate(ZonedDateTime.now());
@@ -79,7 +114,7 @@ public class UserService {
         String langKey) {
 
         User newUser = new User();
-        Authority authority = authorityRepository.findOne(AuthoritiesConstants.USER);
+        Authority authority = authorityRegistry.get(AuthoritiesConstants.USER);
         Set<Authority> authorities = new HashSet<>();
         String encryptedPassword = passwordEncoder.encode(password);
         newUser.setLogin(login);
@@ -112,11 +147,7 @@ public class UserService {
             user.setLangKey(managedUserVM.getLangKey());
         }
         if (managedUserVM.getAuthorities() != null) {
-            Set<Authority> authorities = new HashSet<>();
-            managedUserVM.getAuthorities().forEach(
-                authority -> authorities.add(authorityRepository.findOne(authority))
-            );
-            user.setAuthorities(authorities);
+            user.setAuthorities(authorityRegistry.getAll(managedUserVM.getAuthorities()));
         }
         String encryptedPassword = passwordEncoder.encode(RandomUtil.generatePassword());
         user.setPassword(encryptedPassword);
@@ -134,6 +165,7 @@ public class UserService {
             user.setLastName(lastName);
             user.setEmail(email);
             user.setLangKey(langKey);
+            userDetailsCache.invalidate(user.getLogin());
             log.debug("Changed Information for User: {}", user);
         });
     }
@@ -144,6 +176,9 @@ public class UserService {
         Optional.of(userRepository
             .findOne(id))
             .ifPresent(user -> {
+                // The user is cached by login, which may change here
+                userDetailsCache.invalidate(user.getLogin());
+                userDetailsCache.invalidate(login);
                 user.setLogin(login);
                 user.setFirstName(firstName);
                 user.setLastName(lastName);
@@ -152,16 +187,43 @@ public class UserService {
                 user.setLangKey(langKey);
                 Set<Authority> managedAuthorities = user.getAuthorities();
                 managedAuthorities.clear();
-                authorities.forEach(
-                    authority -> managedAuthorities.add(authorityRepository.findOne(authority))
-                );
+                managedAuthorities.addAll(authorityRegistry.getAll(authorities));
                 log.debug("Changed Information for User: {}", user);
             });
     }
 
+    /**
+     * Hash again the password of a user who just logged in with it, if its hash was made with another cost than
+     * the configured one. Called by the {@link org.fmarin.tournoidevincennes.security.RehashingAuthenticationProvider}
+     * only for such hashes.
+     *
+     * @param login the login of the user
+     * @param password the password the user logged in with
+     */
+    public void upgradePasswordHash(String login, String password) {
+        userRepository.findOneByLogin(login)
+            .filter(user -> passwordEncoder.needsRehash(user.getPassword()))
+            .ifPresent(user -> {
+                user.setPassword(passwordEncoder.encode(password));
+                userDetailsCache.invalidate(user.getLogin());
+                log.debug("Upgraded the password hash of User: {}", user);
+            });
+    }
+
+    /**
+     * Revoke all the JWT tokens of a user issued until now, to log them out of all their sessions.
+     *
+     * @param login the login of the user
+     */
+    public void revokeTokens(String login) {
+        tokenRevocationStore.revokeAll(login);
+    }
+
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.delete(user);
+            tokenRevocationStore.revokeAll(user.getLogin());
+            userDetailsCache.invalidate(user.getLogin());
             log.debug("Deleted User: {}", user);
         });
     }
@@ -170,6 +232,8 @@ public class UserService {
         userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).ifPresent(user -> {
             String encryptedPassword = passwordEncoder.encode(password);
             user.setPassword(encryptedPassword);
+            tokenRevocationStore.revokeAll(user.getLogin());
+            userDetailsCache.invalidate(user.getLogin());
             log.debug("Changed password for User: {}", user);
         });
     }
@@ -201,19 +265,93 @@ public class UserService {
     }
 
 
+    /**
+     * Get a page of users with their authorities, for the user management UI.
+     * <p>
+     * The users are read straight into DTOs, with their authorities in a second query, so no entity is
+     * managed, snapshotted for dirty checking, or put in the second-level cache. Being read-only, the transaction
+     * runs with the Hibernate flush mode set to MANUAL, so nothing is flushed either.
+     * </p>
+     *
+     * @param pageable the pagination information, sorting on User properties
+     * @return the page of users
+     */
+    @Transactional(readOnly = true)
+    public Page<ManagedUserDTO> getAllManagedUsers(Pageable pageable) {
+        Page<ManagedUserDTO> page = userRepository.findAllManagedUsers(pageable);
+        addAuthorities(page.getContent());
+        return page;
+    }
+
+    /**
+     * Get the users with their authorities following a given user in the (login, id) order, like
+     * {@link #getAllManagedUsers(Pageable)}.
+     *
+     * @param login the login of the last user of the previous page, or null for the first page
+     * @param id the id of the last user of the previous page, or null for the first page
+     * @param size the maximum number of users
+     * @return the users, ordered by login
+     */
+    @Transactional(readOnly = true)
+    public List<ManagedUserDTO> getManagedUsersAfter(String login, Long id, int size) {
+        PageRequest limit = new PageRequest(0, size);
+        List<ManagedUserDTO> users = login == null ?
+            userRepository.findFirstManagedUsers(limit) : userRepository.findManagedUsersAfter(login, id, limit);
+        addAuthorities(users);
+        return users;
+    }
+
+    private void addAuthorities(List<ManagedUserDTO> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Long, ManagedUserDTO> usersById = new HashMap<>();
+        users.forEach(user -> usersById.put(user.getId(), user));
+        for (Object[] authority : userRepository.findAuthoritiesByUserIdIn(usersById.keySet())) {
+            usersById.get(authority[0]).getAuthorities().add((String) authority[1]);
+        }
+    }
+
     /**
      * Not activated users should be automatically deleted after 3 days.
      * <p>
      * This is scheduled to get fired everyday, at 01:00 (am).
      * </p>
+     * <p>
+     * They are deleted in chunks of {@code jhipster.user-purge.batch-size}, each in its own transaction, with bulk
+     * deletes instead of loading and deleting each user, so a wave of spam registrations is purged in bounded
+     * memory and with few statements. Only the deleted users are evicted from the second-level cache, and removed
+     * from the {@link UserSearchIndex} which does not see bulk deletes.
+     * </p>
      */
     @Scheduled(cron = "0 0 1 * * ?")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void removeNotActivatedUsers() {
-        ZonedDateTime now = ZonedDateTime.now();
-        List<User> users = userRepository.findAllByActivatedIsFalseAndCreatedDateBefore(now.minusDays(3));
-        for (User user : users) {
-            log.debug("Deleting not activated user {}", user.getLogin());
-            userRepository.delete(user);
+        ZonedDateTime createdBefore = ZonedDateTime.now().minusDays(3);
+        int batchSize = jHipsterProperties.getUserPurge().getBatchSize();
+        Meter purged = metricRegistry.meter(MetricRegistry.name(UserService.class, "notActivatedUsersPurged"));
+        long count = 0;
+        try (Timer.Context ignored = metricRegistry.timer(
+            MetricRegistry.name(UserService.class, "notActivatedUsersPurges")).time()) {
+            List<Long> ids;
+            long afterId = 0;
+            do {
+                ids = userRepository.deleteNotActivatedUsers(createdBefore, afterId, batchSize);
+                if (!ids.isEmpty()) {
+                    ids.forEach(this::evictUser);
+                    afterId = ids.get(ids.size() - 1);
+                    count += ids.size();
+                    purged.mark(ids.size());
+                }
+            } while (ids.size() == batchSize);
         }
+        log.debug("Deleted {} not activated users", count);
+    }
+
+    private void evictUser(Long id) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictEntity(User.class, id);
+        cache.evictCollection(User.class.getName() + ".authorities", id);
+        userSearchIndex.remove(id);
     }
 }
@@ -0,0 +1,104 @@
+package org.fmarin.tournoidevincennes.service.dto;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A DTO representing the outcome of a Mailchimp reconciliation run.
+ */
+public class MailchimpReconciliationReportDTO {
+
+    private final ZonedDateTime since;
+
+    private final ZonedDateTime until;
+
+    private long membersRead;
+
+    private long matched;
+
+    private long missingInMailchimp;
+
+    private long missingLocally;
+
+    private long unsubscribed;
+
+    public MailchimpReconciliationReportDTO(ZonedDateTime since, ZonedDateTime until) {
+        this.since = since;
+        this.until = until;
+    }
+
+    /**
+     * @return the previous watermark: members changed since then, and prospects created since then, were compared
+     */
+    public ZonedDateTime getSince() {
+        return since;
+    }
+
+    /**
+     * @return the new watermark: prospects created after it are left to the next run
+     */
+    public ZonedDateTime getUntil() {
+        return until;
+    }
+
+    public long getMembersRead() {
+        return membersRead;
+    }
+
+    public void setMembersRead(long membersRead) {
+        this.membersRead = membersRead;
+    }
+
+    public long getMatched() {
+        return matched;
+    }
+
+    public void setMatched(long matched) {
+        this.matched = matched;
+    }
+
+    /**
+     * @return the prospects missing from the list, they were queued in the Mailchimp outbox again
+     */
+    public long getMissingInMailchimp() {
+        return missingInMailchimp;
+    }
+
+    public void setMissingInMailchimp(long missingInMailchimp) {
+        this.missingInMailchimp = missingInMailchimp;
+    }
+
+    /**
+     * @return the members of the list which are not prospects, they are only reported
+     */
+    public long getMissingLocally() {
+        return missingLocally;
+    }
+
+    public void setMissingLocally(long missingLocally) {
+        this.missingLocally = missingLocally;
+    }
+
+    /**
+     * @return the prospects whose member is not subscribed anymore, they are only reported
+     */
+    public long getUnsubscribed() {
+        return unsubscribed;
+    }
+
+    public void setUnsubscribed(long unsubscribed) {
+        this.unsubscribed = unsubscribed;
+    }
+
+    @Override
+    public String toString() {
+        return "MailchimpReconciliationReportDTO{" +
+            "since=" + since +
+            ", until=" + until +
+            ", membersRead=" + membersRead +
+            ", matched=" + matched +
+            ", missingInMailchimp=" + missingInMailchimp +
+            ", missingLocally=" + missingLocally +
+            ", unsubscribed=" + unsubscribed +
+            "}";
+    }
+}
@@ -0,0 +1,107 @@
+package org.fmarin.tournoidevincennes.service.dto;
+
+import org.fmarin.tournoidevincennes.domain.User;
+
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A DTO extending the UserDTO with the id and auditing fields of the user, for the user management UI.
+ */
+public class ManagedUserDTO extends UserDTO {
+
+    private Long id;
+
+    private String createdBy;
+
+    private ZonedDateTime createdDate;
+
+    private String lastModifiedBy;
+
+    private ZonedDateTime lastModifiedDate;
+
+    public ManagedUserDTO() {
+    }
+
+    public ManagedUserDTO(User user) {
+        super(user);
+        this.id = user.getId();
+        this.createdBy = user.getCreatedBy();
+        this.createdDate = user.getCreatedDate();
+        this.lastModifiedBy = user.getLastModifiedBy();
+        this.lastModifiedDate = user.getLastModifiedDate();
+    }
+
+    public ManagedUserDTO(Long id, String login, String firstName, String lastName, String email, boolean activated,
+                          String langKey, Set<String> authorities, String createdBy, ZonedDateTime createdDate,
+                          String lastModifiedBy, ZonedDateTime lastModifiedDate) {
+        super(login, firstName, lastName, email, activated, langKey, authorities);
+        this.id = id;
+        this.createdBy = createdBy;
+        this.createdDate = createdDate;
+        this.lastModifiedBy = lastModifiedBy;
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
+    /**
+     * Used by the constructor expressions of UserRepository, the authorities being added afterwards.
+     */
+    public ManagedUserDTO(Long id, String login, String firstName, String lastName, String email, boolean activated,
+                          String langKey, String createdBy, ZonedDateTime createdDate, String lastModifiedBy,
+                          ZonedDateTime lastModifiedDate) {
+        this(id, login, firstName, lastName, email, activated, langKey, new HashSet<>(), createdBy, createdDate,
+            lastModifiedBy, lastModifiedDate);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(ZonedDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public String getLastModifiedBy() {
+        return lastModifiedBy;
+    }
+
+    public void setLastModifiedBy(String lastModifiedBy) {
+        this.lastModifiedBy = lastModifiedBy;
+    }
+
+    public ZonedDateTime getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    public void setLastModifiedDate(ZonedDateTime lastModifiedDate) {
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
+    @Override
+    public String toString() {
+        return "ManagedUserDTO{" +
+            "id=" + id +
+            ", createdBy=" + createdBy +
+            ", createdDate=" + createdDate +
+            ", lastModifiedBy='" + lastModifiedBy + '\'' +
+            ", lastModifiedDate=" + lastModifiedDate +
+            "} " + super.toString();
+    }
+}
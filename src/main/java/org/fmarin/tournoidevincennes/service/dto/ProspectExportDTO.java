@@ -0,0 +1,33 @@
+package org.fmarin.tournoidevincennes.service.dto;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A DTO representing an exported prospect, read directly by the export query.
+ */
+public class ProspectExportDTO {
+
+    private final Long id;
+
+    private final String email;
+
+    private final ZonedDateTime createdDate;
+
+    public ProspectExportDTO(Long id, String email, ZonedDateTime createdDate) {
+        this.id = id;
+        this.email = email;
+        this.createdDate = createdDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+}
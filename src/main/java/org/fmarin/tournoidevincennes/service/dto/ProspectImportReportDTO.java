@@ -0,0 +1,107 @@
+package org.fmarin.tournoidevincennes.service.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO representing the outcome of a bulk prospect import.
+ */
+public class ProspectImportReportDTO {
+
+    private long lines;
+
+    private long imported;
+
+    private long alreadyRegistered;
+
+    private long duplicates;
+
+    private long rejected;
+
+    private final List<RejectedRow> rejections = new ArrayList<>();
+
+    public long getLines() {
+        return lines;
+    }
+
+    public void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getAlreadyRegistered() {
+        return alreadyRegistered;
+    }
+
+    public void setAlreadyRegistered(long alreadyRegistered) {
+        this.alreadyRegistered = alreadyRegistered;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(long duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * @return the first rejected rows, {@link #getRejected()} tells how many there were in total
+     */
+    public List<RejectedRow> getRejections() {
+        return rejections;
+    }
+
+    @Override
+    public String toString() {
+        return "ProspectImportReportDTO{" +
+            "lines=" + lines +
+            ", imported=" + imported +
+            ", alreadyRegistered=" + alreadyRegistered +
+            ", duplicates=" + duplicates +
+            ", rejected=" + rejected +
+            "}";
+    }
+
+    public static class RejectedRow {
+
+        private final long line;
+
+        private final String value;
+
+        private final String reason;
+
+        public RejectedRow(long line, String value, String reason) {
+            this.line = line;
+            this.value = value;
+            this.reason = reason;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.fmarin.tournoidevincennes.service.dto;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A DTO representing the signup figures shown on the landing page.
+ */
+public class ProspectStatsDTO {
+
+    private long registered;
+
+    private ZonedDateTime minute;
+
+    private long[] perMinute;
+
+    private long[] perHour;
+
+    public long getRegistered() {
+        return registered;
+    }
+
+    public void setRegistered(long registered) {
+        this.registered = registered;
+    }
+
+    /**
+     * @return the start of the current minute, the last one of {@link #getPerMinute()}
+     */
+    public ZonedDateTime getMinute() {
+        return minute;
+    }
+
+    public void setMinute(ZonedDateTime minute) {
+        this.minute = minute;
+    }
+
+    /**
+     * @return the signups of each of the last 60 minutes, the oldest first
+     */
+    public long[] getPerMinute() {
+        return perMinute;
+    }
+
+    public void setPerMinute(long[] perMinute) {
+        this.perMinute = perMinute;
+    }
+
+    /**
+     * @return the signups of each of the last 24 hours, the oldest first
+     */
+    public long[] getPerHour() {
+        return perHour;
+    }
+
+    public void setPerHour(long[] perHour) {
+        this.perHour = perHour;
+    }
+
+    @Override
+    public String toString() {
+        return "ProspectStatsDTO{" +
+            "registered=" + registered +
+            ", minute=" + minute +
+            "}";
+    }
+}
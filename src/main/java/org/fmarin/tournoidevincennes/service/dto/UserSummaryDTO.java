@@ -0,0 +1,71 @@
+package org.fmarin.tournoidevincennes.service.dto;
+
+import org.fmarin.tournoidevincennes.domain.User;
+
+/**
+ * A DTO representing a user found by the admin user search, immutable as it is shared by the searches.
+ */
+public final class UserSummaryDTO {
+
+    private final Long id;
+
+    private final String login;
+
+    private final String email;
+
+    private final String firstName;
+
+    private final String lastName;
+
+    private final boolean activated;
+
+    public UserSummaryDTO(User user) {
+        this(user.getId(), user.getLogin(), user.getEmail(), user.getFirstName(), user.getLastName(),
+            user.getActivated());
+    }
+
+    public UserSummaryDTO(Long id, String login, String email, String firstName, String lastName,
+                          boolean activated) {
+        this.id = id;
+        this.login = login;
+        this.email = email;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.activated = activated;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public boolean isActivated() {
+        return activated;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSummaryDTO{" +
+            "login='" + login + '\'' +
+            ", email='" + email + '\'' +
+            ", firstName='" + firstName + '\'' +
+            ", lastName='" + lastName + '\'' +
+            ", activated=" + activated +
+            "}";
+    }
+}
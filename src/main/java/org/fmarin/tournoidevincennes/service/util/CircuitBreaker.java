@@ -0,0 +1,184 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+/**
+ * A circuit breaker, to stop calling a remote service which is failing or too slow.
+ * <p>
+ * The outcome of the last {@code windowSize} calls is kept. Once at least {@code minimumCalls} of them are known,
+ * the circuit opens as soon as the rate of failed calls, or the rate of calls slower than {@code slowCallDuration},
+ * reaches its threshold. An open circuit refuses calls for {@code openDuration}, then half-opens: a single trial
+ * call is let through, whose outcome closes the circuit again or keeps it open for another {@code openDuration}.
+ * </p>
+ * <p>
+ * Times are {@link System#nanoTime()} values passed by the caller, so it is easy to test. It is synchronized, which
+ * is fine for guarding remote calls.
+ * </p>
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte FAILED = 1;
+
+    private static final byte SLOW = 2;
+
+    private final int failureRateThreshold;
+
+    private final int slowCallRateThreshold;
+
+    private final long slowCallDuration;
+
+    private final int minimumCalls;
+
+    private final long openDuration;
+
+    private final byte[] outcomes;
+
+    private int calls;
+
+    private int next;
+
+    private int failures;
+
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private boolean trialInProgress;
+
+    /**
+     * @param failureRateThreshold the percentage of failed calls opening the circuit
+     * @param slowCallRateThreshold the percentage of slow calls opening the circuit
+     * @param slowCallDuration the duration over which a call is slow, in nanoseconds
+     * @param windowSize the number of calls the rates are computed on
+     * @param minimumCalls the number of calls needed before the rates are looked at
+     * @param openDuration the time calls are refused once the circuit is open, in nanoseconds
+     */
+    public CircuitBreaker(int failureRateThreshold, int slowCallRateThreshold, long slowCallDuration,
+                          int windowSize, int minimumCalls, long openDuration) {
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.minimumCalls = minimumCalls;
+        this.openDuration = openDuration;
+        this.outcomes = new byte[windowSize];
+    }
+
+    /**
+     * Ask for a call to be made. Each permitted call must be followed by {@link #onSuccess} or {@link #onFailure}.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return true if the call can be made, false if it must fail fast
+     */
+    public synchronized boolean tryAcquirePermission(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt < openDuration) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInProgress = true;
+                return true;
+            default:
+                if (trialInProgress) {
+                    return false;
+                }
+                trialInProgress = true;
+                return true;
+        }
+    }
+
+    /**
+     * Release a permission which was not used, for instance because the call could not be started.
+     */
+    public synchronized void releasePermission() {
+        trialInProgress = false;
+    }
+
+    /**
+     * @param duration the duration of the call, in nanoseconds
+     * @param now the current {@link System#nanoTime()}
+     */
+    public synchronized void onSuccess(long duration, long now) {
+        record(duration >= slowCallDuration ? SLOW : 0, now);
+    }
+
+    /**
+     * @param duration the duration of the call, in nanoseconds
+     * @param now the current {@link System#nanoTime()}
+     */
+    public synchronized void onFailure(long duration, long now) {
+        record((byte) (FAILED | (duration >= slowCallDuration ? SLOW : 0)), now);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the percentage of failed calls in the window, or -1 if there are not enough calls yet
+     */
+    public synchronized float getFailureRate() {
+        return calls < minimumCalls ? -1 : failures * 100f / calls;
+    }
+
+    /**
+     * @return the percentage of slow calls in the window, or -1 if there are not enough calls yet
+     */
+    public synchronized float getSlowCallRate() {
+        return calls < minimumCalls ? -1 : slowCalls * 100f / calls;
+    }
+
+    private void record(byte outcome, long now) {
+        if (state == State.HALF_OPEN) {
+            trialInProgress = false;
+            if (outcome == 0) {
+                state = State.CLOSED;
+                reset();
+            } else {
+                open(now);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A call permitted before the circuit opened, its outcome is already accounted for
+            return;
+        }
+        if (calls == outcomes.length) {
+            byte evicted = outcomes[next];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            calls++;
+        }
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+        if (calls >= minimumCalls && (failures * 100 >= failureRateThreshold * calls ||
+            slowCalls * 100 >= slowCallRateThreshold * calls)) {
+            open(now);
+        }
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+        reset();
+    }
+
+    private void reset() {
+        calls = 0;
+        next = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
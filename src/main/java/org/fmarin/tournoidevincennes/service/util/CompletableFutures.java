@@ -0,0 +1,49 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Utility class for CompletableFuture, until Java 9 and its {@code orTimeout}.
+ */
+public final class CompletableFutures {
+
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "completable-future-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // Most futures complete in time, their timers should not pile up until they would have fired
+        TIMEOUTS.setRemoveOnCancelPolicy(true);
+    }
+
+    private CompletableFutures() {
+    }
+
+    /**
+     * @param future the future to wait for, which is left alone: it still completes, the timeout notwithstanding
+     * @param timeout the time to wait for
+     * @param unit the unit of the timeout
+     * @return a future completed like the given one, or with a {@link TimeoutException} once the timeout elapsed
+     */
+    public static <T> CompletableFuture<T> within(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = TIMEOUTS.schedule(
+            () -> result.completeExceptionally(new TimeoutException("Not completed within " + timeout + " " + unit)),
+            timeout, unit);
+        future.whenComplete((value, error) -> {
+            timer.cancel(false);
+            if (error == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,144 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An in-memory index of values by the prefixes of their terms, for instance users by the start of their login,
+ * e-mail or name.
+ * <p>
+ * The terms are kept sorted in a {@link ConcurrentSkipListMap}, the values of a prefix being the range of terms
+ * from the prefix to the prefix followed by the greatest character. Searches are lock-free and cost a lookup plus
+ * the matches read; writes are serialized, as they replace all the terms of a value.
+ * </p>
+ * <p>
+ * Terms are case-insensitive. The index holds at most {@code maxValues} values, new values past that are ignored.
+ * </p>
+ *
+ * @param <V> the type of the values
+ */
+public final class PrefixIndex<V> {
+
+    // Ends the terms, before the id which tells the values of a same term apart, and sorts before any character
+    private static final char SEPARATOR = '\u0000';
+
+    private final int maxValues;
+
+    private final ConcurrentSkipListMap<String, Entry<V>> terms = new ConcurrentSkipListMap<>();
+
+    private final Map<Long, Entry<V>> values = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxValues the maximum number of values held
+     */
+    public PrefixIndex(int maxValues) {
+        if (maxValues <= 0) {
+            throw new IllegalArgumentException("maxValues must be positive");
+        }
+        this.maxValues = maxValues;
+    }
+
+    /**
+     * Index a value, in place of the one with the same id if any.
+     *
+     * @param id the id of the value
+     * @param value the value
+     * @param valueTerms the terms of the value, null terms being ignored
+     * @return false if the value was ignored, the index being full
+     */
+    public synchronized boolean put(long id, V value, Collection<String> valueTerms) {
+        Entry<V> previous = values.get(id);
+        if (previous == null && values.size() >= maxValues) {
+            return false;
+        }
+        List<String> keys = new ArrayList<>(valueTerms.size());
+        for (String term : valueTerms) {
+            if (term != null && !term.isEmpty()) {
+                keys.add(normalize(term) + SEPARATOR + id);
+            }
+        }
+        Entry<V> entry = new Entry<>(value, keys.toArray(new String[keys.size()]));
+        if (previous != null) {
+            for (String key : previous.keys) {
+                terms.remove(key);
+            }
+        }
+        for (String key : entry.keys) {
+            terms.put(key, entry);
+        }
+        values.put(id, entry);
+        return true;
+    }
+
+    /**
+     * @param id the id of the value to remove
+     */
+    public synchronized void remove(long id) {
+        Entry<V> previous = values.remove(id);
+        if (previous != null) {
+            for (String key : previous.keys) {
+                terms.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @param prefix the start of the terms, whatever its case
+     * @param limit the maximum number of values
+     * @return the values having a term starting with the prefix, in the order of their first matching term
+     */
+    public List<V> search(String prefix, int limit) {
+        String from = normalize(prefix);
+        ConcurrentNavigableMap<String, Entry<V>> matches = terms.subMap(from, true, from + Character.MAX_VALUE, false);
+        // A value matching with several terms is only returned once
+        Map<Entry<V>, V> found = new LinkedHashMap<>();
+        for (Entry<V> entry : matches.values()) {
+            if (found.size() >= limit) {
+                break;
+            }
+            found.putIfAbsent(entry, entry.value);
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * @return the number of values held
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return the number of terms held
+     */
+    public int termCount() {
+        return terms.size();
+    }
+
+    public int getMaxValues() {
+        return maxValues;
+    }
+
+    private static String normalize(String term) {
+        return term.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+
+        private final String[] keys;
+
+        private Entry(V value, String[] keys) {
+            this.value = value;
+            this.keys = keys;
+        }
+    }
+}
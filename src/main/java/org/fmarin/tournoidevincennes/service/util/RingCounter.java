@@ -0,0 +1,100 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter of events over the last {@code slotCount} periods of {@code slotDuration}, for instance the signups
+ * of each of the last 60 minutes.
+ * <p>
+ * Each period has a {@link LongAdder} in a ring of slots, recycled once the period it counted is out of the ring.
+ * It is lock-free: adding to the current period is a single {@link LongAdder#add(long)}, and only the first event
+ * of a period swaps its slot with a compare-and-set.
+ * </p>
+ * <p>
+ * Times are {@link System#currentTimeMillis()} values passed by the caller, so periods are aligned on the clock
+ * (minutes start at :00) and it is easy to test.
+ * </p>
+ */
+public final class RingCounter {
+
+    private final long slotDuration;
+
+    private final AtomicReferenceArray<Slot> slots;
+
+    /**
+     * @param slotCount the number of periods counted
+     * @param slotDuration the duration of a period, in milliseconds
+     */
+    public RingCounter(int slotCount, long slotDuration) {
+        if (slotCount <= 0 || slotDuration <= 0) {
+            throw new IllegalArgumentException("slotCount and slotDuration must be positive");
+        }
+        this.slotDuration = slotDuration;
+        this.slots = new AtomicReferenceArray<>(slotCount);
+    }
+
+    /**
+     * @param events the number of events
+     * @param now the current {@link System#currentTimeMillis()}
+     */
+    public void add(long events, long now) {
+        long period = period(now);
+        int index = index(period);
+        Slot slot = slots.get(index);
+        while (slot == null || slot.period < period) {
+            Slot fresh = new Slot(period);
+            if (slots.compareAndSet(index, slot, fresh)) {
+                slot = fresh;
+            } else {
+                slot = slots.get(index);
+            }
+        }
+        // A caller lagging behind a period boundary counts its events in the new period, which is close enough
+        slot.count.add(events);
+    }
+
+    /**
+     * @param now the current {@link System#currentTimeMillis()}
+     * @return the number of events of each period, the oldest first and the current one last
+     */
+    public long[] snapshot(long now) {
+        long current = period(now);
+        long[] counts = new long[slots.length()];
+        for (int i = 0; i < counts.length; i++) {
+            long period = current - counts.length + 1 + i;
+            Slot slot = slots.get(index(period));
+            if (slot != null && slot.period == period) {
+                counts[i] = slot.count.sum();
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @param now the current {@link System#currentTimeMillis()}
+     * @return the start of the current period
+     */
+    public long periodStart(long now) {
+        return period(now) * slotDuration;
+    }
+
+    private long period(long time) {
+        return Math.floorDiv(time, slotDuration);
+    }
+
+    private int index(long period) {
+        return (int) Math.floorMod(period, (long) slots.length());
+    }
+
+    private static final class Slot {
+
+        private final long period;
+
+        private final LongAdder count = new LongAdder();
+
+        Slot(long period) {
+            this.period = period;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter of Strings, which grows as elements are added.
+ * <p>
+ * It is a chain of classic Bloom filters: once the last one has received as many elements as it was sized for,
+ * a new one twice as large and with half the false positive probability is appended. The overall false positive
+ * probability therefore stays under the one asked for, whatever the number of elements.
+ * </p>
+ * <p>
+ * Lookups and additions are lock-free, only growing takes a lock.
+ * </p>
+ */
+public final class ScalableBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final double falsePositiveProbability;
+
+    private volatile Stage[] stages;
+
+    /**
+     * @param expectedInsertions the number of elements the first stage is sized for
+     * @param falsePositiveProbability the overall false positive probability to stay under
+     */
+    public ScalableBloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be between 0 and 1");
+        }
+        this.falsePositiveProbability = falsePositiveProbability;
+        // Stages get p/2, p/4, p/8... so that the sum stays under p
+        this.stages = new Stage[]{new Stage(expectedInsertions, falsePositiveProbability / 2)};
+    }
+
+    /**
+     * @return false if the value was definitely never added, true if it might have been
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value, 0);
+        long hash2 = hash(value, hash1);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash1, hash2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(String value) {
+        long hash1 = hash(value, 0);
+        long hash2 = hash(value, hash1);
+        Stage[] current = stages;
+        for (Stage stage : current) {
+            if (stage.mightContain(hash1, hash2)) {
+                return;
+            }
+        }
+        Stage last = current[current.length - 1];
+        if (last.count.get() >= last.capacity) {
+            last = grow(last);
+        }
+        last.add(hash1, hash2);
+    }
+
+    /**
+     * @return the number of distinct elements added, give or take the false positives met while adding
+     */
+    public long approximateSize() {
+        long size = 0;
+        for (Stage stage : stages) {
+            size += stage.count.get();
+        }
+        return size;
+    }
+
+    public long memoryInBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += stage.bits.length() * 8L;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the false positive probability to expect from the current fill ratio of the stages
+     */
+    public double expectedFalsePositiveProbability() {
+        double trueNegative = 1;
+        for (Stage stage : stages) {
+            trueNegative *= 1 - stage.expectedFalsePositiveProbability();
+        }
+        return 1 - trueNegative;
+    }
+
+    public double getFalsePositiveProbability() {
+        return falsePositiveProbability;
+    }
+
+    private synchronized Stage grow(Stage full) {
+        Stage[] current = stages;
+        Stage last = current[current.length - 1];
+        if (last != full) {
+            // Another thread already grew the filter
+            return last;
+        }
+        Stage next = new Stage(last.capacity * 2, last.falsePositiveProbability / 2);
+        Stage[] grown = new Stage[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = next;
+        stages = grown;
+        return next;
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters, finished with the MurmurHash3 mixer.
+     */
+    private static long hash(String value, long seed) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Stage {
+
+        private final long capacity;
+
+        private final double falsePositiveProbability;
+
+        private final long numBits;
+
+        private final int numHashes;
+
+        private final AtomicLongArray bits;
+
+        private final AtomicLong bitCount = new AtomicLong();
+
+        private final AtomicLong count = new AtomicLong();
+
+        Stage(long capacity, double falsePositiveProbability) {
+            this.capacity = capacity;
+            this.falsePositiveProbability = falsePositiveProbability;
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveProbability) / (LN2 * LN2));
+            int words = (int) Math.min(Integer.MAX_VALUE, (optimalBits + 63) / 64);
+            this.bits = new AtomicLongArray(words);
+            this.numBits = words * 64L;
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * LN2));
+        }
+
+        boolean mightContain(long hash1, long hash2) {
+            for (int i = 0; i < numHashes; i++) {
+                long index = index(hash1, hash2, i);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long hash1, long hash2) {
+            for (int i = 0; i < numHashes; i++) {
+                long index = index(hash1, hash2, i);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                do {
+                    current = bits.get(word);
+                    if ((current & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, current, current | mask));
+                if ((current & mask) == 0) {
+                    bitCount.incrementAndGet();
+                }
+            }
+            count.incrementAndGet();
+        }
+
+        double expectedFalsePositiveProbability() {
+            return Math.pow((double) bitCount.get() / numBits, numHashes);
+        }
+
+        private long index(long hash1, long hash2, int i) {
+            // Kirsch-Mitzenmacher double hashing
+            long combined = hash1 + i * hash2;
+            return (combined & Long.MAX_VALUE) % numBits;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Walks two sequences sorted by the same key side by side, like the merge step of a merge sort, to compare them in
+ * a single pass without holding either of them in memory.
+ */
+public final class SortedMerge {
+
+    /**
+     * Receives the elements of both sequences, in key order.
+     */
+    public interface Handler<L, R> {
+
+        void onLeftOnly(L left);
+
+        void onRightOnly(R right);
+
+        void onBoth(L left, R right);
+    }
+
+    private SortedMerge() {
+    }
+
+    /**
+     * @param left the left sequence, sorted by key, without duplicate keys
+     * @param leftKey the key of the left elements
+     * @param right the right sequence, sorted by key, without duplicate keys
+     * @param rightKey the key of the right elements
+     * @param handler the handler receiving each key once
+     * @throws IllegalStateException if a sequence is not sorted
+     */
+    public static <L, R, K extends Comparable<? super K>> void merge(Iterator<L> left, Function<L, K> leftKey,
+                                                                     Iterator<R> right, Function<R, K> rightKey,
+                                                                     Handler<L, R> handler) {
+        Cursor<L, K> leftCursor = new Cursor<>(left, leftKey);
+        Cursor<R, K> rightCursor = new Cursor<>(right, rightKey);
+        while (leftCursor.element != null && rightCursor.element != null) {
+            int comparison = leftCursor.key.compareTo(rightCursor.key);
+            if (comparison < 0) {
+                handler.onLeftOnly(leftCursor.element);
+                leftCursor.advance();
+            } else if (comparison > 0) {
+                handler.onRightOnly(rightCursor.element);
+                rightCursor.advance();
+            } else {
+                handler.onBoth(leftCursor.element, rightCursor.element);
+                leftCursor.advance();
+                rightCursor.advance();
+            }
+        }
+        while (leftCursor.element != null) {
+            handler.onLeftOnly(leftCursor.element);
+            leftCursor.advance();
+        }
+        while (rightCursor.element != null) {
+            handler.onRightOnly(rightCursor.element);
+            rightCursor.advance();
+        }
+    }
+
+    private static final class Cursor<T, K extends Comparable<? super K>> {
+
+        private final Iterator<T> iterator;
+
+        private final Function<T, K> keyFunction;
+
+        private T element;
+
+        private K key;
+
+        Cursor(Iterator<T> iterator, Function<T, K> keyFunction) {
+            this.iterator = iterator;
+            this.keyFunction = keyFunction;
+            advance();
+        }
+
+        void advance() {
+            K previous = key;
+            if (iterator.hasNext()) {
+                element = iterator.next();
+                key = keyFunction.apply(element);
+                if (previous != null && previous.compareTo(key) >= 0) {
+                    throw new IllegalStateException("Sequence not sorted: " + key + " after " + previous);
+                }
+            } else {
+                element = null;
+                key = null;
+            }
+        }
+    }
+}
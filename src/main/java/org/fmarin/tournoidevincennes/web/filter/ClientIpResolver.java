@@ -0,0 +1,60 @@
+package org.fmarin.tournoidevincennes.web.filter;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Resolves the IP of the client of a request, for the rate limits and the login throttling.
+ * <p>
+ * Behind {@code jhipster.http.trusted-proxy-hops} reverse proxies, like the Heroku router, the connection comes from
+ * the last proxy and each proxy appends the address it was connected from to the {@code X-Forwarded-For} header.
+ * The client is then the address appended by the first trusted proxy, counting from the right: the entries on its
+ * left were sent by the client itself, and cannot be trusted. Without trusted proxies, the header is ignored.
+ * </p>
+ */
+@Component
+public class ClientIpResolver {
+
+    public static final String X_FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    private final int trustedProxyHops;
+
+    @Autowired
+    public ClientIpResolver(JHipsterProperties jHipsterProperties) {
+        this.trustedProxyHops = jHipsterProperties.getHttp().getTrustedProxyHops();
+        if (trustedProxyHops < 0) {
+            throw new IllegalArgumentException("jhipster.http.trusted-proxy-hops must not be negative, but was " +
+                trustedProxyHops);
+        }
+    }
+
+    /**
+     * @param request the request
+     * @return the IP of the client, or the address of the connection if the request did not go through the trusted
+     * proxies
+     */
+    public String resolve(HttpServletRequest request) {
+        if (trustedProxyHops == 0) {
+            return request.getRemoteAddr();
+        }
+        // Proxies may either append to the header or add another one, so the values are read as a single list
+        List<String> addresses = new ArrayList<>();
+        Enumeration<String> headers = request.getHeaders(X_FORWARDED_FOR_HEADER);
+        while (headers != null && headers.hasMoreElements()) {
+            addresses.addAll(Arrays.asList(headers.nextElement().split(",")));
+        }
+        if (addresses.size() < trustedProxyHops) {
+            return request.getRemoteAddr();
+        }
+        String client = addresses.get(addresses.size() - trustedProxyHops).trim();
+        return client.isEmpty() ? request.getRemoteAddr() : client;
+    }
+}
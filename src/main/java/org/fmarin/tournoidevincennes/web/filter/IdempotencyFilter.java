@@ -0,0 +1,418 @@
+package org.fmarin.tournoidevincennes.web.filter;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.security.SecurityUtils;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This filter makes POST requests carrying an {@code Idempotency-Key} header safe to retry.
+ * <p>
+ * The response to the first request with a given key is remembered, and replayed to the following requests with
+ * the same key, user and URI, with an {@code Idempotent-Replayed} header. Anonymous requests are told apart by the
+ * IP of their client, as resolved by the {@link ClientIpResolver}, so anonymous callers do not share their keys. The
+ * SHA-256 digest of the body of the first request is remembered with it, computed as the application reads the body:
+ * a request with the same key but another body gets a 422 Unprocessable Entity, as it is a client error rather than
+ * a retry.
+ * </p>
+ * <p>
+ * Requests arriving while the first one is still being processed wait for its response, for at most
+ * {@code jhipster.http.idempotency.in-flight-timeout-in-seconds}, and then get it replayed. Past that timeout they get
+ * a 409 Conflict with a {@code Retry-After} header, so a slow request does not hold the servlet threads of all its
+ * retries for long.
+ * </p>
+ * <p>
+ * Responses are remembered for {@code jhipster.http.idempotency.time-to-live-in-seconds}, and at most
+ * {@code jhipster.http.idempotency.max-entries} of them are kept, the least recently used being evicted first.
+ * Server errors are not remembered, so the request can be retried. The store is local to each instance.
+ * </p>
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final String EXECUTION_ATTRIBUTE = IdempotencyFilter.class.getName() + ".execution";
+
+    private static final int RETRY_AFTER_IN_SECONDS = 1;
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyFilter.class);
+
+    private final JHipsterProperties.Http.Idempotency properties;
+
+    private final ClientIpResolver clientIpResolver;
+
+    private final Map<String, Execution> executions;
+
+    private final Meter hits;
+
+    private final Meter collapsed;
+
+    private final Meter conflicts;
+
+    private final Meter mismatches;
+
+    private final Meter misses;
+
+    public IdempotencyFilter(JHipsterProperties jHipsterProperties, ClientIpResolver clientIpResolver,
+                             MetricRegistry metricRegistry) {
+        this.properties = jHipsterProperties.getHttp().getIdempotency();
+        this.clientIpResolver = clientIpResolver;
+        int maxEntries = properties.getMaxEntries();
+        this.executions = new LinkedHashMap<String, Execution>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Execution> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = metricRegistry.meter(MetricRegistry.name(IdempotencyFilter.class, "hits"));
+        this.collapsed = metricRegistry.meter(MetricRegistry.name(IdempotencyFilter.class, "collapsed"));
+        this.conflicts = metricRegistry.meter(MetricRegistry.name(IdempotencyFilter.class, "conflicts"));
+        this.mismatches = metricRegistry.meter(MetricRegistry.name(IdempotencyFilter.class, "mismatches"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(IdempotencyFilter.class, "misses"));
+        metricRegistry.register(MetricRegistry.name(IdempotencyFilter.class, "size"), (Gauge<Integer>) this::size);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // The response of an asynchronous request is only known at the end of its last dispatch
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+        throws ServletException, IOException {
+
+        if (isAsyncDispatch(request)) {
+            Execution execution = (Execution) request.getAttribute(EXECUTION_ATTRIBUTE);
+            if (execution == null) {
+                chain.doFilter(request, response);
+            } else {
+                execute(execution, request, response, chain);
+            }
+            return;
+        }
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid " + IDEMPOTENCY_KEY_HEADER + " header");
+            return;
+        }
+        String key = caller(request) + " " + request.getRequestURI() + " " + idempotencyKey;
+        Execution execution = new Execution(key);
+        Execution previous = putIfAbsent(execution);
+        if (previous == null) {
+            misses.mark();
+            execute(execution, new DigestingRequest(request), new ContentCachingResponseWrapper(response), chain);
+            return;
+        }
+        if (!previous.response.isDone()) {
+            collapsed.mark();
+            log.debug("Waiting for the in-flight request with idempotency key {}", key);
+        }
+        CachedResponse cached;
+        try {
+            cached = previous.response.get(properties.getInFlightTimeoutInSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            conflicts.mark();
+            log.debug("Conflict with the in-flight request with idempotency key {}", key);
+            response.setHeader("Retry-After", Integer.toString(RETRY_AFTER_IN_SECONDS));
+            response.sendError(HttpServletResponse.SC_CONFLICT,
+                "A request with the same " + IDEMPOTENCY_KEY_HEADER + " is still being processed");
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException(e);
+        } catch (ExecutionException e) {
+            throw new ServletException(e.getCause());
+        }
+        if (cached == null) {
+            // The first request failed, so this one is processed as if it were the first
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!MessageDigest.isEqual(previous.bodyDigest, new DigestingRequest(request).digest())) {
+            mismatches.mark();
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                "A request with the same " + IDEMPOTENCY_KEY_HEADER + " had another body");
+            return;
+        }
+        hits.mark();
+        cached.replay(response);
+    }
+
+    /**
+     * @return the login of the current user, or the IP of the client for anonymous requests
+     */
+    private String caller(HttpServletRequest request) {
+        if (SecurityUtils.isAuthenticated()) {
+            return "user:" + SecurityUtils.getCurrentUserLogin();
+        }
+        return "anonymous:" + clientIpResolver.resolve(request);
+    }
+
+    private void execute(Execution execution, HttpServletRequest request, HttpServletResponse response,
+                         FilterChain chain) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        if (wrapper == null) {
+            // An asynchronous dispatch may be given the response the request started with, rather than its wrapper
+            wrapper = new ContentCachingResponseWrapper(response);
+            response = wrapper;
+        }
+        boolean completed = false;
+        try {
+            chain.doFilter(request, response);
+            if (request instanceof DigestingRequest) {
+                // The body was read on the first dispatch, even if the response is only made by a later one
+                execution.bodyDigest = ((DigestingRequest) request).digest();
+            }
+            if (request.isAsyncStarted()) {
+                request.setAttribute(EXECUTION_ATTRIBUTE, execution);
+                return;
+            }
+            if (wrapper.getStatusCode() < HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+                execution.expirationTime = System.currentTimeMillis()
+                    + TimeUnit.SECONDS.toMillis(properties.getTimeToLiveInSeconds());
+                execution.response.complete(new CachedResponse(wrapper));
+                completed = true;
+            }
+            wrapper.copyBodyToResponse();
+        } finally {
+            if (!completed && !request.isAsyncStarted()) {
+                remove(execution);
+                execution.response.complete(null);
+            }
+        }
+    }
+
+    private synchronized Execution putIfAbsent(Execution execution) {
+        Execution previous = executions.get(execution.key);
+        if (previous != null && previous.isExpired()) {
+            previous = null;
+        }
+        if (previous == null) {
+            executions.put(execution.key, execution);
+        }
+        return previous;
+    }
+
+    private synchronized void remove(Execution execution) {
+        executions.remove(execution.key, execution);
+    }
+
+    private synchronized int size() {
+        Iterator<Execution> iterator = executions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired()) {
+                iterator.remove();
+            }
+        }
+        return executions.size();
+    }
+
+    private static final class Execution {
+
+        private final String key;
+
+        private final CompletableFuture<CachedResponse> response = new CompletableFuture<>();
+
+        private volatile long expirationTime = Long.MAX_VALUE;
+
+        private volatile byte[] bodyDigest;
+
+        Execution(String key) {
+            this.key = key;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expirationTime;
+        }
+    }
+
+    /**
+     * Computes the digest of the body of a request, as the application reads it. The parameters of a form are
+     * digested instead, as the container reads them without going through the wrapper.
+     */
+    private static final class DigestingRequest extends HttpServletRequestWrapper {
+
+        private final MessageDigest digest;
+
+        private ServletInputStream inputStream;
+
+        private BufferedReader reader;
+
+        private byte[] result;
+
+        DigestingRequest(HttpServletRequest request) {
+            super(request);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                ServletInputStream delegate = super.getInputStream();
+                inputStream = new ServletInputStream() {
+
+                    @Override
+                    public int read() throws IOException {
+                        int read = delegate.read();
+                        if (read >= 0) {
+                            digest.update((byte) read);
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int read = delegate.read(buffer, offset, length);
+                        if (read > 0) {
+                            digest.update(buffer, offset, read);
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return delegate.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener readListener) {
+                        delegate.setReadListener(readListener);
+                    }
+                };
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                String encoding = getCharacterEncoding();
+                reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.ISO_8859_1.name() : encoding));
+            }
+            return reader;
+        }
+
+        /**
+         * @return the digest of the body, reading what the application did not
+         */
+        byte[] digest() throws IOException {
+            if (result == null) {
+                result = computeDigest();
+            }
+            return result;
+        }
+
+        private byte[] computeDigest() throws IOException {
+            String contentType = getContentType();
+            if (contentType != null && contentType.startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE)) {
+                new TreeMap<>(getParameterMap()).forEach((name, values) -> {
+                    digest.update(name.getBytes(StandardCharsets.UTF_8));
+                    for (String value : values) {
+                        digest.update((byte) 0);
+                        digest.update(value.getBytes(StandardCharsets.UTF_8));
+                    }
+                    digest.update((byte) '\n');
+                });
+                return digest.digest();
+            }
+            InputStream input = getInputStream();
+            byte[] buffer = new byte[8192];
+            try {
+                while (input.read(buffer) >= 0) {
+                    // Digested as it is read
+                }
+            } catch (IOException e) {
+                // Closed by the application, once it read the body
+            }
+            return digest.digest();
+        }
+    }
+
+    private static final class CachedResponse {
+
+        private final int status;
+
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+
+        private final String contentType;
+
+        private final byte[] body;
+
+        CachedResponse(ContentCachingResponseWrapper response) {
+            this.status = response.getStatusCode();
+            for (String name : response.getHeaderNames()) {
+                if (!"Content-Length".equalsIgnoreCase(name)) {
+                    headers.put(name, new ArrayList<>(response.getHeaders(name)));
+                }
+            }
+            this.contentType = response.getContentType();
+            this.body = response.getContentAsByteArray();
+        }
+
+        void replay(HttpServletResponse response) throws IOException {
+            response.setStatus(status);
+            headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+            response.setHeader(REPLAYED_HEADER, "true");
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package org.fmarin.tournoidevincennes.web.filter;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This filter limits the rate of requests on the sensitive endpoints, like the signup and authentication ones,
+ * before they reach the database or BCrypt.
+ * <p>
+ * Each client IP, as resolved by the {@link ClientIpResolver}, and each /24 subnet (/64 in IPv6), gets a token
+ * bucket per limited path, configured in {@code jhipster.http.rate-limit}. Requests finding either bucket empty get
+ * a 429 Too Many Requests, with a {@code Retry-After} header, and take no token from the other one.
+ * </p>
+ * <p>
+ * Paths are matched the way Spring MVC maps them to their handlers, so a limited path is also limited with a trailing
+ * slash or a file extension: {@code /api/authenticate/} and {@code /api/authenticate.json} share the buckets of
+ * {@code /api/authenticate}.
+ * </p>
+ * <p>
+ * Buckets are lock-free. At most {@code jhipster.http.rate-limit.max-buckets} of them are kept: past that, the
+ * buckets which have refilled completely are evicted, which loses nothing as they are as good as new ones.
+ * </p>
+ */
+public class RateLimitFilter implements Filter {
+
+    public static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final Map<String, Limit> limits = new HashMap<>();
+
+    private final int maxBuckets;
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final ClientIpResolver clientIpResolver;
+
+    private final Meter throttled;
+
+    public RateLimitFilter(JHipsterProperties jHipsterProperties, ClientIpResolver clientIpResolver,
+                           MetricRegistry metricRegistry) {
+        JHipsterProperties.Http.RateLimit properties = jHipsterProperties.getHttp().getRateLimit();
+        if (properties.getSubnetMultiplier() <= 0) {
+            throw new IllegalArgumentException("jhipster.http.rate-limit.subnet-multiplier must be positive, " +
+                "but was " + properties.getSubnetMultiplier());
+        }
+        for (JHipsterProperties.Http.RateLimit.Limit limit : properties.getLimits()) {
+            limits.put(limit.getPath(), new Limit(limit, properties.getSubnetMultiplier(), metricRegistry));
+        }
+        this.maxBuckets = properties.getMaxBuckets();
+        this.clientIpResolver = clientIpResolver;
+        this.throttled = metricRegistry.meter(MetricRegistry.name(RateLimitFilter.class, "throttled"));
+        metricRegistry.register(MetricRegistry.name(RateLimitFilter.class, "buckets"), (Gauge<Integer>) buckets::size);
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        // Nothing to initialize
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to destroy
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException, ServletException {
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        Limit limit = limit(httpRequest.getServletPath());
+        if (limit == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String ip = clientIpResolver.resolve(httpRequest);
+        long now = System.nanoTime();
+        TokenBucket ipBucket = bucket(limit.path + " " + ip, limit.ipInterval, limit.ipTolerance, now);
+        TokenBucket subnetBucket =
+            bucket(limit.path + " " + subnet(ip), limit.subnetInterval, limit.subnetTolerance, now);
+        long waitNanos = tryConsume(ipBucket, subnetBucket, now);
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        throttled.mark();
+        limit.throttled.mark();
+        log.debug("Throttled request from {} on {}", ip, limit.path);
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(SC_TOO_MANY_REQUESTS);
+        long retryAfter = TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1);
+        httpResponse.setHeader("Retry-After", Long.toString(retryAfter));
+    }
+
+    private Limit limit(String path) {
+        Limit limit = limits.get(path);
+        if (limit == null) {
+            limit = limits.get(normalize(path));
+        }
+        return limit;
+    }
+
+    /**
+     * @return the path without its trailing slashes nor the file extension of its last segment, which Spring MVC
+     * ignores when mapping a request to its handler
+     */
+    static String normalize(String path) {
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        int lastSegment = path.lastIndexOf('/', end - 1) + 1;
+        int extension = path.indexOf('.', lastSegment);
+        if (extension > lastSegment && extension < end) {
+            end = extension;
+        }
+        return path.substring(0, end);
+    }
+
+    /**
+     * Take a token from both buckets, or from none: both are checked first, so a request throttled by one bucket
+     * does not drain the other one.
+     *
+     * @return 0 if the tokens were taken, or else the time until both buckets have one, in nanoseconds
+     */
+    static long tryConsume(TokenBucket ipBucket, TokenBucket subnetBucket, long now) {
+        long waitNanos = Math.max(ipBucket.waitTime(now), subnetBucket.waitTime(now));
+        if (waitNanos == 0) {
+            waitNanos = ipBucket.tryConsume(now);
+            if (waitNanos == 0) {
+                waitNanos = subnetBucket.tryConsume(now);
+                if (waitNanos > 0) {
+                    // The subnet bucket was emptied by a concurrent request in the meantime
+                    ipBucket.refund();
+                }
+            }
+        }
+        return waitNanos;
+    }
+
+    private TokenBucket bucket(String key, long interval, long tolerance, long now) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets) {
+                evict();
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(interval, tolerance, now));
+        }
+        return bucket;
+    }
+
+    private void evict() {
+        // A single thread evicts, the others carry on while the map is briefly over its bound
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+            if (buckets.size() >= maxBuckets) {
+                // Flooded by more clients than there is room for: forget some of them
+                log.warn("Rate limit buckets still full after eviction, dropping some of them");
+                Iterator<TokenBucket> iterator = buckets.values().iterator();
+                for (int i = buckets.size() - maxBuckets / 2; i > 0 && iterator.hasNext(); i--) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the /24 subnet of an IPv4 address, or the /64 subnet of an IPv6 address
+     */
+    static String subnet(String ip) {
+        int lastDot = ip.lastIndexOf('.');
+        if (lastDot > 0 && ip.indexOf(':') < 0) {
+            return ip.substring(0, lastDot);
+        }
+        try {
+            // A literal address, so there is no lookup
+            byte[] address = InetAddress.getByName(ip).getAddress();
+            StringBuilder subnet = new StringBuilder();
+            for (int i = 0; i < Math.min(8, address.length); i++) {
+                subnet.append(Integer.toHexString(address[i] & 0xff)).append(':');
+            }
+            return subnet.toString();
+        } catch (UnknownHostException e) {
+            return ip;
+        }
+    }
+
+    private static final class Limit {
+
+        private final String path;
+
+        private final long ipInterval;
+
+        private final long ipTolerance;
+
+        private final long subnetInterval;
+
+        private final long subnetTolerance;
+
+        private final Meter throttled;
+
+        Limit(JHipsterProperties.Http.RateLimit.Limit limit, int subnetMultiplier, MetricRegistry metricRegistry) {
+            if (limit.getCapacity() <= 0 || limit.getRefillPerMinute() <= 0) {
+                throw new IllegalArgumentException("The rate limit of " + limit.getPath() + " must have a positive " +
+                    "capacity and refill-per-minute, but has " + limit.getCapacity() + " and " +
+                    limit.getRefillPerMinute());
+            }
+            this.path = limit.getPath();
+            this.ipInterval = TimeUnit.MINUTES.toNanos(1) / limit.getRefillPerMinute();
+            this.ipTolerance = ipInterval * limit.getCapacity();
+            this.subnetInterval = ipInterval / subnetMultiplier;
+            this.subnetTolerance = subnetInterval * limit.getCapacity() * subnetMultiplier;
+            this.throttled = metricRegistry.meter(MetricRegistry.name(RateLimitFilter.class, "throttled", path));
+        }
+    }
+
+    /**
+     * A token bucket, implemented as the generic cell rate algorithm: instead of a token count refilled over time,
+     * it only holds the time at which it will be full again, so a request is a single compare-and-set.
+     */
+    static final class TokenBucket {
+
+        private final long interval;
+
+        private final long tolerance;
+
+        private final AtomicLong fullTime;
+
+        /**
+         * @param interval the time for one token to be refilled, in nanoseconds
+         * @param tolerance the time for the whole bucket to be refilled, in nanoseconds
+         * @param now the current {@link System#nanoTime()}, the bucket starting full
+         */
+        TokenBucket(long interval, long tolerance, long now) {
+            this.interval = interval;
+            this.tolerance = tolerance;
+            this.fullTime = new AtomicLong(now);
+        }
+
+        /**
+         * @return 0 if a token is available, or else the time until one is, in nanoseconds, without taking it
+         */
+        long waitTime(long now) {
+            return Math.max(Math.max(fullTime.get() - now, 0) + interval - tolerance, 0);
+        }
+
+        /**
+         * @return 0 if a token was taken, or else the time until one is available, in nanoseconds
+         */
+        long tryConsume(long now) {
+            while (true) {
+                long current = fullTime.get();
+                long next = Math.max(current - now, 0) + now + interval;
+                long wait = next - now - tolerance;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (fullTime.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Give back a token taken by {@link #tryConsume(long)}.
+         */
+        void refund() {
+            fullTime.addAndGet(-interval);
+        }
+
+        boolean isFull(long now) {
+            return fullTime.get() - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
+import org.fmarin.tournoidevincennes.service.AuthorityRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * REST controller for the authorities known to the application.
+ */
+@RestController
+@RequestMapping("/api")
+public class AuthorityResource {
+
+    private final Logger log = LoggerFactory.getLogger(AuthorityResource.class);
+
+    private final AuthorityRegistry authorityRegistry;
+
+    @Autowired
+    public AuthorityResource(AuthorityRegistry authorityRegistry) {
+        this.authorityRegistry = authorityRegistry;
+    }
+
+    /**
+     * POST  /authorities/refresh : Load the authorities again from the database, after they were changed there.
+     *
+     * @return the ResponseEntity with status 200 (OK) and with body the names of the authorities
+     */
+    @PostMapping("/authorities/refresh")
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public ResponseEntity<Set<String>> refreshAuthorities() {
+        log.debug("REST request to refresh the authorities");
+        return ResponseEntity.ok(new TreeSet<>(authorityRegistry.refresh()));
+    }
+}
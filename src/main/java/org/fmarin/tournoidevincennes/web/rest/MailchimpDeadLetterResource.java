@@ -0,0 +1,80 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import org.fmarin.tournoidevincennes.domain.MailchimpDeadLetter;
+import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
+import org.fmarin.tournoidevincennes.service.MailchimpDeadLetterService;
+import org.fmarin.tournoidevincennes.web.rest.util.HeaderUtil;
+import org.fmarin.tournoidevincennes.web.rest.util.PaginationUtil;
+import io.swagger.annotations.ApiParam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URISyntaxException;
+import java.util.List;
+
+/**
+ * REST controller for the Mailchimp subscriptions the outbox gave up on.
+ */
+@RestController
+@RequestMapping("/api")
+public class MailchimpDeadLetterResource {
+
+    private final Logger log = LoggerFactory.getLogger(MailchimpDeadLetterResource.class);
+
+    private final MailchimpDeadLetterService deadLetterService;
+
+    @Autowired
+    public MailchimpDeadLetterResource(MailchimpDeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    /**
+     * GET  /mailchimp/dead-letters : get all the dead letters.
+     *
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of dead letters in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @GetMapping("/mailchimp/dead-letters")
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public ResponseEntity<List<MailchimpDeadLetter>> getAllDeadLetters(@ApiParam Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a page of Mailchimp dead letters");
+        Page<MailchimpDeadLetter> page = deadLetterService.findAll(pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/mailchimp/dead-letters");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * POST  /mailchimp/dead-letters/replay : Put dead letters back in the Mailchimp outbox.
+     *
+     * @param ids the ids of the dead letters to replay, or all of them if empty or missing
+     * @return the ResponseEntity with status 200 (OK) and with body the number of dead letters replayed
+     */
+    @PostMapping("/mailchimp/dead-letters/replay")
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public ResponseEntity<Integer> replayDeadLetters(@RequestBody(required = false) List<Long> ids) {
+        log.debug("REST request to replay Mailchimp dead letters : {}", ids);
+        int replayed = ids == null || ids.isEmpty() ?
+            deadLetterService.replayAll() : deadLetterService.replay(ids);
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createAlert("tournoidevincennesApp.mailchimpDeadLetter.replayed",
+                Integer.toString(replayed)))
+            .body(replayed);
+    }
+}
@@ -0,0 +1,62 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
+import org.fmarin.tournoidevincennes.service.ProspectExportService;
+import org.fmarin.tournoidevincennes.service.ProspectFileFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+
+/**
+ * REST controller for exporting prospects in bulk.
+ * <p>
+ * The prospects are written to the response as they are read, so the whole table can be exported. Compression is
+ * left to the server, see {@code server.compression} in the prod profile.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api")
+public class ProspectExportResource {
+
+    private final Logger log = LoggerFactory.getLogger(ProspectExportResource.class);
+
+    private final ProspectExportService prospectExportService;
+
+    @Autowired
+    public ProspectExportResource(ProspectExportService prospectExportService) {
+        this.prospectExportService = prospectExportService;
+    }
+
+    /**
+     * GET  /prospects/export : Export the prospects, ordered by id.
+     *
+     * @param format the format of the export, CSV (the default) or NDJSON for newline delimited JSON
+     * @param sinceId only export the prospects with a greater id, typically the last id of the previous export
+     * @param sinceCreatedDate only export the prospects created at or after this date
+     * @param response the response the prospects are written to, with status 200 (OK)
+     * @throws IOException if the prospects could not be written
+     */
+    @GetMapping("/prospects/export")
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public void exportProspects(@RequestParam(name = "format", defaultValue = "CSV") ProspectFileFormat format,
+                                @RequestParam(name = "since-id", required = false) Long sinceId,
+                                @RequestParam(name = "since-created-date", required = false)
+                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime sinceCreatedDate,
+                                HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Prospects as {} since id {} and date {}", format, sinceId, sinceCreatedDate);
+        response.setContentType(format.getMediaType() + ";charset=UTF-8");
+        prospectExportService.exportProspects(sinceId, sinceCreatedDate, format, response.getWriter());
+    }
+}
@@ -0,0 +1,81 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
+import org.fmarin.tournoidevincennes.service.ProspectFileFormat;
+import org.fmarin.tournoidevincennes.service.ProspectImportService;
+import org.fmarin.tournoidevincennes.service.dto.ProspectImportReportDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * REST controller for importing prospects in bulk.
+ * <p>
+ * The request body is streamed to the {@link ProspectImportService}, so uploads of any size can be imported.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api")
+public class ProspectImportResource {
+
+    private final Logger log = LoggerFactory.getLogger(ProspectImportResource.class);
+
+    private final ProspectImportService prospectImportService;
+
+    @Autowired
+    public ProspectImportResource(ProspectImportService prospectImportService) {
+        this.prospectImportService = prospectImportService;
+    }
+
+    /**
+     * POST  /prospects/import : Import prospects from a CSV upload.
+     *
+     * @param request the request, whose body is one prospect per line, the e-mail being in the "email" column, or in the first one without a header
+     * @return the ResponseEntity with status 200 (OK) and with body the report of the import
+     * @throws IOException if the body could not be read
+     */
+    @PostMapping(path = "/prospects/import", consumes = ProspectFileFormat.TEXT_CSV)
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public ResponseEntity<ProspectImportReportDTO> importCsvProspects(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Prospects from CSV");
+        return importProspects(request, ProspectFileFormat.CSV);
+    }
+
+    /**
+     * POST  /prospects/import : Import prospects from a newline delimited JSON upload.
+     *
+     * @param request the request, whose body is one JSON object per line, with an "email" property
+     * @return the ResponseEntity with status 200 (OK) and with body the report of the import
+     * @throws IOException if the body could not be read
+     */
+    @PostMapping(path = "/prospects/import", consumes = ProspectFileFormat.APPLICATION_NDJSON)
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public ResponseEntity<ProspectImportReportDTO> importNdjsonProspects(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Prospects from NDJSON");
+        return importProspects(request, ProspectFileFormat.NDJSON);
+    }
+
+    private ResponseEntity<ProspectImportReportDTO> importProspects(HttpServletRequest request,
+                                                                   ProspectFileFormat format) throws IOException {
+        Charset charset = request.getCharacterEncoding() != null ?
+            Charset.forName(request.getCharacterEncoding()) : StandardCharsets.UTF_8;
+        try (Reader reader = new InputStreamReader(request.getInputStream(), charset)) {
+            return ResponseEntity.ok(prospectImportService.importProspects(reader, format));
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package org.fmarin.tournoidevincennes.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
-import com.ecwid.maleorang.MailchimpException;
 import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
 import org.fmarin.tournoidevincennes.service.ProspectService;
+import org.fmarin.tournoidevincennes.service.ProspectWriteBuffer;
+import org.fmarin.tournoidevincennes.service.util.CompletableFutures;
+import org.fmarin.tournoidevincennes.web.rest.errors.ServiceUnavailableException;
 import org.fmarin.tournoidevincennes.web.rest.util.HeaderUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,9 +18,13 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
-import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * REST controller for managing Prospect.
@@ -30,34 +37,67 @@ public class ProspectResource {
 
     private final ProspectService prospectService;
 
+    private final ProspectWriteBuffer prospectWriteBuffer;
+
+    private final long timeoutMs;
+
     @Autowired
-    public ProspectResource(ProspectService prospectService) {
+    public ProspectResource(ProspectService prospectService, ProspectWriteBuffer prospectWriteBuffer,
+                            JHipsterProperties jHipsterProperties) {
         this.prospectService = prospectService;
+        this.prospectWriteBuffer = prospectWriteBuffer;
+        this.timeoutMs = jHipsterProperties.getProspect().getSignup().getTimeoutMs();
     }
 
     /**
      * POST  /prospects : Create a new prospect.
+     * <p>
+     * The prospect is written by the signup executor, or by the write-behind buffer when it is enabled, and the
+     * servlet thread is released right away.
+     * </p>
      *
      * @param prospect the prospect to create
-     * @return the ResponseEntity with status 201 (Created) and with body the new prospect, or with status 400 (Bad Request) if the prospect has already an ID
-     * @throws URISyntaxException if the Location URI syntax is incorrect
+     * @return the ResponseEntity with status 201 (Created) and with body the new prospect, or with status 400 (Bad Request) if the prospect has already an ID or if the email is already registered, or with status 503 (Service Unavailable) if too many signups are in progress or the prospect was not written in time
      */
     @PostMapping("/prospects")
     @Timed
-    public ResponseEntity<Prospect> createProspect(@Valid @RequestBody Prospect prospect) throws URISyntaxException {
+    public CompletableFuture<ResponseEntity<Prospect>> createProspect(@Valid @RequestBody Prospect prospect) {
         log.debug("REST request to save Prospect : {}", prospect);
         if (prospect.getId() != null) {
-            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("prospect", "idexists", "A new prospect cannot already have an ID")).body(null);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("prospect", "idexists", "A new prospect cannot already have an ID")).body(null));
+        }
+        CompletableFuture<Prospect> signup;
+        try {
+            signup = prospectWriteBuffer.isEnabled() ?
+                prospectWriteBuffer.submit(prospect.getEmail()) : prospectService.createProspectAsync(prospect.getEmail());
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Too many signups in progress", e);
+        }
+        return CompletableFutures.within(signup, timeoutMs, TimeUnit.MILLISECONDS)
+            .handle((result, error) -> created(prospect.getEmail(), result, error));
+    }
+
+    private ResponseEntity<Prospect> created(String email, Prospect result, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof TimeoutException) {
+            // The prospect is still being written, and will be registered even though this request gives up
+            throw new ServiceUnavailableException("Signup not written in time", error);
+        }
+        if (error != null) {
+            throw new IllegalStateException("Could not register prospect " + email, error);
+        }
+        if (result == null) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("prospect", "emailexists", "Email already registered")).body(null);
         }
         try {
-            Prospect result = prospectService.createProspect(prospect.getEmail());
             return ResponseEntity.created(new URI("/api/prospects/" + result.getId()))
                 .headers(HeaderUtil.createEntityCreationAlert("prospect", result.getId().toString()))
                 .body(result);
-        } catch (IOException | MailchimpException e) {
-            e.printStackTrace();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
         }
-        return null;
     }
 
 //    /**
@@ -0,0 +1,58 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.service.ProspectSignupCounter;
+import org.fmarin.tournoidevincennes.service.dto.ProspectStatsDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST controller for the public signup figures of the landing page.
+ * <p>
+ * The figures come from the in-memory {@link ProspectSignupCounter}, and are public so browsers and CDNs can cache
+ * them for {@code jhipster.prospect.stats.max-age-in-seconds}. Past that, the ETag lets them revalidate with a
+ * 304 Not Modified as long as there was no signup and the current minute is the same.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api")
+public class ProspectStatsResource {
+
+    private final ProspectSignupCounter signupCounter;
+
+    private final CacheControl cacheControl;
+
+    @Autowired
+    public ProspectStatsResource(ProspectSignupCounter signupCounter, JHipsterProperties jHipsterProperties) {
+        this.signupCounter = signupCounter;
+        this.cacheControl = CacheControl
+            .maxAge(jHipsterProperties.getProspect().getStats().getMaxAgeInSeconds(), TimeUnit.SECONDS)
+            .cachePublic();
+    }
+
+    /**
+     * GET  /prospects/stats : get the number of registered prospects, and the signups of the last minutes and hours.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the figures in body, or with status 304 (Not Modified)
+     * if they did not change since the ETag in the If-None-Match header
+     */
+    @GetMapping("/prospects/stats")
+    @Timed
+    public ResponseEntity<ProspectStatsDTO> getProspectStats() {
+        ProspectStatsDTO stats = signupCounter.getStats();
+        // The figures only change with a signup, or when the minute turns and the sparkline shifts
+        String eTag = "\"" + stats.getRegistered() + "-" + stats.getMinute().toEpochSecond() / 60 + "\"";
+        // Spring answers 304 Not Modified itself when the ETag matches the If-None-Match header
+        return ResponseEntity.ok()
+            .cacheControl(cacheControl)
+            .eTag(eTag)
+            .body(stats);
+    }
+}
@@ -1,10 +1,13 @@
 package org.fmarin.tournoidevincennes.web.rest;
 
+import org.fmarin.tournoidevincennes.security.LoginAttemptService;
 import org.fmarin.tournoidevincennes.security.jwt.JWTConfigurer;
 import org.fmarin.tournoidevincennes.security.jwt.TokenProvider;
+import org.fmarin.tournoidevincennes.web.filter.ClientIpResolver;
 import org.fmarin.tournoidevincennes.web.rest.vm.LoginVM;
 
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import com.codahale.metrics.annotation.Timed;
 import org.springframework.http.HttpStatus;
@@ -14,9 +17,11 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
@@ -30,9 +35,25 @@ public class UserJWTController {
     @Inject
     private AuthenticationManager authenticationManager;
 
+    @Inject
+    private LoginAttemptService loginAttemptService;
+
+    @Inject
+    private ClientIpResolver clientIpResolver;
+
     @PostMapping("/authenticate")
     @Timed
-    public ResponseEntity<?> authorize(@Valid @RequestBody LoginVM loginVM, HttpServletResponse response) {
+    public ResponseEntity<?> authorize(@Valid @RequestBody LoginVM loginVM, HttpServletRequest request,
+                                       HttpServletResponse response) {
+
+        String ip = clientIpResolver.resolve(request);
+        long retryAfter = loginAttemptService.getRetryAfter(loginVM.getUsername(), ip);
+        if (retryAfter > 0) {
+            // Neither the user nor the password are looked at while the login or the IP is blocked
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", Long.toString(TimeUnit.MILLISECONDS.toSeconds(retryAfter + 999)))
+                .build();
+        }
 
         UsernamePasswordAuthenticationToken authenticationToken =
             new UsernamePasswordAuthenticationToken(loginVM.getUsername(), loginVM.getPassword());
@@ -40,12 +61,33 @@ public class UserJWTController {
         try {
             Authentication authentication = this.authenticationManager.authenticate(authenticationToken);
             SecurityContextHolder.getContext().setAuthentication(authentication);
+            loginAttemptService.loginSucceeded(loginVM.getUsername());
             boolean rememberMe = (loginVM.isRememberMe() == null) ? false : loginVM.isRememberMe();
             String jwt = tokenProvider.createToken(authentication, rememberMe);
             response.addHeader(JWTConfigurer.AUTHORIZATION_HEADER, "Bearer " + jwt);
             return ResponseEntity.ok(new JWTToken(jwt));
         } catch (AuthenticationException exception) {
+            loginAttemptService.loginFailed(loginVM.getUsername(), ip);
             return new ResponseEntity<>(Collections.singletonMap("AuthenticationException",exception.getLocalizedMessage()), HttpStatus.UNAUTHORIZED);
         }
     }
+
+    /**
+     * POST  /logout : Revoke the JWT token of the request, so it cannot be used anymore.
+     *
+     * @param request the request, with the token in its Authorization header
+     * @return the ResponseEntity with status 200 (OK), or with status 400 (Bad Request) if the token could not be
+     * revoked
+     */
+    @PostMapping("/logout")
+    @Timed
+    public ResponseEntity<Void> logout(HttpServletRequest request) {
+        String bearerToken = request.getHeader(JWTConfigurer.AUTHORIZATION_HEADER);
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ") &&
+            tokenProvider.revokeToken(bearerToken.substring(7))) {
+            SecurityContextHolder.clearContext();
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.badRequest().build();
+    }
 }
@@ -6,7 +6,10 @@ import org.fmarin.tournoidevincennes.domain.User;
 import org.fmarin.tournoidevincennes.repository.UserRepository;
 import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
 import org.fmarin.tournoidevincennes.service.MailService;
+import org.fmarin.tournoidevincennes.service.UserSearchIndex;
 import org.fmarin.tournoidevincennes.service.UserService;
+import org.fmarin.tournoidevincennes.service.dto.ManagedUserDTO;
+import org.fmarin.tournoidevincennes.service.dto.UserSummaryDTO;
 import org.fmarin.tournoidevincennes.web.rest.vm.ManagedUserVM;
 import org.fmarin.tournoidevincennes.web.rest.util.HeaderUtil;
 import org.fmarin.tournoidevincennes.web.rest.util.PaginationUtil;
@@ -24,8 +27,8 @@ import org.springframework.web.bind.annotation.*;
 import javax.inject.Inject;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * REST controller for managing users.
@@ -55,6 +58,10 @@ import java.util.stream.Collectors;
 @RequestMapping("/api")
 public class UserResource {
 
+    private static final int MAX_SIZE = 2000;
+
+    private static final int MAX_SEARCH_SIZE = 100;
+
     private final Logger log = LoggerFactory.getLogger(UserResource.class);
 
     @Inject
@@ -66,6 +73,9 @@ public class UserResource {
     @Inject
     private UserService userService;
 
+    @Inject
+    private UserSearchIndex userSearchIndex;
+
     /**
      * POST  /users  : Creates a new user.
      * <p>
@@ -115,11 +125,11 @@ public class UserResource {
     @Secured(AuthoritiesConstants.ADMIN)
     public ResponseEntity<ManagedUserVM> updateUser(@RequestBody ManagedUserVM managedUserVM) {
         log.debug("REST request to update User : {}", managedUserVM);
-        Optional<User> existingUser = userRepository.findOneByEmail(managedUserVM.getEmail());
-        if (existingUser.isPresent() && (!existingUser.get().getId().equals(managedUserVM.getId()))) {
+        if (userRepository.findAllByEmail(managedUserVM.getEmail()).stream()
+            .anyMatch(user -> !user.getId().equals(managedUserVM.getId()))) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("userManagement", "emailexists", "E-mail already in use")).body(null);
         }
-        existingUser = userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase());
+        Optional<User> existingUser = userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase());
         if (existingUser.isPresent() && (!existingUser.get().getId().equals(managedUserVM.getId()))) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("userManagement", "userexists", "Login already in use")).body(null);
         }
@@ -141,14 +151,77 @@ public class UserResource {
      */
     @GetMapping("/users")
     @Timed
-    public ResponseEntity<List<ManagedUserVM>> getAllUsers(@ApiParam Pageable pageable)
+    public ResponseEntity<List<ManagedUserDTO>> getAllUsers(@ApiParam Pageable pageable)
         throws URISyntaxException {
-        Page<User> page = userRepository.findAllWithAuthorities(pageable);
-        List<ManagedUserVM> managedUserVMs = page.getContent().stream()
-            .map(ManagedUserVM::new)
-            .collect(Collectors.toList());
+        Page<ManagedUserDTO> page = userService.getAllManagedUsers(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/users");
-        return new ResponseEntity<>(managedUserVMs, headers, HttpStatus.OK);
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /users?cursor=:cursor : get the users following a cursor, ordered by login.
+     * <p>
+     * Unlike pages, which get slower the deeper they are, every cursor is as fast as the first one. The cursor of the
+     * next users is in the "next" Link header, there is none after the last users.
+     * </p>
+     *
+     * @param cursor the cursor returned with the previous users, empty for the first users
+     * @param size the maximum number of users
+     * @return the ResponseEntity with status 200 (OK) and with body the users, or with status 400 (Bad Request) if
+     * the cursor is not valid
+     * @throws URISyntaxException if the pagination headers couldn't be generated
+     */
+    @GetMapping(value = "/users", params = "cursor")
+    @Timed
+    public ResponseEntity<List<ManagedUserDTO>> getUsersAfter(@RequestParam String cursor,
+                                                             @RequestParam(defaultValue = "20") int size)
+        throws URISyntaxException {
+        String login = null;
+        Long id = null;
+        if (!cursor.isEmpty()) {
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(":", 2);
+                id = Long.valueOf(position[0]);
+                login = position[1];
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                return ResponseEntity.badRequest()
+                    .headers(HeaderUtil.createFailureAlert("userManagement", "invalidcursor", "Invalid cursor"))
+                    .body(null);
+            }
+        }
+        int limit = Math.max(1, Math.min(size, MAX_SIZE));
+        List<ManagedUserDTO> users = userService.getManagedUsersAfter(login, id, limit);
+        String nextCursor = null;
+        if (users.size() == limit) {
+            ManagedUserDTO last = users.get(users.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((last.getId() + ":" + last.getLogin()).getBytes(StandardCharsets.UTF_8));
+        }
+        HttpHeaders headers = PaginationUtil.generateCursorHttpHeaders(nextCursor, limit, "/api/users");
+        return new ResponseEntity<>(users, headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /users?query=:query : search the users by the start of their login, e-mail, first or last name.
+     * <p>
+     * The users are searched in memory, in the {@link UserSearchIndex}, without hitting the database.
+     * </p>
+     *
+     * @param query the start of the login, e-mail, first or last name, whatever its case
+     * @param size the maximum number of users
+     * @return the ResponseEntity with status 200 (OK) and with body the users found
+     */
+    @GetMapping(value = "/users", params = "query")
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public ResponseEntity<List<UserSummaryDTO>> searchUsers(@RequestParam String query,
+                                                            @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to search Users : {}", query);
+        if (query.trim().isEmpty()) {
+            return ResponseEntity.ok(Collections.emptyList());
+        }
+        return ResponseEntity.ok(userSearchIndex.search(query.trim(), Math.max(1, Math.min(size, MAX_SEARCH_SIZE))));
     }
 
     /**
@@ -167,6 +240,22 @@ public class UserResource {
                 .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * DELETE /users/:login/tokens : revoke all the JWT tokens of the "login" user, logging them out of all their
+     * sessions.
+     *
+     * @param login the login of the user
+     * @return the ResponseEntity with status 200 (OK)
+     */
+    @DeleteMapping("/users/{login:[_'.@A-Za-z0-9-]+}/tokens")
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public ResponseEntity<Void> revokeTokens(@PathVariable String login) {
+        log.debug("REST request to revoke the tokens of User: {}", login);
+        userService.revokeTokens(login);
+        return ResponseEntity.ok().headers(HeaderUtil.createAlert("userManagement.tokensRevoked", login)).build();
+    }
+
     /**
      * DELETE /users/:login : delete the "login" User.
      *
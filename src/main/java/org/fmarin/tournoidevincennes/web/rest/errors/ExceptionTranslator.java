@@ -2,6 +2,7 @@ package org.fmarin.tournoidevincennes.web.rest.errors;
 
 import java.util.List;
 
+import org.fmarin.tournoidevincennes.security.PasswordEncoderBusyException;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
@@ -68,6 +69,11 @@ public class ExceptionTranslator {
         return new ErrorVM(ErrorConstants.ERR_METHOD_NOT_SUPPORTED, exception.getMessage());
     }
 
+    @ExceptionHandler(PasswordEncoderBusyException.class)
+    public ResponseEntity<ErrorVM> processPasswordEncoderBusyException(PasswordEncoderBusyException ex) {
+        return processRuntimeException(new ServiceUnavailableException(ex.getMessage(), ex));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorVM> processRuntimeException(Exception ex) {
         BodyBuilder builder;
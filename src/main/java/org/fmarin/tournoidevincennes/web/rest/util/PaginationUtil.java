@@ -42,6 +42,28 @@ public final class PaginationUtil {
         return headers;
     }
 
+    /**
+     * @param nextCursor the cursor of the next elements, or null if there are none
+     * @param size the number of elements per request
+     * @param baseUrl the URL of the elements
+     */
+    public static HttpHeaders generateCursorHttpHeaders(String nextCursor, int size, String baseUrl)
+        throws URISyntaxException {
+
+        HttpHeaders headers = new HttpHeaders();
+        String link = "";
+        if (nextCursor != null) {
+            link = "<" + generateCursorUri(baseUrl, nextCursor, size) + ">; rel=\"next\",";
+        }
+        link += "<" + generateCursorUri(baseUrl, "", size) + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    private static String generateCursorUri(String baseUrl, String cursor, int size) throws URISyntaxException {
+        return UriComponentsBuilder.fromUriString(baseUrl).queryParam("cursor", cursor).queryParam("size", size).toUriString();
+    }
+
     private static String generateUri(String baseUrl, int page, int size) throws URISyntaxException {
         return UriComponentsBuilder.fromUriString(baseUrl).queryParam("page", page).queryParam("size", size).toUriString();
     }
@@ -0,0 +1,43 @@
+package org.fmarin.tournoidevincennes.domain;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the NormalizedEmail value type.
+ *
+ * @see NormalizedEmail
+ */
+public class NormalizedEmailUnitTest {
+
+    @Test
+    public void testTrimsAndLowerCases() {
+        assertThat(NormalizedEmail.of("  John.Doe@Example.COM ").getValue()).isEqualTo("john.doe@example.com");
+    }
+
+    @Test
+    public void testConvertsInternationalizedDomains() {
+        assertThat(NormalizedEmail.of("jean@B\u00fccher.example").getValue()).isEqualTo("jean@xn--bcher-kva.example");
+        // The same domain typed with a combining diaeresis
+        assertThat(NormalizedEmail.of("jean@Bu\u0308cher.example").getValue()).isEqualTo("jean@xn--bcher-kva.example");
+    }
+
+    @Test
+    public void testRemovesTrailingDotOfDomain() {
+        assertThat(NormalizedEmail.of("jean@example.com.").getValue()).isEqualTo("jean@example.com");
+    }
+
+    @Test
+    public void testKeepsDotsAndDomainsAsTyped() {
+        assertThat(NormalizedEmail.of("Jean.Dupont@Gmail.com").getValue()).isEqualTo("jean.dupont@gmail.com");
+        assertThat(NormalizedEmail.of("Jean.Dupont@gmail.com")).isNotEqualTo(NormalizedEmail.of("jeandupont@gmail.com"));
+        assertThat(NormalizedEmail.of("jean.dupont@gmail.com"))
+            .isNotEqualTo(NormalizedEmail.of("jean.dupont@googlemail.com"));
+    }
+
+    @Test
+    public void testKeepsNull() {
+        assertThat(NormalizedEmail.of(null)).isNull();
+    }
+}
@@ -0,0 +1,168 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.domain.MailchimpMember;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the MailchimpMemberRepositoryImpl, its PostgreSQL upsert and its cursors.
+ * <p>
+ * The integration tests run on H2, which does not know the PostgreSQL upsert. It is run against a PostgreSQL
+ * database with {@code -Dpostgresql.url=jdbc:postgresql://localhost/test -Dpostgresql.username=...
+ * -Dpostgresql.password=...}, in a temporary table.
+ * </p>
+ *
+ * @see MailchimpMemberRepositoryImpl
+ */
+public class MailchimpMemberRepositoryImplUnitTest {
+
+    private static final List<MailchimpMember> MEMBERS = Arrays.asList(
+        new MailchimpMember("first@localhost", "subscribed", ZonedDateTime.now()),
+        new MailchimpMember("second@localhost", "pending", null));
+
+    @Test
+    public void testUpsertsWithOnConflictOnPostgresql() throws Exception {
+        Connection connection = connection("PostgreSQL");
+
+        new MailchimpMemberRepositoryImpl(dataSource(connection)).upsertAll(MEMBERS);
+
+        verify(connection).prepareStatement(MailchimpMemberRepositoryImpl.POSTGRESQL_UPSERT);
+    }
+
+    @Test
+    public void testUpsertsWithMergeOnH2() throws Exception {
+        Connection connection = connection("H2");
+
+        new MailchimpMemberRepositoryImpl(dataSource(connection)).upsertAll(MEMBERS);
+
+        verify(connection).prepareStatement(MailchimpMemberRepositoryImpl.DEFAULT_UPSERT);
+    }
+
+    @Test
+    public void testMergeStreamsBothSidesInATransaction() throws Exception {
+        Connection connection = connection("PostgreSQL");
+        when(connection.getAutoCommit()).thenReturn(true);
+        PreparedStatement prospects = statement(connection);
+        PreparedStatement members = statement(connection);
+        doReturn(prospects).when(connection).prepareStatement(startsWith("select email, normalized_email"));
+        doReturn(members).when(connection).prepareStatement(startsWith("select email, status"));
+        MailchimpMemberRepositoryImpl repository = new MailchimpMemberRepositoryImpl(dataSource(connection));
+
+        String result = repository.mergeWithProspects(ZonedDateTime.now().minusDays(1), ZonedDateTime.now(), 100,
+            (prospectRows, memberRows) -> {
+                // PostgreSQL would read both result sets whole in auto-commit mode, whatever their fetch size
+                InOrder streamed = inOrder(connection, prospects, members);
+                try {
+                    streamed.verify(connection).setAutoCommit(false);
+                    streamed.verify(prospects).setFetchSize(100);
+                    streamed.verify(members).setFetchSize(100);
+                    streamed.verify(prospects).executeQuery();
+                    streamed.verify(members).executeQuery();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                assertThat(prospectRows.hasNext()).isFalse();
+                assertThat(memberRows.hasNext()).isFalse();
+                return "merged";
+            });
+
+        assertThat(result).isEqualTo("merged");
+        // The connection goes back to the pool as it was taken
+        InOrder restored = inOrder(connection);
+        restored.verify(connection).setAutoCommit(false);
+        restored.verify(connection).rollback();
+        restored.verify(connection).setAutoCommit(true);
+    }
+
+    @Test
+    public void testMergeReadsInTheSurroundingTransaction() throws Exception {
+        Connection connection = connection("PostgreSQL");
+        when(connection.getAutoCommit()).thenReturn(false);
+        PreparedStatement statement = statement(connection);
+        doReturn(statement).when(connection).prepareStatement(anyString());
+        MailchimpMemberRepositoryImpl repository = new MailchimpMemberRepositoryImpl(dataSource(connection));
+
+        repository.mergeWithProspects(ZonedDateTime.now().minusDays(1), ZonedDateTime.now(), 100,
+            (prospectRows, memberRows) -> null);
+
+        verify(connection, never()).setAutoCommit(anyBoolean());
+        verify(connection, never()).rollback();
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    public void testUpsertsOnPostgresql() throws Exception {
+        String url = System.getProperty("postgresql.url");
+        Assume.assumeTrue(url != null);
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url,
+            System.getProperty("postgresql.username"), System.getProperty("postgresql.password"), true);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            // Hides any mailchimp_member table of the database, for this connection only
+            jdbcTemplate.execute("create temporary table mailchimp_member (email varchar(100) primary key, " +
+                "status varchar(20) not null, last_changed timestamp)");
+            MailchimpMemberRepositoryImpl repository = new MailchimpMemberRepositoryImpl(dataSource);
+
+            repository.upsertAll(MEMBERS);
+            repository.upsertAll(Collections.singletonList(
+                new MailchimpMember("second@localhost", "subscribed", ZonedDateTime.now())));
+
+            List<Map<String, Object>> rows =
+                jdbcTemplate.queryForList("select email, status from mailchimp_member order by email");
+            assertThat(rows).extracting(row -> row.get("email") + " " + row.get("status"))
+                .containsExactly("first@localhost subscribed", "second@localhost subscribed");
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static Connection connection(String databaseProductName) throws Exception {
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getDatabaseProductName()).thenReturn(databaseProductName);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> statement(connection));
+        return connection;
+    }
+
+    private static PreparedStatement statement(Connection connection) throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        // Read by the batch updates, to know whether the database supports them
+        when(statement.getConnection()).thenReturn(connection);
+        when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+        return statement;
+    }
+
+    private static DataSource dataSource(Connection connection) throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}
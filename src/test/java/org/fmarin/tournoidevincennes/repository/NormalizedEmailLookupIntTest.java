@@ -0,0 +1,104 @@
+package org.fmarin.tournoidevincennes.repository;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.domain.NormalizedEmail;
+import org.fmarin.tournoidevincennes.domain.User;
+import org.fmarin.tournoidevincennes.service.UserService;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class checking that prospects and users are looked up by their normalized e-mail, with an index seek.
+ *
+ * @see ProspectRepository#findOneByEmail(String)
+ * @see UserRepository#findOneByEmail(String)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class NormalizedEmailLookupIntTest {
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private UserService userService;
+
+    @Test
+    public void assertThatProspectLookupIsAnIndexSeek() {
+        String plan = explain("select prospect from Prospect prospect where prospect.normalizedEmail = :normalizedEmail");
+
+        assertThat(plan).contains("UX_PROSPECT_NORMALIZED_EMAIL: NORMALIZED_EMAIL =");
+        assertThat(plan).doesNotContain("tableScan");
+    }
+
+    @Test
+    public void assertThatProspectExistenceCheckIsAnIndexSeek() {
+        String plan = explain("select case when count(prospect) > 0 then true else false end from Prospect prospect " +
+            "where prospect.normalizedEmail = :normalizedEmail");
+
+        assertThat(plan).contains("UX_PROSPECT_NORMALIZED_EMAIL: NORMALIZED_EMAIL =");
+        assertThat(plan).doesNotContain("tableScan");
+    }
+
+    @Test
+    public void assertThatUserLookupIsAnIndexSeek() {
+        String plan = explain("select user from User user where user.normalizedEmail = :normalizedEmail");
+
+        assertThat(plan).contains("IDX_USER_NORMALIZED_EMAIL: NORMALIZED_EMAIL =");
+        assertThat(plan).doesNotContain("tableScan");
+    }
+
+    @Test
+    public void assertThatExistingUsersWereBackfilled() {
+        // The users loaded by the initial changelog predate the normalized e-mail column
+        assertThat(userRepository.findOneByEmail(" Admin@Localhost")).isPresent();
+        assertThat(userRepository.findAllByNormalizedEmail(NormalizedEmail.of("user@localhost")))
+            .extracting("login").containsExactly("user");
+    }
+
+    @Test
+    @Transactional
+    public void assertThatUsersSharingANormalizedEmailAreFound() {
+        // As users registered before the normalized e-mail could be
+        User first = userService.createUser("shared-1", "password", "Shared", "User", "Shared@localhost", "en");
+        first.setActivated(true);
+        User second = userService.createUser("shared-2", "password", "Shared", "User", "shared@localhost", "en");
+        second.setActivated(true);
+        userRepository.flush();
+
+        assertThat(userRepository.findAllByEmail("SHARED@localhost")).hasSize(2);
+        assertThat(userRepository.findOneByEmail("shared@localhost").get().getLogin()).isEqualTo("shared-2");
+        assertThat(userRepository.findOneByEmail("SHARED@localhost").get().getLogin()).isEqualTo("shared-1");
+        assertThat(userService.requestPasswordReset("shared@localhost").get().getLogin()).isEqualTo("shared-2");
+    }
+
+    /**
+     * @return the H2 plan of the SQL Hibernate generates for the query
+     */
+    private String explain(String query) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        String sql = sessionFactory.getQueryPlanCache()
+            .getHQLQueryPlan(query, false, Collections.emptyMap())
+            .getSqlStrings()[0];
+        return new JdbcTemplate(dataSource).queryForObject("explain " + sql, String.class, "prospect@localhost");
+    }
+}
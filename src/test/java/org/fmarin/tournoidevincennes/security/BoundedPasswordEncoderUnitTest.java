@@ -0,0 +1,115 @@
+package org.fmarin.tournoidevincennes.security;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static com.jayway.awaitility.Awaitility.await;
+
+/**
+ * Test class for the BoundedPasswordEncoder.
+ *
+ * @see BoundedPasswordEncoder
+ */
+public class BoundedPasswordEncoderUnitTest {
+
+    private final JHipsterProperties.Security.Password properties = new JHipsterProperties.Security.Password();
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private BoundedPasswordEncoder encoder;
+
+    @After
+    public void shutdown() {
+        if (encoder != null) {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    public void testEncodesAndMatchesPasswords() {
+        properties.setBcryptCost(5);
+        encoder = new BoundedPasswordEncoder(properties, metricRegistry);
+
+        String hash = encoder.encode("password");
+
+        assertThat(hash).startsWith("$2a$05$");
+        assertThat(encoder.matches("password", hash)).isTrue();
+        assertThat(encoder.matches("other", hash)).isFalse();
+        assertThat(metricRegistry.timer(MetricRegistry.name(BoundedPasswordEncoder.class, "hashes")).getCount())
+            .isEqualTo(3);
+    }
+
+    @Test
+    public void testTellsHashesOfAnotherCost() {
+        properties.setBcryptCost(5);
+        encoder = new BoundedPasswordEncoder(properties, metricRegistry);
+
+        assertThat(encoder.needsRehash(encoder.encode("password"))).isFalse();
+        assertThat(encoder.needsRehash(new BCryptPasswordEncoder(4).encode("password"))).isTrue();
+        assertThat(encoder.needsRehash(null)).isFalse();
+    }
+
+    @Test
+    public void testRejectsHashesWhenSaturated() {
+        properties.setBcryptCost(13);
+        properties.setPoolSize(1);
+        properties.setQueueCapacity(1);
+        encoder = new BoundedPasswordEncoder(properties, metricRegistry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("running"));
+        await().atMost(10, TimeUnit.SECONDS).until(() ->
+            metricRegistry.timer(MetricRegistry.name(BoundedPasswordEncoder.class, "waits")).getCount() == 1);
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("queued"));
+        await().atMost(10, TimeUnit.SECONDS).until(() ->
+            (Integer) metricRegistry.getGauges().get(MetricRegistry.name(BoundedPasswordEncoder.class, "queue"))
+                .getValue() == 1);
+
+        assertThat(catchThrowable(() -> encoder.encode("rejected"))).isInstanceOf(PasswordEncoderBusyException.class);
+        assertThat(metricRegistry.meter(MetricRegistry.name(BoundedPasswordEncoder.class, "rejected")).getCount())
+            .isEqualTo(1);
+        assertThat(encoder.matches("queued", queued.join())).isTrue();
+        assertThat(running.join()).startsWith("$2a$13$");
+    }
+
+    @Test
+    public void testGivesUpOnSlowHashes() {
+        properties.setBcryptCost(14);
+        properties.setPoolSize(1);
+        properties.setTimeoutInMillis(50);
+        encoder = new BoundedPasswordEncoder(properties, metricRegistry);
+
+        long start = System.nanoTime();
+        Throwable running = catchThrowable(() -> encoder.encode("running"));
+        Throwable queued = catchThrowable(() -> encoder.encode("queued"));
+
+        // A hash of cost 14 takes far longer than the timeout, the caller did not wait for it
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        assertThat(running).isInstanceOf(PasswordEncoderBusyException.class);
+        assertThat(queued).isInstanceOf(PasswordEncoderBusyException.class);
+        assertThat(metricRegistry.meter(MetricRegistry.name(BoundedPasswordEncoder.class, "timeouts")).getCount())
+            .isEqualTo(2);
+        // The queued hash was dropped, the one already running was left to finish
+        assertThat(metricRegistry.getGauges().get(MetricRegistry.name(BoundedPasswordEncoder.class, "queue"))
+            .getValue()).isEqualTo(0);
+        await().atMost(30, TimeUnit.SECONDS).until(() ->
+            metricRegistry.timer(MetricRegistry.name(BoundedPasswordEncoder.class, "hashes")).getCount() == 1);
+        assertThat(metricRegistry.timer(MetricRegistry.name(BoundedPasswordEncoder.class, "waits")).getCount())
+            .isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimeoutMustBePositive() {
+        properties.setTimeoutInMillis(0);
+
+        encoder = new BoundedPasswordEncoder(properties, metricRegistry);
+    }
+}
@@ -0,0 +1,108 @@
+package org.fmarin.tournoidevincennes.security;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the LoginAttemptService.
+ *
+ * @see LoginAttemptService
+ */
+public class LoginAttemptServiceUnitTest {
+
+    private static final long SECOND = 1000;
+
+    private static final long WINDOW = 900 * SECOND;
+
+    private MetricRegistry metricRegistry;
+
+    private LoginAttemptService loginAttemptService;
+
+    @Before
+    public void setup() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        JHipsterProperties.Security.LoginThrottling properties =
+            jHipsterProperties.getSecurity().getLoginThrottling();
+        properties.setMaxFailuresPerLogin(3);
+        properties.setMaxFailuresPerIp(5);
+        properties.setMaxEntries(10);
+        metricRegistry = new MetricRegistry();
+        loginAttemptService = new LoginAttemptService(jHipsterProperties, metricRegistry);
+    }
+
+    @Test
+    public void testBlocksLoginWithProgressiveDelay() {
+        loginAttemptService.loginFailed("user", "10.0.0.1", 0);
+        loginAttemptService.loginFailed("User", "10.0.0.2", 0);
+
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.3", 0)).isEqualTo(0);
+
+        loginAttemptService.loginFailed("user", "10.0.0.3", 0);
+
+        assertThat(loginAttemptService.getRetryAfter("USER", "10.0.0.4", 0)).isEqualTo(SECOND);
+        assertThat(loginAttemptService.getRetryAfter("other", "10.0.0.4", 0)).isEqualTo(0);
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.4", SECOND)).isEqualTo(0);
+
+        loginAttemptService.loginFailed("user", "10.0.0.4", SECOND);
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.4", SECOND)).isEqualTo(2 * SECOND);
+        loginAttemptService.loginFailed("user", "10.0.0.5", 3 * SECOND);
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.5", 3 * SECOND)).isEqualTo(4 * SECOND);
+        assertThat(metricRegistry.meter("org.fmarin.tournoidevincennes.security.LoginAttemptService.blocked.logins")
+            .getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testBlocksIpAcrossLogins() {
+        for (int i = 0; i < 5; i++) {
+            loginAttemptService.loginFailed("user-" + i, "10.0.0.1", 0);
+        }
+
+        assertThat(loginAttemptService.getRetryAfter("user-5", "10.0.0.1", 0)).isEqualTo(SECOND);
+        assertThat(loginAttemptService.getRetryAfter("user-5", "10.0.0.2", 0)).isEqualTo(0);
+    }
+
+    @Test
+    public void testForgetsFailuresOutOfTheSlidingWindow() {
+        loginAttemptService.loginFailed("user", "10.0.0.1", 0);
+        loginAttemptService.loginFailed("user", "10.0.0.1", 0);
+
+        // Half of the previous window still overlaps the sliding window, so one failure of the two is counted
+        loginAttemptService.loginFailed("user", "10.0.0.1", WINDOW + WINDOW / 2);
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.1", WINDOW + WINDOW / 2)).isEqualTo(0);
+        loginAttemptService.loginFailed("user", "10.0.0.1", WINDOW + WINDOW / 2);
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.1", WINDOW + WINDOW / 2)).isEqualTo(SECOND);
+
+        loginAttemptService.loginFailed("user", "10.0.0.1", 3 * WINDOW);
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.1", 3 * WINDOW)).isEqualTo(0);
+    }
+
+    @Test
+    public void testSuccessResetsLoginButNotIp() {
+        for (int i = 0; i < 5; i++) {
+            loginAttemptService.loginFailed("user", "10.0.0.1", 0);
+        }
+
+        loginAttemptService.loginSucceeded("User");
+
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.2", 0)).isEqualTo(0);
+        assertThat(loginAttemptService.getRetryAfter("user", "10.0.0.1", 0)).isGreaterThan(0);
+    }
+
+    @Test
+    public void testKeepsCountersBounded() {
+        for (int i = 0; i < 100; i++) {
+            loginAttemptService.loginFailed("user-" + i, "10.0.0." + i, i * SECOND);
+        }
+
+        String prefix = "org.fmarin.tournoidevincennes.security.LoginAttemptService.";
+        assertThat((int) metricRegistry.getGauges().get(prefix + "logins").getValue()).isLessThanOrEqualTo(10);
+        assertThat((int) metricRegistry.getGauges().get(prefix + "ips").getValue()).isLessThanOrEqualTo(10);
+        assertThat((long) metricRegistry.getGauges().get(prefix + "memory").getValue())
+            .isBetween(1L, 20L * (LoginAttemptService.ENTRY_BYTES + 2 * "10.0.0.99".length()));
+    }
+}
@@ -0,0 +1,72 @@
+package org.fmarin.tournoidevincennes.security;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the RehashingAuthenticationProvider.
+ *
+ * @see RehashingAuthenticationProvider
+ */
+public class RehashingAuthenticationProviderUnitTest {
+
+    private final Map<String, String> hashes = new HashMap<>();
+
+    private final Map<String, String> upgrades = new HashMap<>();
+
+    private BoundedPasswordEncoder encoder;
+
+    @Before
+    public void setup() {
+        JHipsterProperties.Security.Password properties = new JHipsterProperties.Security.Password();
+        properties.setBcryptCost(5);
+        encoder = new BoundedPasswordEncoder(properties, new MetricRegistry());
+        hashes.put("current", encoder.encode("password"));
+        hashes.put("outdated", new BCryptPasswordEncoder(4).encode("password"));
+    }
+
+    @After
+    public void shutdown() {
+        encoder.shutdown();
+    }
+
+    @Test
+    public void testUpgradesOnlyOutdatedHashes() {
+        RehashingAuthenticationProvider provider = provider(upgrades::put);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("current", "password"));
+        provider.authenticate(new UsernamePasswordAuthenticationToken("outdated", "password"));
+
+        assertThat(upgrades).containsOnlyKeys("outdated").containsEntry("outdated", "password");
+    }
+
+    @Test
+    public void testLogsInWhenTheUpgradeFails() {
+        RehashingAuthenticationProvider provider = provider((login, password) -> {
+            throw new PasswordEncoderBusyException("Too many passwords being hashed", null);
+        });
+
+        assertThat(provider.authenticate(new UsernamePasswordAuthenticationToken("outdated", "password"))
+            .isAuthenticated()).isTrue();
+    }
+
+    private RehashingAuthenticationProvider provider(BiConsumer<String, String> upgrade) {
+        return new RehashingAuthenticationProvider(
+            login -> new User(login, hashes.get(login), AuthorityUtils.createAuthorityList(AuthoritiesConstants.USER)),
+            encoder, upgrade);
+    }
+}
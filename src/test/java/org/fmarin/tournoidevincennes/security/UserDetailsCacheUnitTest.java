@@ -0,0 +1,101 @@
+package org.fmarin.tournoidevincennes.security;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the UserDetailsCache.
+ *
+ * @see UserDetailsCache
+ */
+public class UserDetailsCacheUnitTest {
+
+    private static final long TIME_TO_LIVE = 300 * 1000;
+
+    private static final String PREFIX = "org.fmarin.tournoidevincennes.security.UserDetailsCache.";
+
+    private MetricRegistry metricRegistry;
+
+    private UserDetailsCache userDetailsCache;
+
+    @Before
+    public void setup() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getUserDetailsCache().setMaxEntries(2);
+        metricRegistry = new MetricRegistry();
+        userDetailsCache = new UserDetailsCache(jHipsterProperties, metricRegistry);
+    }
+
+    @Test
+    public void testGetsACopyOfTheUser() {
+        userDetailsCache.put(user("user"), userDetailsCache.generation(), 0);
+
+        User cached = (User) userDetailsCache.get("User", 0);
+        assertThat(cached.getUsername()).isEqualTo("user");
+        assertThat(cached.getAuthorities()).extracting("authority").containsExactly(AuthoritiesConstants.USER);
+
+        // As the authentication manager does once it authenticated the user
+        cached.eraseCredentials();
+
+        assertThat(userDetailsCache.get("user", 0).getPassword()).isEqualTo("hash");
+        assertThat(metricRegistry.meter(PREFIX + "hits").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExpiresUsers() {
+        userDetailsCache.put(user("user"), userDetailsCache.generation(), 0);
+
+        assertThat(userDetailsCache.get("user", TIME_TO_LIVE - 1)).isNotNull();
+        assertThat(userDetailsCache.get("user", TIME_TO_LIVE)).isNull();
+        assertThat(metricRegistry.meter(PREFIX + "misses").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(PREFIX + "evictions").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedUsers() {
+        userDetailsCache.put(user("first"), userDetailsCache.generation(), 0);
+        userDetailsCache.put(user("second"), userDetailsCache.generation(), 0);
+        userDetailsCache.get("first", 0);
+        userDetailsCache.put(user("third"), userDetailsCache.generation(), 0);
+
+        assertThat(userDetailsCache.get("first", 0)).isNotNull();
+        assertThat(userDetailsCache.get("second", 0)).isNull();
+        assertThat(userDetailsCache.get("third", 0)).isNotNull();
+        assertThat(metricRegistry.getGauges().get(PREFIX + "size").getValue()).isEqualTo(2);
+        assertThat(metricRegistry.meter(PREFIX + "evictions").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvalidatesUsers() {
+        userDetailsCache.put(user("user"), userDetailsCache.generation(), 0);
+
+        userDetailsCache.invalidate("USER");
+
+        assertThat(userDetailsCache.get("user", 0)).isNull();
+        assertThat(metricRegistry.meter(PREFIX + "invalidations").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDropsUsersLoadedBeforeAnInvalidation() {
+        long generation = userDetailsCache.generation();
+
+        userDetailsCache.invalidate("other");
+        userDetailsCache.put(user("user"), generation, 0);
+
+        assertThat(userDetailsCache.get("user", 0)).isNull();
+    }
+
+    private static UserDetails user(String login) {
+        return new User(login, "hash", Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+    }
+}
@@ -0,0 +1,210 @@
+package org.fmarin.tournoidevincennes.security.jwt;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.repository.RevokedTokenRepository;
+import org.fmarin.tournoidevincennes.repository.TokenWatermarkRepository;
+import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
+
+import com.codahale.metrics.MetricRegistry;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test class for the TokenProvider.
+ *
+ * @see TokenProvider
+ */
+public class TokenProviderUnitTest {
+
+    private final Logger log = LoggerFactory.getLogger(TokenProviderUnitTest.class);
+
+    private static final String SECRET = "960bf73ebd085d71c45b9ce6b85ca0f04e22cfeb";
+
+    private static final int TOKENS = 2000;
+
+    private final JHipsterProperties jHipsterProperties = new JHipsterProperties();
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private TokenProvider tokenProvider;
+
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Before
+    public void setup() {
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setSecret(SECRET);
+        tokenRevocationStore = new TokenRevocationStore(mock(RevokedTokenRepository.class),
+            mock(TokenWatermarkRepository.class), jHipsterProperties, new MetricRegistry());
+        tokenProvider = tokenProvider(metricRegistry);
+    }
+
+    @Test
+    public void testVerifiesTokenOnce() {
+        String token = tokenProvider.createToken(authentication("admin", AuthoritiesConstants.ADMIN), false);
+
+        Authentication authentication = tokenProvider.getAuthentication(token);
+
+        assertThat(authentication.getName()).isEqualTo("admin");
+        assertThat(authentication.getAuthorities()).extracting("authority").containsExactly(AuthoritiesConstants.ADMIN);
+        assertThat(tokenProvider.getAuthentication(token)).isSameAs(authentication);
+        assertThat(metricRegistry.meter(MetricRegistry.name(TokenProvider.class, "verifiedTokens", "misses"))
+            .getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(MetricRegistry.name(TokenProvider.class, "verifiedTokens", "hits"))
+            .getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRejectsTokenWithInvalidSignature() {
+        String token = Jwts.builder()
+            .setSubject("admin")
+            .claim("auth", AuthoritiesConstants.ADMIN)
+            .signWith(SignatureAlgorithm.HS512, "another-secret")
+            .setExpiration(new Date(System.currentTimeMillis() + 60000))
+            .compact();
+
+        assertThat(tokenProvider.getAuthentication(token)).isNull();
+        assertThat(tokenProvider.getAuthentication(token)).isNull();
+    }
+
+    @Test
+    public void testRejectsExpiredToken() throws Exception {
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setTokenValidityInSeconds(1);
+        tokenProvider = tokenProvider(new MetricRegistry());
+        String token = tokenProvider.createToken(authentication("user", AuthoritiesConstants.USER), false);
+        assertThat(tokenProvider.getAuthentication(token)).isNotNull();
+
+        // The expiration of the token is rounded to the second
+        Thread.sleep(2000);
+
+        assertThat(catchThrowable(() -> tokenProvider.getAuthentication(token)))
+            .isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    public void testRefusesRevokedToken() {
+        String token = tokenProvider.createToken(authentication("user", AuthoritiesConstants.USER), true);
+        String other = tokenProvider.createToken(authentication("user", AuthoritiesConstants.USER), true);
+        assertThat(tokenProvider.getAuthentication(token)).isNotNull();
+
+        assertThat(tokenProvider.revokeToken(token)).isTrue();
+
+        assertThat(tokenProvider.getAuthentication(token)).isNull();
+        assertThat(tokenProvider.getAuthentication(other)).isNotNull();
+    }
+
+    @Test
+    public void testRefusesTokensIssuedBeforeWatermark() throws Exception {
+        String token = tokenProvider.createToken(authentication("user", AuthoritiesConstants.USER), true);
+        String other = tokenProvider.createToken(authentication("other", AuthoritiesConstants.USER), true);
+        assertThat(tokenProvider.getAuthentication(token)).isNotNull();
+
+        tokenRevocationStore.revokeAll("user");
+
+        assertThat(tokenProvider.getAuthentication(token)).isNull();
+        assertThat(tokenProvider.getAuthentication(other)).isNotNull();
+
+        // The watermark is to the millisecond, so a token issued right after it, in the same second, is valid
+        Thread.sleep(2);
+
+        String renewed = tokenProvider.createToken(authentication("user", AuthoritiesConstants.USER), true);
+        assertThat(tokenProvider.getAuthentication(renewed)).isNotNull();
+    }
+
+    @Test
+    public void testInternsAuthorities() {
+        String admin = tokenProvider.createToken(
+            authentication("admin", AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER), false);
+        String other = tokenProvider.createToken(
+            authentication("other", AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER), true);
+
+        List<GrantedAuthority> adminAuthorities = new ArrayList<>(tokenProvider.getAuthentication(admin).getAuthorities());
+        List<GrantedAuthority> otherAuthorities = new ArrayList<>(tokenProvider.getAuthentication(other).getAuthorities());
+        assertThat(otherAuthorities).hasSize(2);
+        assertThat(otherAuthorities.get(0)).isSameAs(adminAuthorities.get(0));
+        assertThat(otherAuthorities.get(1)).isSameAs(adminAuthorities.get(1));
+    }
+
+    @Test
+    public void testBoundsVerifiedTokens() {
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setVerifiedTokens(10);
+        // The provider made by setup already registered its metrics in the shared registry
+        MetricRegistry registry = new MetricRegistry();
+        tokenProvider = tokenProvider(registry);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            tokens.add(tokenProvider.createToken(authentication("user-" + i, AuthoritiesConstants.USER), false));
+        }
+
+        tokens.forEach(token -> assertThat(tokenProvider.getAuthentication(token)).isNotNull());
+
+        assertThat((Integer) registry.getGauges()
+            .get(MetricRegistry.name(TokenProvider.class, "verifiedTokens", "size")).getValue()).isLessThanOrEqualTo(10);
+        // The tokens forgotten are verified again
+        tokens.forEach(token -> assertThat(tokenProvider.getAuthentication(token)).isNotNull());
+    }
+
+    /**
+     * Compares the verification of tokens seen for the first time with the verification of tokens already seen.
+     * The figures depend on the machine, so they are only logged, and the benchmark only runs with
+     * {@code -Dbenchmarks=true}.
+     */
+    @Test
+    public void compareColdAndWarmTokens() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmarks"));
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < TOKENS; i++) {
+            tokens.add(tokenProvider.createToken(authentication("user-" + i, AuthoritiesConstants.USER), false));
+        }
+        // Warms the JIT up, on tokens the measures do not use
+        TokenProvider warmUp = tokenProvider(new MetricRegistry());
+        tokens.forEach(warmUp::getAuthentication);
+        tokens.forEach(warmUp::getAuthentication);
+
+        long start = System.nanoTime();
+        tokens.forEach(tokenProvider::getAuthentication);
+        long cold = System.nanoTime() - start;
+        start = System.nanoTime();
+        tokens.forEach(tokenProvider::getAuthentication);
+        long warm = System.nanoTime() - start;
+
+        log.info(String.format("%d tokens, cold %.2f us per token, warm %.2f us per token", TOKENS,
+            cold / 1e3 / TOKENS, warm / 1e3 / TOKENS));
+        assertThat(warm).isLessThan(cold);
+    }
+
+    private TokenProvider tokenProvider(MetricRegistry registry) {
+        TokenProvider provider = new TokenProvider();
+        ReflectionTestUtils.setField(provider, "jHipsterProperties", jHipsterProperties);
+        ReflectionTestUtils.setField(provider, "metricRegistry", registry);
+        ReflectionTestUtils.setField(provider, "tokenRevocationStore", tokenRevocationStore);
+        provider.init();
+        return provider;
+    }
+
+    private static Authentication authentication(String login, String... authorities) {
+        return new UsernamePasswordAuthenticationToken(login, "", Arrays.stream(authorities)
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,86 @@
+package org.fmarin.tournoidevincennes.security.jwt;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.RevokedToken;
+import org.fmarin.tournoidevincennes.domain.TokenWatermark;
+import org.fmarin.tournoidevincennes.repository.RevokedTokenRepository;
+import org.fmarin.tournoidevincennes.repository.TokenWatermarkRepository;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the TokenRevocationStore.
+ *
+ * @see TokenRevocationStore
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class TokenRevocationStoreIntTest {
+
+    @Inject
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Inject
+    private TokenWatermarkRepository tokenWatermarkRepository;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @After
+    public void cleanup() {
+        revokedTokenRepository.deleteAll();
+        tokenWatermarkRepository.deleteAll();
+    }
+
+    @Test
+    public void testRevocationsAreLoadedAgain() {
+        long now = System.currentTimeMillis();
+        TokenRevocationStore store = store();
+        store.revoke("revoked", now + 60000);
+        store.revokeAll("user");
+
+        TokenRevocationStore restarted = store();
+        restarted.load();
+
+        assertThat(restarted.isRevoked("revoked", "other", now)).isTrue();
+        assertThat(restarted.isRevoked("valid", "other", now)).isFalse();
+        assertThat(restarted.isRevoked("valid", "user", now)).isTrue();
+        assertThat(restarted.isRevoked(null, "user", 0)).isTrue();
+        assertThat(restarted.isRevoked("valid", "user", now + 60000)).isFalse();
+    }
+
+    @Test
+    public void testExpiredRevocationsAreRemoved() {
+        long now = System.currentTimeMillis();
+        long maxValidity = 1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt()
+            .getTokenValidityInSecondsForRememberMe();
+        revokedTokenRepository.save(new RevokedToken("expired", ZonedDateTime.now().minusMinutes(1)));
+        tokenWatermarkRepository.save(new TokenWatermark("user",
+            ZonedDateTime.now().minusSeconds(maxValidity / 1000 + 60)));
+        TokenRevocationStore store = store();
+        store.load();
+        store.revoke("revoked", now + 60000);
+
+        store.removeExpired();
+
+        assertThat(revokedTokenRepository.findAll()).extracting(RevokedToken::getJti).containsExactly("revoked");
+        assertThat(tokenWatermarkRepository.findAll()).isEmpty();
+        assertThat(store.isRevoked("expired", "user", 0)).isFalse();
+    }
+
+    private TokenRevocationStore store() {
+        return new TokenRevocationStore(revokedTokenRepository, tokenWatermarkRepository, jHipsterProperties,
+            new MetricRegistry());
+    }
+}
@@ -0,0 +1,355 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.MailchimpDeadLetter;
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.domain.enumeration.OutboxStatus;
+import org.fmarin.tournoidevincennes.repository.MailchimpDeadLetterRepository;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the MailchimpOutboxDispatcher.
+ * <p>
+ * The dispatcher calls a real {@link MailchimpService}, against a {@link MailchimpStub}, so the requests sent to
+ * Mailchimp and the parsing of its answers are tested with it.
+ * </p>
+ *
+ * @see MailchimpOutboxDispatcher
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class MailchimpOutboxDispatcherIntTest {
+
+    private final Logger log = LoggerFactory.getLogger(MailchimpOutboxDispatcherIntTest.class);
+
+    private static final String EMAIL = "outbox@localhost";
+
+    private static final String OTHER_EMAIL = "other.outbox@localhost";
+
+    private static final long STUB_LATENCY_MS = 20;
+
+    @Inject
+    private ProspectService prospectService;
+
+    @Inject
+    private ProspectRepository prospectRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    @Inject
+    private MailchimpDeadLetterRepository deadLetterRepository;
+
+    @Inject
+    private MailchimpDeadLetterService deadLetterService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MailchimpStub mailchimpStub;
+
+    private JHipsterProperties jHipsterProperties;
+
+    private MailchimpService mailchimpService;
+
+    private MailchimpOutboxDispatcher dispatcher;
+
+    @Before
+    public void setup() throws Exception {
+        mailchimpStub = new MailchimpStub();
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getMailchimp().setApiKey("test-us1");
+        jHipsterProperties.getMailchimp().setListId("test");
+        jHipsterProperties.getMailchimp().getOutbox().setMaxBatchWait(0);
+        jHipsterProperties.getMailchimp().getOutbox().setMaxAttempts(2);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        destroyDispatcher();
+        mailchimpStub.close();
+        deadLetterRepository.deleteAll();
+        outboxRepository.deleteAll();
+        prospectRepository.deleteAll();
+    }
+
+    private void createDispatcher() {
+        mailchimpService = new MailchimpService(jHipsterProperties, new MetricRegistry(),
+            mailchimpStub.httpClientBuilder());
+        dispatcher = new MailchimpOutboxDispatcher(outboxRepository, mailchimpService, deadLetterService,
+            jHipsterProperties,
+            new MetricRegistry());
+        dispatcher.init();
+    }
+
+    private void destroyDispatcher() throws IOException {
+        if (dispatcher != null) {
+            dispatcher.destroy();
+            mailchimpService.destroy();
+            dispatcher = null;
+        }
+    }
+
+    @Test
+    public void assertThatCreateProspectOnlyWritesToTheOutbox() throws Exception {
+        prospectService.createProspect(EMAIL);
+
+        assertThat(mailchimpStub.getRequests()).isEmpty();
+        List<MailchimpOutboxEntry> entries = outboxRepository.findAll();
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).getEmail()).isEqualTo(EMAIL);
+        assertThat(entries.get(0).getStatus()).isEqualTo(OutboxStatus.PENDING);
+    }
+
+    @Test
+    public void assertThatEntriesAreSentInOneBatch() throws Exception {
+        createDispatcher();
+        prospectService.createProspect(EMAIL);
+        prospectService.createProspect(OTHER_EMAIL);
+
+        dispatcher.dispatch();
+
+        assertThat(mailchimpStub.getRequests()).hasSize(1);
+        MailchimpStub.Request request = mailchimpStub.getRequests().get(0);
+        assertThat(request.method).isEqualTo("POST");
+        assertThat(request.path).isEqualTo("/3.0/lists/test");
+        JsonNode body = objectMapper.readTree(request.body);
+        assertThat(body.get("update_existing").asBoolean()).isFalse();
+        assertThat(body.get("members")).extracting(member -> member.get("email_address").asText())
+            .containsExactly(EMAIL, OTHER_EMAIL);
+        assertThat(body.get("members")).extracting(member -> member.get("status").asText())
+            .containsOnly("subscribed");
+        assertThat(body.get("members").get(0).has("timestamp_signup")).isTrue();
+        assertThat(outboxRepository.findAll()).extracting(MailchimpOutboxEntry::getStatus)
+            .containsOnly(OutboxStatus.SENT);
+    }
+
+    @Test
+    public void assertThatRejectedMembersAreRequeued() throws Exception {
+        mailchimpStub.respond(request -> batchResult(1, error(OTHER_EMAIL, "Invalid e-mail", "ERROR_GENERIC")));
+        createDispatcher();
+        prospectService.createProspect(EMAIL);
+        prospectService.createProspect(OTHER_EMAIL);
+
+        dispatcher.dispatch();
+
+        for (MailchimpOutboxEntry entry : outboxRepository.findAll()) {
+            if (entry.getEmail().equals(EMAIL)) {
+                assertThat(entry.getStatus()).isEqualTo(OutboxStatus.SENT);
+            } else {
+                assertThat(entry.getStatus()).isEqualTo(OutboxStatus.PENDING);
+                assertThat(entry.getAttempts()).isEqualTo(1);
+                assertThat(entry.getLastError()).isEqualTo("Invalid e-mail");
+            }
+        }
+    }
+
+    @Test
+    public void assertThatPartialBatchWaitsForMaxBatchWait() throws Exception {
+        jHipsterProperties.getMailchimp().getOutbox().setMaxBatchWait(60000);
+        createDispatcher();
+        prospectService.createProspect(EMAIL);
+
+        dispatcher.dispatch();
+
+        assertThat(mailchimpStub.getRequests()).isEmpty();
+        assertThat(outboxRepository.findAll().get(0).getStatus()).isEqualTo(OutboxStatus.PENDING);
+    }
+
+    @Test
+    public void assertThatFailedEntriesAreRetriedThenGivenUp() throws Exception {
+        jHipsterProperties.getMailchimp().getOutbox().setBatchSubscribe(false);
+        mailchimpStub.respond(request -> new MailchimpStub.Response(503,
+            "{\"status\": 503, \"title\": \"Service Unavailable\", \"detail\": \"Mailchimp is down\"}"));
+        createDispatcher();
+        prospectService.createProspect(EMAIL);
+
+        dispatcher.dispatch();
+
+        assertThat(mailchimpStub.getRequests()).extracting(request -> request.method).containsExactly("PUT");
+        assertThat(mailchimpStub.getRequests().get(0).path).startsWith("/3.0/lists/test/members/");
+        MailchimpOutboxEntry entry = outboxRepository.findAll().get(0);
+        assertThat(entry.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(entry.getAttempts()).isEqualTo(1);
+        assertThat(entry.getNextAttemptDate()).isAfter(ZonedDateTime.now());
+        assertThat(entry.getLastError()).contains("MailchimpException");
+
+        // Not due yet, so it is left alone
+        dispatcher.dispatch();
+        assertThat(outboxRepository.findOne(entry.getId()).getAttempts()).isEqualTo(1);
+
+        entry.setNextAttemptDate(ZonedDateTime.now().minusSeconds(1));
+        outboxRepository.save(entry);
+        dispatcher.dispatch();
+
+        assertThat(outboxRepository.findOne(entry.getId())).isNull();
+        List<MailchimpDeadLetter> deadLetters = deadLetterRepository.findAll();
+        assertThat(deadLetters).hasSize(1);
+        assertThat(deadLetters.get(0).getEmail()).isEqualTo(EMAIL);
+        assertThat(deadLetters.get(0).getAttempts()).isEqualTo(2);
+        assertThat(deadLetters.get(0).getLastError()).contains("MailchimpException");
+    }
+
+    @Test
+    public void assertThatClaimedEntriesAreLeftAloneUntilTheLeaseEnds() {
+        prospectService.createProspect(EMAIL);
+        prospectService.createProspect(OTHER_EMAIL);
+        ZonedDateTime now = ZonedDateTime.now().plusSeconds(1);
+
+        List<MailchimpOutboxEntry> claimed = outboxRepository.claimDue(now, 1, now.plusMinutes(2));
+
+        assertThat(claimed).extracting(MailchimpOutboxEntry::getEmail).containsExactly(EMAIL);
+        assertThat(outboxRepository.claimDue(now, 10, now.plusMinutes(2)))
+            .extracting(MailchimpOutboxEntry::getEmail).containsExactly(OTHER_EMAIL);
+        assertThat(outboxRepository.claimDue(now, 10, now.plusMinutes(2))).isEmpty();
+        assertThat(outboxRepository.claimDue(now.plusMinutes(3), 10, now.plusMinutes(5))).hasSize(2);
+    }
+
+    @Test
+    public void assertThatEntriesAreDeferredWhileMailchimpIsUnavailable() throws Exception {
+        // Without a key, the service refuses every call as it does when its circuit breaker is open
+        jHipsterProperties.getMailchimp().setApiKey("");
+        createDispatcher();
+        prospectService.createProspect(EMAIL);
+
+        dispatcher.dispatch();
+
+        assertThat(mailchimpStub.getRequests()).isEmpty();
+
+        MailchimpOutboxEntry entry = outboxRepository.findAll().get(0);
+        assertThat(entry.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(entry.getAttempts()).isEqualTo(0);
+        assertThat(entry.getNextAttemptDate()).isAfter(ZonedDateTime.now());
+    }
+
+    @Test
+    public void assertThatBatchErrorsOnlyMarkTheirEntry() throws Exception {
+        // Mailchimp reports the address lower-cased, and does not report the members already on the list
+        mailchimpStub.respond(request -> batchResult(0,
+            error("duplicate@localhost", "Invalid e-mail", "ERROR_GENERIC"),
+            error(OTHER_EMAIL, OTHER_EMAIL + " is already a list member", "ERROR_CONTACT_EXISTS")));
+        createDispatcher();
+        MailchimpOutboxEntry first = saveEntry("Duplicate@localhost");
+        MailchimpOutboxEntry variant = saveEntry("duplicate@localhost");
+        MailchimpOutboxEntry other = saveEntry(OTHER_EMAIL);
+
+        dispatcher.dispatch();
+
+        assertThat(mailchimpStub.getRequests()).hasSize(1);
+        assertThat(objectMapper.readTree(mailchimpStub.getRequests().get(0).body).get("members"))
+            .extracting(member -> member.get("email_address").asText())
+            .containsExactly("Duplicate@localhost", OTHER_EMAIL);
+        MailchimpOutboxEntry rejected = outboxRepository.findOne(first.getId());
+        assertThat(rejected.getAttempts()).isEqualTo(1);
+        assertThat(rejected.getLastError()).isEqualTo("Invalid e-mail");
+        // Left for a later batch, where it gets its own result
+        MailchimpOutboxEntry deferred = outboxRepository.findOne(variant.getId());
+        assertThat(deferred.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(deferred.getAttempts()).isEqualTo(0);
+        assertThat(deferred.getLastError()).isNull();
+        assertThat(outboxRepository.findOne(other.getId()).getStatus()).isEqualTo(OutboxStatus.SENT);
+    }
+
+    @Test
+    public void assertThatBatchModeMakesFewerCallsThanPerCallMode() throws Exception {
+        int members = 200;
+        jHipsterProperties.getMailchimp().getOutbox().setBatchSubscribe(false);
+        dispatchMembers(members);
+
+        assertThat(methods()).hasSize(members).containsOnly("PUT");
+
+        mailchimpStub.getRequests().clear();
+        jHipsterProperties.getMailchimp().getOutbox().setBatchSubscribe(true);
+        dispatchMembers(members);
+
+        int chunkSize = Math.min(jHipsterProperties.getMailchimp().getOutbox().getBatchSize(),
+            MailchimpService.MAX_BATCH_SIZE);
+        assertThat(methods()).hasSize((members + chunkSize - 1) / chunkSize).containsOnly("POST");
+    }
+
+    /**
+     * Compares the members pushed per second with one call per member and with batch calls, against a stub which
+     * takes {@value #STUB_LATENCY_MS} ms to answer each call, as a remote Mailchimp would. The figures depend on the
+     * machine and on the database, so they are only logged, and the benchmark only runs with
+     * {@code -Dbenchmarks=true}.
+     */
+    @Test
+    public void compareCallAndBatchThroughput() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmarks"));
+        int members = 1000;
+        mailchimpStub.respond(request -> {
+            Thread.sleep(STUB_LATENCY_MS);
+            return new MailchimpStub.Response(200, "{}");
+        });
+
+        jHipsterProperties.getMailchimp().getOutbox().setBatchSubscribe(false);
+        double perCall = members * 1e9 / dispatchMembers(members);
+        jHipsterProperties.getMailchimp().getOutbox().setBatchSubscribe(true);
+        double batched = members * 1e9 / dispatchMembers(members);
+
+        log.info("Pushed {} members with {} ms per call: {} members/s with a call per member, {} members/s in " +
+            "batches", members, STUB_LATENCY_MS, Math.round(perCall), Math.round(batched));
+        assertThat(batched).isGreaterThan(perCall);
+    }
+
+    private List<String> methods() {
+        return mailchimpStub.getRequests().stream().map(request -> request.method).collect(Collectors.toList());
+    }
+
+    private MailchimpStub.Response batchResult(int created, String... errors) {
+        return new MailchimpStub.Response(200, "{\"total_created\": " + created + ", \"error_count\": " +
+            errors.length + ", \"errors\": [" + String.join(", ", errors) + "]}");
+    }
+
+    private static String error(String email, String error, String errorCode) {
+        return "{\"email_address\": \"" + email + "\", \"error\": \"" + error + "\", \"error_code\": \"" +
+            errorCode + "\"}";
+    }
+
+    private MailchimpOutboxEntry saveEntry(String email) {
+        return outboxRepository.save(new MailchimpOutboxEntry()
+            .email(email)
+            .signupDate(ZonedDateTime.now().minusSeconds(1)));
+    }
+
+    /**
+     * @return the time taken by the dispatch, in nanoseconds
+     */
+    private long dispatchMembers(int members) throws IOException {
+        outboxRepository.deleteAll();
+        for (int i = 0; i < members; i++) {
+            saveEntry("member-" + i + "@localhost");
+        }
+        destroyDispatcher();
+        createDispatcher();
+
+        long start = System.nanoTime();
+        dispatcher.dispatch();
+        long elapsed = System.nanoTime() - start;
+
+        assertThat(outboxRepository.countByStatus(OutboxStatus.SENT)).isEqualTo(members);
+        return elapsed;
+    }
+}
@@ -0,0 +1,202 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.MailchimpMember;
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.domain.ReconciliationWatermark;
+import org.fmarin.tournoidevincennes.repository.MailchimpMemberRepository;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+import org.fmarin.tournoidevincennes.repository.ReconciliationWatermarkRepository;
+import org.fmarin.tournoidevincennes.service.dto.MailchimpReconciliationReportDTO;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the MailchimpReconciliationService, against a stubbed Mailchimp list.
+ * <p>
+ * The list has 50,000 members by default, so the test fits in the heap of the build. With the benchmarks, run with
+ * {@code -Dbenchmarks=true -DargLine=-Xmx1g}, it has 500,000 members, the size the reconciliation is meant for: the
+ * in-memory H2 database holding them and the prospects is what needs the heap, not the reconciliation. Any other
+ * size is set with {@code -Dmailchimp.reconciliation.members}.
+ * </p>
+ *
+ * @see MailchimpReconciliationService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class MailchimpReconciliationServiceIntTest {
+
+    private final Logger log = LoggerFactory.getLogger(MailchimpReconciliationServiceIntTest.class);
+
+    // A multiple of 1000, prime with 7919, see email(int)
+    private static final int MEMBERS = Integer.getInteger("mailchimp.reconciliation.members",
+        Boolean.getBoolean("benchmarks") ? 500000 : 50000);
+
+    private static final int LOCAL_ONLY = 300;
+
+    private static final int PENDING = 5;
+
+    private static final int CHUNK_SIZE = 10000;
+
+    @Inject
+    private ProspectRepository prospectRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    @Inject
+    private MailchimpMemberRepository memberRepository;
+
+    @Inject
+    private ReconciliationWatermarkRepository watermarkRepository;
+
+    @Mock
+    private MailchimpService mockMailchimpService;
+
+    private MailchimpReconciliationService reconciliationService;
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        // Pages of the stubbed list, generated on the fly: member i changed at i seconds past the epoch
+        when(mockMailchimpService.getMembersChangedSince(any(ZonedDateTime.class), anyInt(), anyInt()))
+            .thenAnswer(invocation -> {
+                int offset = invocation.getArgumentAt(1, Integer.class);
+                int count = invocation.getArgumentAt(2, Integer.class);
+                List<MailchimpMember> page = new ArrayList<>();
+                for (int i = offset; i < Math.min(offset + count, MEMBERS); i++) {
+                    page.add(new MailchimpMember(email(i), i % 1000 == 1 ? "unsubscribed" : MailchimpMember.SUBSCRIBED,
+                        ZonedDateTime.now().minusYears(1).plusSeconds(i)));
+                }
+                return page;
+            });
+        reconciliationService = new MailchimpReconciliationService(mockMailchimpService, memberRepository,
+            outboxRepository, watermarkRepository, new JHipsterProperties(), new MetricRegistry());
+    }
+
+    @After
+    public void cleanup() {
+        outboxRepository.deleteAllInBatch();
+        prospectRepository.deleteAllInBatch();
+        memberRepository.clear();
+        ReconciliationWatermark watermark = watermarkRepository.findOne(ReconciliationWatermark.MAILCHIMP);
+        watermark.setWatermark(null);
+        watermark.setLeaseEnd(null);
+        watermarkRepository.save(watermark);
+    }
+
+    @Test
+    public void assertThatMissingProspectsAreQueuedAgain() throws Exception {
+        ZonedDateTime signupDate = ZonedDateTime.now().minusDays(1);
+        List<Prospect> prospects = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            // Every thousandth member signed up somewhere else
+            if (i % 1000 != 2) {
+                prospects.add(prospect(email(i), signupDate));
+            }
+            if (prospects.size() == CHUNK_SIZE) {
+                prospectRepository.insertAllIfAbsent(prospects);
+                prospects.clear();
+            }
+        }
+        for (int i = 0; i < LOCAL_ONLY; i++) {
+            prospects.add(prospect("local-" + i + "@localhost", signupDate));
+        }
+        List<MailchimpOutboxEntry> pendingEntries = new ArrayList<>();
+        for (int i = 0; i < PENDING; i++) {
+            prospects.add(prospect("pending-" + i + "@localhost", signupDate));
+            pendingEntries.add(new MailchimpOutboxEntry().email("pending-" + i + "@localhost").signupDate(signupDate));
+        }
+        prospects.add(prospect("recent@localhost", ZonedDateTime.now()));
+        prospectRepository.insertAllIfAbsent(prospects);
+        outboxRepository.insertAll(pendingEntries);
+
+        long start = System.nanoTime();
+        MailchimpReconciliationReportDTO report = reconciliationService.reconcile();
+        log.info("Reconciled {} members in {} ms", MEMBERS, (System.nanoTime() - start) / 1000000);
+
+        assertThat(report.getMembersRead()).isEqualTo(MEMBERS);
+        assertThat(report.getMissingInMailchimp()).isEqualTo(LOCAL_ONLY);
+        assertThat(report.getMissingLocally()).isEqualTo(MEMBERS / 1000);
+        assertThat(report.getUnsubscribed()).isEqualTo(MEMBERS / 1000);
+        assertThat(report.getMatched()).isEqualTo(MEMBERS - 2 * MEMBERS / 1000);
+        List<String> queued = outboxRepository.findAll().stream()
+            .map(MailchimpOutboxEntry::getEmail)
+            .filter(email -> email.startsWith("local-"))
+            .collect(Collectors.toList());
+        assertThat(queued).hasSize(LOCAL_ONLY);
+        assertThat(outboxRepository.count()).isEqualTo(LOCAL_ONLY + PENDING);
+        assertThat(memberRepository.count()).isZero();
+        // The list was read one page at a time, the last one being empty
+        verify(mockMailchimpService, times(MEMBERS / 1000 + 1))
+            .getMembersChangedSince(any(ZonedDateTime.class), anyInt(), eq(1000));
+    }
+
+    @Test
+    public void assertThatNextRunStartsFromTheWatermark() throws Exception {
+        reset(mockMailchimpService);
+        when(mockMailchimpService.getMembersChangedSince(any(ZonedDateTime.class), anyInt(), anyInt()))
+            .thenReturn(Collections.emptyList());
+        MailchimpReconciliationReportDTO first = reconciliationService.reconcile();
+
+        MailchimpReconciliationReportDTO second = reconciliationService.reconcile();
+
+        assertThat(second.getSince().toInstant()).isEqualTo(first.getUntil().toInstant());
+        assertThat(second.getMembersRead()).isZero();
+        assertThat(second.getMissingLocally()).isZero();
+        ArgumentCaptor<ZonedDateTime> since = ArgumentCaptor.forClass(ZonedDateTime.class);
+        verify(mockMailchimpService, times(2)).getMembersChangedSince(since.capture(), eq(0), eq(1000));
+        assertThat(since.getAllValues().get(1).toInstant()).isEqualTo(first.getUntil().toInstant());
+    }
+
+    @Test
+    public void assertThatLeasedWatermarkSkipsTheRun() throws Exception {
+        ZonedDateTime now = ZonedDateTime.now();
+        watermarkRepository.acquireLease(ReconciliationWatermark.MAILCHIMP, now, now.plusHours(1));
+
+        assertThat(reconciliationService.reconcile()).isNull();
+        verifyZeroInteractions(mockMailchimpService);
+    }
+
+    private static String email(int i) {
+        // Mailchimp sorts members by change date, which is not the e-mail order
+        return String.format("member-%06d@localhost", i * 7919L % MEMBERS);
+    }
+
+    private static Prospect prospect(String email, ZonedDateTime createdDate) {
+        Prospect prospect = new Prospect();
+        prospect.setEmail(email);
+        prospect.setCreatedBy("system");
+        prospect.setCreatedDate(createdDate);
+        prospect.setLastModifiedBy("system");
+        prospect.setLastModifiedDate(createdDate);
+        return prospect;
+    }
+}
@@ -0,0 +1,190 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.MailchimpMember;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Test class for the MailchimpService, against a {@link MailchimpStub}.
+ *
+ * @see MailchimpService
+ */
+public class MailchimpServiceUnitTest {
+
+    private static final String PREFIX = "org.fmarin.tournoidevincennes.service.MailchimpService.";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MailchimpStub stub;
+
+    private JHipsterProperties jHipsterProperties;
+
+    private MetricRegistry metricRegistry;
+
+    private MailchimpService mailchimpService;
+
+    @Before
+    public void setup() throws Exception {
+        stub = new MailchimpStub();
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getMailchimp().setApiKey("test-us1");
+        jHipsterProperties.getMailchimp().setListId("test");
+        metricRegistry = new MetricRegistry();
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        if (mailchimpService != null) {
+            mailchimpService.destroy();
+        }
+        stub.close();
+    }
+
+    @Test
+    public void testCallsAreRefusedWithoutApiKey() throws Exception {
+        jHipsterProperties.getMailchimp().setApiKey("");
+        mailchimpService = new MailchimpService(jHipsterProperties, metricRegistry, stub.httpClientBuilder());
+
+        assertThat(catchThrowable(() -> mailchimpService.subscribe("user@localhost", ZonedDateTime.now())))
+            .isInstanceOf(MailchimpUnavailableException.class);
+        assertThat(stub.getRequests()).isEmpty();
+    }
+
+    @Test
+    public void testUnresolvedApiKeyIsRejected() {
+        jHipsterProperties.getMailchimp().setApiKey("${MAILCHIMP_API_KEY}");
+
+        assertThat(catchThrowable(() -> new MailchimpService(jHipsterProperties, metricRegistry,
+            stub.httpClientBuilder()))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testBatchSubscribeSendsTheMembers() throws Exception {
+        mailchimpService = new MailchimpService(jHipsterProperties, metricRegistry, stub.httpClientBuilder());
+        Map<String, ZonedDateTime> signupDates = new LinkedHashMap<>();
+        signupDates.put("First@localhost", ZonedDateTime.parse("2026-10-18T08:00:00Z"));
+        signupDates.put("second@localhost", ZonedDateTime.parse("2026-10-18T09:00:00Z"));
+
+        assertThat(mailchimpService.batchSubscribe(signupDates)).isEmpty();
+
+        assertThat(stub.getRequests()).hasSize(1);
+        MailchimpStub.Request request = stub.getRequests().get(0);
+        assertThat(request.method).isEqualTo("POST");
+        assertThat(request.path).isEqualTo("/3.0/lists/test");
+        JsonNode body = objectMapper.readTree(request.body);
+        assertThat(body.get("update_existing").asBoolean()).isFalse();
+        assertThat(body.get("members")).extracting(member -> member.get("email_address").asText())
+            .containsExactly("First@localhost", "second@localhost");
+        assertThat(body.get("members")).extracting(member -> member.get("status").asText())
+            .containsOnly("subscribed");
+        assertThat(body.get("members").get(0).get("timestamp_signup").asText()).startsWith("2026-10-18");
+    }
+
+    @Test
+    public void testBatchSubscribeReportsTheRejectedMembers() throws Exception {
+        stub.respond(request -> new MailchimpStub.Response(200, "{\"total_created\": 1, \"error_count\": 3, " +
+            "\"errors\": [" +
+            "{\"email_address\": \"first@localhost\", \"error\": \"Invalid e-mail\", " +
+            "\"error_code\": \"ERROR_GENERIC\"}, " +
+            "{\"email_address\": \"second@localhost\", \"error\": \"second@localhost is already a list member\", " +
+            "\"error_code\": \"ERROR_CONTACT_EXISTS\"}, " +
+            "{\"error\": \"Unknown member\", \"error_code\": \"ERROR_GENERIC\"}]}"));
+        mailchimpService = new MailchimpService(jHipsterProperties, metricRegistry, stub.httpClientBuilder());
+        Map<String, ZonedDateTime> signupDates = new LinkedHashMap<>();
+        signupDates.put("First@localhost", ZonedDateTime.now());
+        signupDates.put("second@localhost", ZonedDateTime.now());
+        signupDates.put("third@localhost", ZonedDateTime.now());
+
+        Map<String, String> errors = mailchimpService.batchSubscribe(signupDates);
+
+        // By normalized address, without the members already on the list nor the errors without an address
+        assertThat(errors).containsOnlyKeys("first@localhost");
+        assertThat(errors.get("first@localhost")).isEqualTo("Invalid e-mail");
+    }
+
+    @Test
+    public void testReadsTheMembersChangedSince() throws Exception {
+        stub.respond(request -> new MailchimpStub.Response(200, "{\"members\": [" +
+            "{\"email_address\": \"First@localhost\", \"status\": \"subscribed\", " +
+            "\"last_changed\": \"2026-10-18T08:00:00+00:00\"}, " +
+            "{\"email_address\": \"second@localhost\", \"status\": \"unsubscribed\"}], " +
+            "\"total_items\": 2}"));
+        mailchimpService = new MailchimpService(jHipsterProperties, metricRegistry, stub.httpClientBuilder());
+
+        List<MailchimpMember> members = mailchimpService.getMembersChangedSince(
+            ZonedDateTime.parse("2026-10-17T00:00:00Z"), 1000, 5000);
+
+        MailchimpStub.Request request = stub.getRequests().get(0);
+        assertThat(request.method).isEqualTo("GET");
+        assertThat(request.path).isEqualTo("/3.0/lists/test/members");
+        assertThat(request.query).contains("offset=1000", "count=" + MailchimpService.MAX_PAGE_SIZE,
+            "sort_field=last_changed", "sort_dir=ASC", "since_last_changed=2026-10-17T00");
+        assertThat(members).extracting(MailchimpMember::getEmail)
+            .containsExactly("first@localhost", "second@localhost");
+        assertThat(members).extracting(MailchimpMember::getStatus).containsExactly("subscribed", "unsubscribed");
+        assertThat(members.get(0).getLastChanged().toInstant()).isEqualTo(Instant.parse("2026-10-18T08:00:00Z"));
+        assertThat(members.get(1).getLastChanged()).isNull();
+    }
+
+    @Test
+    public void testEveryConcurrentCallGetsAConnection() throws Exception {
+        int calls = jHipsterProperties.getMailchimp().getMaxConcurrentCalls();
+        CountDownLatch arrived = new CountDownLatch(calls);
+        AtomicBoolean together = new AtomicBoolean();
+        stub.respond(request -> {
+            arrived.countDown();
+            // Only true if all the calls reached Mailchimp at once, rather than waiting for a connection
+            if (arrived.await(5, TimeUnit.SECONDS)) {
+                together.set(true);
+            }
+            return new MailchimpStub.Response(200, "{}");
+        });
+        mailchimpService = new MailchimpService(jHipsterProperties, metricRegistry, stub.httpClientBuilder());
+
+        ExecutorService executor = Executors.newFixedThreadPool(calls);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                String email = "member-" + i + "@localhost";
+                results.add(executor.submit(() -> {
+                    mailchimpService.subscribe(email, ZonedDateTime.now());
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(together.get()).isTrue();
+        assertThat(stub.getRequests()).hasSize(calls);
+        assertThat(stub.getRequests().get(0).path).startsWith("/3.0/lists/test/members/");
+        // The connections are kept alive for the next calls
+        assertThat(metricRegistry.getGauges().get(PREFIX + "connections.leased").getValue()).isEqualTo(0);
+        assertThat(metricRegistry.getGauges().get(PREFIX + "connections.available").getValue()).isEqualTo(calls);
+    }
+}
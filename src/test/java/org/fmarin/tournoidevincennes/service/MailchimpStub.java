@@ -0,0 +1,128 @@
+package org.fmarin.tournoidevincennes.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.springframework.util.StreamUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP server standing for the Mailchimp API.
+ * <p>
+ * The {@link MailchimpService} is pointed at it with {@link #httpClientBuilder()}, so its calls go through maleorang
+ * and the HTTP client as they do in production, only to another host.
+ * </p>
+ */
+public class MailchimpStub implements Closeable {
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    private volatile Responder responder = request -> new Response(200, "{}");
+
+    public MailchimpStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return a builder of HTTP clients sending every request to this server, whatever its host
+     */
+    public HttpClientBuilder httpClientBuilder() {
+        HttpHost stub = new HttpHost(server.getAddress().getAddress(), server.getAddress().getPort(), "http");
+        return HttpClients.custom().setRoutePlanner((target, request, context) -> new HttpRoute(stub));
+    }
+
+    /**
+     * @param responder answers the following requests
+     */
+    public void respond(Responder responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * @return the requests received so far, oldest first
+     */
+    public List<Request> getRequests() {
+        return requests;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+            exchange.getRequestURI().getRawQuery(),
+            StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        requests.add(request);
+        Response response;
+        try {
+            response = responder.respond(request);
+        } catch (Exception e) {
+            response = new Response(500, "{\"status\": 500, \"detail\": \"" + e + "\"}");
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Responder {
+
+        Response respond(Request request) throws Exception;
+    }
+
+    public static final class Request {
+
+        public final String method;
+
+        public final String path;
+
+        public final String query;
+
+        public final String body;
+
+        private Request(String method, String path, String query, String body) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.body = body;
+        }
+    }
+
+    public static final class Response {
+
+        private final int status;
+
+        private final String body;
+
+        public Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
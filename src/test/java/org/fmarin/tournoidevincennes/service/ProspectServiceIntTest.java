@@ -0,0 +1,185 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the ProspectService.
+ *
+ * @see ProspectService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class ProspectServiceIntTest {
+
+    private static final String EMAIL = "prospect@localhost";
+
+    private static final String ROLLED_BACK_EMAIL = "rolled-back@localhost";
+
+    @Inject
+    private ProspectService prospectService;
+
+    @Inject
+    private ProspectRepository prospectRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    @Inject
+    private ProspectEmailFilter emailFilter;
+
+    @Inject
+    private ProspectSignupCounter signupCounter;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @After
+    public void cleanup() {
+        outboxRepository.deleteAll();
+        prospectRepository.deleteAll();
+    }
+
+    @Test
+    public void assertThatProspectIsCreated() {
+        Prospect prospect = prospectService.createProspect(EMAIL);
+
+        assertThat(prospect.getId()).isNotNull();
+        Prospect saved = prospectRepository.findOne(prospect.getId());
+        assertThat(saved.getEmail()).isEqualTo(EMAIL);
+        assertThat(saved.getCreatedBy()).isNotNull();
+        assertThat(outboxRepository.findAll()).hasSize(1);
+    }
+
+    @Test
+    public void assertThatDuplicateProspectIsIgnored() {
+        assertThat(prospectService.createProspect(EMAIL)).isNotNull();
+
+        assertThat(prospectService.createProspect(EMAIL)).isNull();
+
+        assertThat(prospectRepository.findAll()).hasSize(1);
+        assertThat(outboxRepository.findAll()).hasSize(1);
+    }
+
+    @Test
+    public void assertThatEmailVariantsAreIgnored() {
+        assertThat(prospectService.createProspect("Jean.Dupont@Example.com")).isNotNull();
+
+        assertThat(prospectService.createProspect(" jean.dupont@example.com")).isNull();
+        assertThat(prospectService.createProspects(Collections.singletonList("JEAN.DUPONT@example.com."))).isEmpty();
+
+        assertThat(prospectRepository.findAll()).hasSize(1);
+        assertThat(prospectRepository.findOneByEmail("jean.dupont@example.com").get().getEmail())
+            .isEqualTo("Jean.Dupont@Example.com");
+        assertThat(outboxRepository.findAll()).hasSize(1);
+    }
+
+    @Test
+    public void assertThatAddressesDifferingByTheirDotsAreDistinct() {
+        assertThat(prospectService.createProspect("jean.dupont@gmail.com")).isNotNull();
+        assertThat(prospectService.createProspect("jeandupont@gmail.com")).isNotNull();
+        assertThat(prospectService.createProspect("jean.dupont@googlemail.com")).isNotNull();
+
+        assertThat(prospectRepository.findAll()).hasSize(3);
+    }
+
+    @Test
+    public void assertThatEmailFilterKnowsRegisteredProspects() throws Exception {
+        awaitEmailFilter();
+
+        prospectService.createProspect(EMAIL);
+
+        assertThat(emailFilter.mightBeRegistered(EMAIL)).isTrue();
+        assertThat(emailFilter.mightBeRegistered("never-registered@localhost")).isFalse();
+    }
+
+    @Test
+    public void assertThatRolledBackProspectsAreNotInTheEmailFilter() throws Exception {
+        awaitEmailFilter();
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            prospectService.createProspect(ROLLED_BACK_EMAIL);
+            prospectService.createProspects(Collections.singletonList("other." + ROLLED_BACK_EMAIL));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(prospectRepository.count()).isZero();
+        assertThat(emailFilter.mightBeRegistered(ROLLED_BACK_EMAIL)).isFalse();
+        assertThat(emailFilter.mightBeRegistered("other." + ROLLED_BACK_EMAIL)).isFalse();
+    }
+
+    @Test
+    public void assertThatOnlyCommittedProspectsAreCounted() {
+        long registered = signupCounter.getRegistered();
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            prospectService.createProspect(ROLLED_BACK_EMAIL);
+            prospectService.createProspects(Collections.singletonList("other." + ROLLED_BACK_EMAIL));
+            assertThat(signupCounter.getRegistered()).isEqualTo(registered);
+            status.setRollbackOnly();
+            return null;
+        });
+        prospectService.createProspect(EMAIL);
+
+        assertThat(signupCounter.getRegistered()).isEqualTo(registered + 1);
+    }
+
+    @Test
+    public void assertThatConcurrentDuplicateSignupsRegisterEachEmailOnce() throws Exception {
+        int emails = 20;
+        int signupsPerEmail = 100;
+        List<Callable<Prospect>> signups = new ArrayList<>();
+        for (int i = 0; i < signupsPerEmail; i++) {
+            for (int j = 0; j < emails; j++) {
+                String email = "duplicate-" + j + "@localhost";
+                signups.add(() -> prospectService.createProspect(email));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        int created = 0;
+        try {
+            for (Future<Prospect> result : executor.invokeAll(signups)) {
+                if (result.get() != null) {
+                    created++;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(created).isEqualTo(emails);
+        assertThat(prospectRepository.count()).isEqualTo(emails);
+        assertThat(outboxRepository.count()).isEqualTo(emails);
+    }
+
+    private void awaitEmailFilter() throws InterruptedException {
+        // The filter is loaded in the background once the application is ready
+        for (int i = 0; i < 100 && !emailFilter.isLoaded(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(emailFilter.isLoaded()).isTrue();
+    }
+}
@@ -0,0 +1,217 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the ProspectWriteBuffer.
+ *
+ * @see ProspectWriteBuffer
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class ProspectWriteBufferIntTest {
+
+    private final Logger log = LoggerFactory.getLogger(ProspectWriteBufferIntTest.class);
+
+    private static final int SIGNUPS = 2000;
+
+    private static final int CLIENTS = 16;
+
+    @Inject
+    private ProspectService prospectService;
+
+    @Inject
+    private ProspectRepository prospectRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    @After
+    public void cleanup() {
+        outboxRepository.deleteAll();
+        prospectRepository.deleteAll();
+    }
+
+    @Test
+    public void assertThatQueuedProspectsAreWritten() throws Exception {
+        ProspectWriteBuffer buffer = createBuffer(prospectService, 100, 50);
+        try {
+            CompletableFuture<Prospect> first = buffer.submit("first@localhost");
+            CompletableFuture<Prospect> second = buffer.submit("second@localhost");
+            CompletableFuture<Prospect> duplicate = buffer.submit("first@localhost");
+
+            assertThat(first.get(5, TimeUnit.SECONDS).getId()).isNotNull();
+            assertThat(second.get(5, TimeUnit.SECONDS).getId()).isNotNull();
+            assertThat(duplicate.get(5, TimeUnit.SECONDS)).isNull();
+            assertThat(prospectRepository.findOne(first.get().getId()).getEmail()).isEqualTo("first@localhost");
+            assertThat(prospectRepository.findAll()).hasSize(2);
+            assertThat(outboxRepository.findAll()).hasSize(2);
+            assertThat(buffer.submit("second@localhost").get(5, TimeUnit.SECONDS)).isNull();
+        } finally {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    public void assertThatFullQueueRejectsSignups() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProspectService blockedService = mock(ProspectService.class);
+        when(blockedService.createProspects(anyListOf(String.class))).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return Collections.emptyList();
+        });
+        ProspectWriteBuffer buffer = createBuffer(blockedService, 1, 0);
+        try {
+            CompletableFuture<Prospect> written = buffer.submit("written@localhost");
+            assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<Prospect> queued = buffer.submit("queued@localhost");
+
+            Throwable rejected = catchThrowable(() -> buffer.submit("rejected@localhost"));
+
+            assertThat(rejected).isInstanceOf(RejectedExecutionException.class);
+            release.countDown();
+            assertThat(written.get(5, TimeUnit.SECONDS)).isNull();
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isNull();
+        } finally {
+            release.countDown();
+            buffer.stop();
+        }
+    }
+
+    @Test
+    public void assertThatStoppedBufferWritesQueuedProspects() throws Exception {
+        ProspectWriteBuffer buffer = createBuffer(prospectService, 100, 50);
+        CompletableFuture<Prospect> queued = buffer.submit("queued@localhost");
+
+        buffer.stop();
+
+        assertThat(queued.isDone()).isTrue();
+        assertThat(queued.get().getId()).isNotNull();
+        assertThat(catchThrowable(() -> buffer.submit("late@localhost")))
+            .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    /**
+     * Compares signups written one transaction each with signups going through the write-behind buffer. The
+     * latencies depend on the database and on the machine, so they are only logged, and the benchmark only runs
+     * with {@code -Dbenchmarks=true}.
+     */
+    @Test
+    public void compareDirectAndBufferedSignups() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmarks"));
+        long[] direct = signup("direct", prospectService::createProspect);
+        cleanup();
+        MetricRegistry metricRegistry = new MetricRegistry();
+        ProspectWriteBuffer buffer = createBuffer(prospectService, SIGNUPS, 5, metricRegistry);
+        long[] buffered;
+        try {
+            buffered = signup("buffered", email -> buffer.submit(email).get(5, TimeUnit.SECONDS));
+        } finally {
+            buffer.stop();
+        }
+
+        log.info(report("Direct", direct));
+        log.info(report("Write-behind", buffered));
+        assertThat(prospectRepository.count()).isEqualTo(SIGNUPS);
+        assertThat(outboxRepository.count()).isEqualTo(SIGNUPS);
+        // The concurrent signups are written together, in fewer transactions than signups
+        assertThat(metricRegistry.timer(MetricRegistry.name(ProspectWriteBuffer.class, "flushes")).getCount())
+            .isLessThan(SIGNUPS);
+    }
+
+    private ProspectWriteBuffer createBuffer(ProspectService service, int queueCapacity, long maxLingerMs) {
+        return createBuffer(service, queueCapacity, maxLingerMs, new MetricRegistry());
+    }
+
+    private ProspectWriteBuffer createBuffer(ProspectService service, int queueCapacity, long maxLingerMs,
+                                             MetricRegistry metricRegistry) {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        JHipsterProperties.Prospect.WriteBehind properties = jHipsterProperties.getProspect().getWriteBehind();
+        properties.setEnabled(true);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setMaxLingerMs(maxLingerMs);
+        properties.setOfferTimeoutMs(0);
+        ProspectWriteBuffer buffer = new ProspectWriteBuffer(service, jHipsterProperties, metricRegistry);
+        buffer.start();
+        return buffer;
+    }
+
+    /**
+     * @return the latency of each signup in nanoseconds, sorted, followed by the total elapsed time
+     */
+    private long[] signup(String prefix, Signup signup) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Callable<Long>> calls = new ArrayList<>();
+            for (int i = 0; i < SIGNUPS; i++) {
+                String email = prefix + "-" + i + "@localhost";
+                calls.add(() -> {
+                    long start = System.nanoTime();
+                    assertThat(signup.create(email)).isNotNull();
+                    return System.nanoTime() - start;
+                });
+            }
+            long start = System.nanoTime();
+            List<Future<Long>> results = executor.invokeAll(calls);
+            long elapsed = System.nanoTime() - start;
+            long[] latencies = new long[SIGNUPS + 1];
+            for (int i = 0; i < SIGNUPS; i++) {
+                latencies[i] = results.get(i).get();
+            }
+            Arrays.sort(latencies, 0, SIGNUPS);
+            latencies[SIGNUPS] = elapsed;
+            return latencies;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String report(String name, long[] latencies) {
+        double seconds = latencies[SIGNUPS] / 1e9;
+        return String.format("%s: %d signups with %d clients, %.0f inserts/s, p50 %.2f ms, p99 %.2f ms",
+            name, SIGNUPS, CLIENTS, SIGNUPS / seconds,
+            latencies[SIGNUPS / 2] / 1e6, latencies[SIGNUPS * 99 / 100] / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface Signup {
+
+        Prospect create(String email) throws Exception;
+    }
+}
@@ -0,0 +1,78 @@
+package org.fmarin.tournoidevincennes.service;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.repository.UserRepository;
+import org.fmarin.tournoidevincennes.service.dto.UserSummaryDTO;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the UserSearchIndex.
+ *
+ * @see UserSearchIndex
+ */
+public class UserSearchIndexUnitTest {
+
+    private UserRepository userRepository;
+
+    private UserSearchIndex userSearchIndex;
+
+    @Before
+    public void setup() {
+        userRepository = mock(UserRepository.class);
+        userSearchIndex = new UserSearchIndex(userRepository, new JHipsterProperties(), new MetricRegistry());
+    }
+
+    @Test
+    public void testLoadsUsers() {
+        when(userRepository.streamAllUserSummaries()).thenReturn(Stream.of(user(1L, "first"), user(2L, "second")));
+
+        userSearchIndex.load();
+
+        assertThat(userSearchIndex.search("fir", 10)).extracting("id").containsExactly(1L);
+        assertThat(userSearchIndex.search("sec", 10)).extracting("id").containsExactly(2L);
+    }
+
+    @Test
+    public void testLoadDoesNotOverwriteUsersWrittenWhileLoading() {
+        // The users are written once the rows were read, but before the load indexes them
+        when(userRepository.streamAllUserSummaries()).thenReturn(Stream.of(user(1L, "old"), user(2L, "removed"))
+            .map(user -> {
+                if (user.getId() == 1L) {
+                    userSearchIndex.put(user(1L, "renamed"));
+                } else {
+                    userSearchIndex.remove(2L);
+                }
+                return user;
+            }));
+
+        userSearchIndex.load();
+
+        assertThat(userSearchIndex.search("old", 10)).isEmpty();
+        assertThat(userSearchIndex.search("renamed", 10)).extracting("id").containsExactly(1L);
+        assertThat(userSearchIndex.search("removed", 10)).isEmpty();
+    }
+
+    @Test
+    public void testWritesUsersOnceLoaded() {
+        when(userRepository.streamAllUserSummaries()).thenReturn(Stream.of(user(1L, "old")));
+        userSearchIndex.load();
+
+        userSearchIndex.put(user(1L, "renamed"));
+
+        assertThat(userSearchIndex.search("old", 10)).isEmpty();
+        assertThat(userSearchIndex.search("renamed", 10)).extracting("id").containsExactly(1L);
+    }
+
+    private static UserSummaryDTO user(Long id, String login) {
+        return new UserSummaryDTO(id, login, login + "@localhost", null, null, true);
+    }
+}
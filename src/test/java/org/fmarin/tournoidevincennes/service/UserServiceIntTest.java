@@ -1,20 +1,54 @@
 package org.fmarin.tournoidevincennes.service;
 
 import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.domain.Authority;
 import org.fmarin.tournoidevincennes.domain.User;
 import org.fmarin.tournoidevincennes.repository.UserRepository;
+import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
+import org.fmarin.tournoidevincennes.security.BoundedPasswordEncoder;
+import org.fmarin.tournoidevincennes.security.UserDetailsService;
 import java.time.ZonedDateTime;
+import org.fmarin.tournoidevincennes.service.dto.ManagedUserDTO;
 import org.fmarin.tournoidevincennes.service.util.RandomUtil;
+import org.fmarin.tournoidevincennes.web.rest.vm.ManagedUserVM;
 import java.time.LocalDate;
+import com.codahale.metrics.MetricRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -28,12 +62,45 @@ import static org.assertj.core.api.Assertions.*;
 @Transactional
 public class UserServiceIntTest {
 
+    private final Logger log = LoggerFactory.getLogger(UserServiceIntTest.class);
+
+    private static final int STALE_USERS = 2500;
+
+    private static final int CREATED_USERS = 20;
+
+    private static final int[] LISTED_USERS = {10000, 100000};
+
+    private static final int LISTED_PAGES = 50;
+
+    private static final int LISTED_PAGE_SIZE = 100;
+
     @Inject
     private UserRepository userRepository;
 
     @Inject
     private UserService userService;
 
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private EntityManager entityManager;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Inject
+    private UserDetailsService userDetailsService;
+
     @Test
     public void assertThatUserMustExistToResetPassword() {
         Optional<User> maybeUser = userService.requestPasswordReset("john.doe@localhost");
@@ -107,6 +174,219 @@ public class UserServiceIntTest {
         userRepository.delete(user);
     }
 
+    @Test
+    public void assertThatPasswordHashIsUpgradedOnLogin() {
+        User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "en-US");
+        user.setPassword(new BCryptPasswordEncoder(4).encode("johndoe"));
+        userRepository.saveAndFlush(user);
+
+        userService.upgradePasswordHash("johndoe", "johndoe");
+
+        String upgraded = userRepository.findOneByLogin("johndoe").get().getPassword();
+        assertThat(upgraded).startsWith("$2a$10$");
+        assertThat(passwordEncoder.matches("johndoe", upgraded)).isTrue();
+
+        userService.upgradePasswordHash("johndoe", "johndoe");
+
+        assertThat(userRepository.findOneByLogin("johndoe").get().getPassword()).isEqualTo(upgraded);
+    }
+
+    @Test
+    public void assertThatCachedUserDetailsAreInvalidatedOnChange() {
+        User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "en-US");
+        String resetKey = RandomUtil.generateResetKey();
+        user.setActivated(true);
+        user.setResetDate(ZonedDateTime.now());
+        user.setResetKey(resetKey);
+        userRepository.saveAndFlush(user);
+
+        UserDetails loaded = userDetailsService.loadUserByUsername("JohnDoe");
+        assertThat(userDetailsService.loadUserByUsername("johndoe").getPassword()).isEqualTo(loaded.getPassword());
+
+        userService.completePasswordReset("johndoe2", resetKey);
+        userRepository.flush();
+
+        String password = userDetailsService.loadUserByUsername("johndoe").getPassword();
+        assertThat(password).isNotEqualTo(loaded.getPassword());
+        assertThat(passwordEncoder.matches("johndoe2", password)).isTrue();
+
+        userService.deleteUser("johndoe");
+        userRepository.flush();
+
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("johndoe"))
+            .isInstanceOf(UsernameNotFoundException.class);
+    }
+
+    @Test
+    public void assertThatUsersAreWrittenWithoutLoadingAuthorities() {
+        EntityStatistics authorityStatistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+            .getEntityStatistics(Authority.class.getName());
+        long loadedBefore = authorityStatistics.getLoadCount() + authorityStatistics.getFetchCount();
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < CREATED_USERS; i++) {
+            ids.add(userService.createUser(new ManagedUserVM(null, "bulk-" + i, null, "Bulk", "User",
+                "bulk-" + i + "@localhost", true, "en",
+                new HashSet<>(Arrays.asList(AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN)),
+                null, null, null, null)).getId());
+            userService.createUser("bulk-self-" + i, "password", "Bulk", "User", "bulk-self-" + i + "@localhost",
+                "en");
+        }
+        userService.updateUser(ids.get(0), "bulk-0", "Bulk", "User", "bulk-0@localhost", true, "en",
+            Collections.singleton(AuthoritiesConstants.ADMIN));
+        userRepository.flush();
+
+        assertThat(authorityStatistics.getLoadCount() + authorityStatistics.getFetchCount()).isEqualTo(loadedBefore);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from jhi_user_authority where user_id in " +
+            "(select id from jhi_user where login like 'bulk-%')", Long.class)).isEqualTo(3L * CREATED_USERS - 1);
+        assertThat(jdbcTemplate.queryForList("select authority_name from jhi_user_authority where user_id = ?",
+            String.class, ids.get(0))).containsExactly(AuthoritiesConstants.ADMIN);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void assertThatNotActivatedUsersArePurgedInChunks() {
+        Timestamp fourDaysAgo = Timestamp.from(ZonedDateTime.now().minusDays(4).toInstant());
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < STALE_USERS; i++) {
+            users.add(new Object[]{"stale-" + i, false, fourDaysAgo});
+        }
+        users.add(new Object[]{"activated", true, fourDaysAgo});
+        users.add(new Object[]{"recent", false, Timestamp.from(Instant.now())});
+        jdbcTemplate.batchUpdate("insert into jhi_user (login, activated, created_by, created_date) " +
+            "values (?, ?, 'system', ?)", users);
+        jdbcTemplate.update("insert into jhi_user_authority (user_id, authority_name) " +
+            "select id, 'ROLE_USER' from jhi_user where login like 'stale-%' or login in ('activated', 'recent')");
+        Long cachedId = userRepository.findOneByLogin("stale-0").get().getId();
+        assertThat(userService.getUserWithAuthorities(cachedId).getAuthorities()).hasSize(1);
+        long purgedBefore = metricRegistry.meter(
+            MetricRegistry.name(UserService.class, "notActivatedUsersPurged")).getCount();
+
+        try {
+            userService.removeNotActivatedUsers();
+
+            assertThat(userRepository.findOne(cachedId)).isNull();
+            assertThat(jdbcTemplate.queryForObject("select count(*) from jhi_user where login like 'stale-%'",
+                Long.class)).isZero();
+            assertThat(jdbcTemplate.queryForObject("select count(*) from jhi_user_authority where user_id = ?",
+                Long.class, cachedId)).isZero();
+            assertThat(userRepository.findOneByLogin("activated")).isPresent();
+            assertThat(userRepository.findOneByLogin("recent")).isPresent();
+            assertThat(metricRegistry.meter(MetricRegistry.name(UserService.class, "notActivatedUsersPurged"))
+                .getCount()).isEqualTo(purgedBefore + STALE_USERS);
+        } finally {
+            jdbcTemplate.update("delete from jhi_user_authority where user_id in " +
+                "(select id from jhi_user where login like 'stale-%' or login in ('activated', 'recent'))");
+            jdbcTemplate.update("delete from jhi_user where login like 'stale-%' or login in ('activated', 'recent')");
+        }
+    }
+
+    /**
+     * Compares the listing of the users as managed entities copied into DTOs, as it used to be, with the listing
+     * straight into DTOs. Both list the same users, and the straight listing allocates less; the latencies depend on
+     * the database and on the machine, so they are only logged. Inserting the users takes a while, so the benchmark
+     * only runs with {@code -Dbenchmarks=true}.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void compareEntityAndDtoUserListings() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmarks"));
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Function<Pageable, List<ManagedUserDTO>> entities = pageable -> readOnly.execute(status -> {
+            entityManager.createQuery("select count(user) from User user", Long.class).getSingleResult();
+            List<Long> ids = entityManager.createQuery("select user.id from User user order by user.login", Long.class)
+                .setFirstResult(pageable.getOffset()).setMaxResults(pageable.getPageSize()).getResultList();
+            return entityManager.createQuery("select distinct user from User user left join fetch user.authorities " +
+                "where user.id in :ids", User.class).setParameter("ids", ids).getResultList()
+                .stream().map(ManagedUserDTO::new).collect(Collectors.toList());
+        });
+        Function<Pageable, List<ManagedUserDTO>> dtos = pageable ->
+            userService.getAllManagedUsers(pageable).getContent();
+
+        try {
+            int inserted = 0;
+            for (int users : LISTED_USERS) {
+                insertListedUsers(inserted, users);
+                inserted = users;
+                Page<ManagedUserDTO> page = userService.getAllManagedUsers(new PageRequest(0, 1));
+                assertThat(page.getTotalElements()).isGreaterThanOrEqualTo(users);
+                PageRequest pageRequest = new PageRequest(1, LISTED_PAGE_SIZE, Sort.Direction.ASC, "login");
+                assertThat(dtos.apply(pageRequest))
+                    .hasSize(LISTED_PAGE_SIZE)
+                    .allMatch(user -> user.getAuthorities().contains("ROLE_USER"));
+                assertThat(logins(dtos.apply(pageRequest))).isEqualTo(logins(entities.apply(pageRequest)));
+
+                Listing entityListing = list(entities, users);
+                Listing dtoListing = list(dtos, users);
+                log.info("Entities, {} users: {}", users, entityListing);
+                log.info("DTOs, {} users: {}", users, dtoListing);
+                assertThat(dtoListing.allocatedPerPage).isLessThan(entityListing.allocatedPerPage);
+            }
+        } finally {
+            jdbcTemplate.update("delete from jhi_user_authority where user_id in " +
+                "(select id from jhi_user where login like 'listed-%')");
+            jdbcTemplate.update("delete from jhi_user where login like 'listed-%'");
+        }
+    }
+
+    private static List<String> logins(List<ManagedUserDTO> users) {
+        return users.stream().map(ManagedUserDTO::getLogin).sorted().collect(Collectors.toList());
+    }
+
+    private void insertListedUsers(int from, int to) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> users = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            users.add(new Object[]{String.format("listed-%06d", i), "listed-" + i + "@localhost", now});
+        }
+        jdbcTemplate.batchUpdate("insert into jhi_user (login, email, first_name, last_name, activated, lang_key, " +
+            "created_by, created_date) values (?, ?, 'Listed', 'User', true, 'en', 'system', ?)", users);
+        jdbcTemplate.update("insert into jhi_user_authority (user_id, authority_name) " +
+            "select id, 'ROLE_USER' from jhi_user where login like 'listed-%' and id not in " +
+            "(select user_id from jhi_user_authority)");
+    }
+
+    /**
+     * Lists {@link #LISTED_PAGES} pages spread over the users, after as many to warm up.
+     *
+     * @return the latency and the bytes allocated per page
+     */
+    private Listing list(Function<Pageable, List<ManagedUserDTO>> listing, int users) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int stride = users / LISTED_PAGE_SIZE / LISTED_PAGES;
+        for (int i = 0; i < LISTED_PAGES; i++) {
+            listing.apply(new PageRequest(i * stride, LISTED_PAGE_SIZE, Sort.Direction.ASC, "login"));
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < LISTED_PAGES; i++) {
+            listing.apply(new PageRequest(i * stride, LISTED_PAGE_SIZE, Sort.Direction.ASC, "login"));
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+        return new Listing(elapsed / LISTED_PAGES, allocated / LISTED_PAGES);
+    }
+
+    private static final class Listing {
+
+        private final long nanosPerPage;
+
+        private final long allocatedPerPage;
+
+        private Listing(long nanosPerPage, long allocatedPerPage) {
+            this.nanosPerPage = nanosPerPage;
+            this.allocatedPerPage = allocatedPerPage;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d pages of %d, %.2f ms and %d KB allocated per page", LISTED_PAGES,
+                LISTED_PAGE_SIZE, nanosPerPage / 1e6, allocatedPerPage / 1024);
+        }
+    }
+
     @Test
     public void testFindNotActivatedUsersByCreationDateBefore() {
         userService.removeNotActivatedUsers();
@@ -0,0 +1,99 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the CircuitBreaker utility class.
+ *
+ * @see CircuitBreaker
+ */
+public class CircuitBreakerUnitTest {
+
+    private static final long SLOW = 1000;
+
+    private static final long OPEN_DURATION = 10000;
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(50, 80, SLOW, 10, 4, OPEN_DURATION);
+
+    @Test
+    public void testStaysClosedUnderMinimumCalls() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(circuitBreaker.tryAcquirePermission(i)).isTrue();
+            circuitBreaker.onFailure(1, i);
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getFailureRate()).isEqualTo(-1);
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        circuitBreaker.onSuccess(1, 0);
+        circuitBreaker.onSuccess(1, 0);
+        circuitBreaker.onFailure(1, 0);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        circuitBreaker.onFailure(1, 0);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission(OPEN_DURATION - 1)).isFalse();
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onSuccess(SLOW, 0);
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testOnlyCountsTheLastCalls() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onSuccess(1, 0);
+            circuitBreaker.onSuccess(1, 0);
+            circuitBreaker.onFailure(1, 0);
+        }
+        assertThat(circuitBreaker.getFailureRate()).isEqualTo(40);
+        // The window is full, so each new call pushes the oldest one out
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onSuccess(1, 0);
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getFailureRate()).isEqualTo(0);
+    }
+
+    @Test
+    public void testHalfOpenLetsOneTrialCallThrough() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onFailure(1, 0);
+        }
+
+        assertThat(circuitBreaker.tryAcquirePermission(OPEN_DURATION)).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission(OPEN_DURATION)).isFalse();
+
+        circuitBreaker.onSuccess(1, OPEN_DURATION + 1);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquirePermission(OPEN_DURATION + 1)).isTrue();
+    }
+
+    @Test
+    public void testFailedTrialCallReopens() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onFailure(1, 0);
+        }
+        assertThat(circuitBreaker.tryAcquirePermission(OPEN_DURATION)).isTrue();
+
+        circuitBreaker.onFailure(1, OPEN_DURATION + 1);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission(2 * OPEN_DURATION)).isFalse();
+        assertThat(circuitBreaker.tryAcquirePermission(2 * OPEN_DURATION + 1)).isTrue();
+    }
+}
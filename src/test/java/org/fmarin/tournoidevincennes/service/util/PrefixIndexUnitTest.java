@@ -0,0 +1,63 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the PrefixIndex utility class.
+ *
+ * @see PrefixIndex
+ */
+public class PrefixIndexUnitTest {
+
+    private final PrefixIndex<String> index = new PrefixIndex<>(3);
+
+    @Test
+    public void testFindsValuesByPrefix() {
+        index.put(1, "admin", Arrays.asList("admin", "admin@localhost", null));
+        index.put(2, "user", Arrays.asList("user", "user@localhost", "Adams"));
+        index.put(3, "system", Collections.singletonList("system"));
+
+        assertThat(index.search("AD", 10)).containsExactly("user", "admin");
+        assertThat(index.search("admin@", 10)).containsExactly("admin");
+        assertThat(index.search("ad", 1)).containsExactly("user");
+        assertThat(index.search("x", 10)).isEmpty();
+    }
+
+    @Test
+    public void testReturnsValuesOnce() {
+        index.put(1, "admin", Arrays.asList("admin", "admin@localhost"));
+
+        assertThat(index.search("admin", 10)).containsExactly("admin");
+    }
+
+    @Test
+    public void testReplacesAndRemovesValues() {
+        index.put(1, "jean", Arrays.asList("jean", "dupont"));
+        index.put(1, "jean renamed", Arrays.asList("jean", "durand"));
+
+        assertThat(index.search("dup", 10)).isEmpty();
+        assertThat(index.search("dur", 10)).containsExactly("jean renamed");
+        assertThat(index.termCount()).isEqualTo(2);
+
+        index.remove(1);
+
+        assertThat(index.search("j", 10)).isEmpty();
+        assertThat(index.size()).isZero();
+        assertThat(index.termCount()).isZero();
+    }
+
+    @Test
+    public void testIgnoresValuesPastItsSize() {
+        for (int i = 0; i < 4; i++) {
+            assertThat(index.put(i, "user-" + i, Collections.singletonList("user-" + i))).isEqualTo(i < 3);
+        }
+        assertThat(index.put(0, "user-0 renamed", Collections.singletonList("user-0"))).isTrue();
+
+        assertThat(index.search("user", 10)).containsExactly("user-0 renamed", "user-1", "user-2");
+    }
+}
@@ -0,0 +1,60 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the RingCounter utility class.
+ *
+ * @see RingCounter
+ */
+public class RingCounterUnitTest {
+
+    private static final long MINUTE = 60000;
+
+    private final RingCounter counter = new RingCounter(3, MINUTE);
+
+    @Test
+    public void testCountsEachPeriod() {
+        counter.add(1, 0);
+        counter.add(2, MINUTE - 1);
+        counter.add(5, 2 * MINUTE);
+
+        assertThat(counter.snapshot(2 * MINUTE + 1)).containsExactly(3, 0, 5);
+        assertThat(counter.periodStart(2 * MINUTE + 1)).isEqualTo(2 * MINUTE);
+    }
+
+    @Test
+    public void testForgetsPeriodsOutOfTheRing() {
+        counter.add(1, 0);
+        counter.add(2, MINUTE);
+
+        assertThat(counter.snapshot(3 * MINUTE)).containsExactly(2, 0, 0);
+
+        counter.add(4, 3 * MINUTE);
+
+        assertThat(counter.snapshot(3 * MINUTE)).containsExactly(2, 0, 4);
+        assertThat(counter.snapshot(10 * MINUTE)).containsExactly(0, 0, 0);
+    }
+
+    @Test
+    public void testCountsConcurrentEvents() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    counter.add(1, MINUTE);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(counter.snapshot(MINUTE)).containsExactly(0, 0, 80000);
+    }
+}
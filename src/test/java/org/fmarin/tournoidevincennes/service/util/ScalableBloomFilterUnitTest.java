@@ -0,0 +1,58 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the ScalableBloomFilter utility class.
+ *
+ * @see ScalableBloomFilter
+ */
+public class ScalableBloomFilterUnitTest {
+
+    @Test
+    public void testNoFalseNegativeWhileGrowing() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        long initialMemory = filter.memoryInBytes();
+        for (int i = 0; i < 20000; i++) {
+            filter.add("prospect" + i + "@example.com");
+        }
+        for (int i = 0; i < 20000; i++) {
+            assertThat(filter.mightContain("prospect" + i + "@example.com")).isTrue();
+        }
+        assertThat(filter.memoryInBytes()).isGreaterThan(initialMemory);
+        assertThat(filter.approximateSize()).isBetween(19800L, 20000L);
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysUnderTarget() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 20000; i++) {
+            filter.add("prospect" + i + "@example.com");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("someone" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100000d).isLessThan(0.01);
+        assertThat(filter.expectedFalsePositiveProbability()).isLessThan(0.01);
+    }
+
+    @Test
+    public void testEmptyFilter() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100000, 0.01);
+        assertThat(filter.mightContain("prospect@example.com")).isFalse();
+        assertThat(filter.approximateSize()).isEqualTo(0);
+        assertThat(filter.expectedFalsePositiveProbability()).isEqualTo(0);
+        // About 9.6 bits per element for 1%, halved for the first stage: about 11 bits per element
+        assertThat(filter.memoryInBytes()).isBetween(130000L, 150000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFalsePositiveProbability() {
+        new ScalableBloomFilter(1000, 1);
+    }
+}
@@ -0,0 +1,66 @@
+package org.fmarin.tournoidevincennes.service.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Test class for the SortedMerge utility class.
+ *
+ * @see SortedMerge
+ */
+public class SortedMergeUnitTest {
+
+    private final List<String> events = new ArrayList<>();
+
+    private final SortedMerge.Handler<String, Integer> handler = new SortedMerge.Handler<String, Integer>() {
+
+        @Override
+        public void onLeftOnly(String left) {
+            events.add("left " + left);
+        }
+
+        @Override
+        public void onRightOnly(Integer right) {
+            events.add("right " + right);
+        }
+
+        @Override
+        public void onBoth(String left, Integer right) {
+            events.add("both " + left);
+        }
+    };
+
+    @Test
+    public void testMergesInKeyOrder() {
+        SortedMerge.merge(Arrays.asList("1", "3", "4", "7").iterator(), Integer::valueOf,
+            Arrays.asList(2, 3, 7, 8, 9).iterator(), Function.identity(), handler);
+
+        assertThat(events).containsExactly("left 1", "right 2", "both 3", "left 4", "both 7", "right 8", "right 9");
+    }
+
+    @Test
+    public void testMergesWithAnEmptySide() {
+        SortedMerge.merge(Collections.<String>emptyIterator(), Integer::valueOf,
+            Arrays.asList(1, 2).iterator(), Function.identity(), handler);
+        SortedMerge.merge(Arrays.asList("3").iterator(), Integer::valueOf,
+            Collections.<Integer>emptyIterator(), Function.identity(), handler);
+
+        assertThat(events).containsExactly("right 1", "right 2", "left 3");
+    }
+
+    @Test
+    public void testRejectsUnsortedSequence() {
+        Throwable thrown = catchThrowable(() -> SortedMerge.merge(Arrays.asList("1", "5", "4").iterator(),
+            Integer::valueOf, Arrays.asList(9).iterator(), Function.identity(), handler));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+    }
+}
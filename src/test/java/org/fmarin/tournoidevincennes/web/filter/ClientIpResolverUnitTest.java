@@ -0,0 +1,57 @@
+package org.fmarin.tournoidevincennes.web.filter;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the ClientIpResolver.
+ *
+ * @see ClientIpResolver
+ */
+public class ClientIpResolverUnitTest {
+
+    @Test
+    public void testIgnoresForwardedForWithoutTrustedProxies() {
+        ClientIpResolver resolver = resolver(0);
+
+        assertThat(resolver.resolve(request("10.0.0.1", "203.0.113.1"))).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    public void testResolvesClientsBehindTrustedProxies() {
+        ClientIpResolver resolver = resolver(1);
+
+        assertThat(resolver.resolve(request("10.0.0.1", "203.0.113.1"))).isEqualTo("203.0.113.1");
+        assertThat(resolver.resolve(request("10.0.0.1", "198.51.100.1"))).isEqualTo("198.51.100.1");
+        assertThat(resolver.resolve(request("10.0.0.1", "192.0.2.1, 203.0.113.1"))).isEqualTo("203.0.113.1");
+        assertThat(resolver(2).resolve(request("10.0.0.1", "192.0.2.1, 203.0.113.1, 10.0.0.2")))
+            .isEqualTo("203.0.113.1");
+    }
+
+    @Test
+    public void testFallsBackToRemoteAddress() {
+        ClientIpResolver resolver = resolver(2);
+
+        assertThat(resolver.resolve(request("10.0.0.1", null))).isEqualTo("10.0.0.1");
+        assertThat(resolver.resolve(request("10.0.0.1", "203.0.113.1"))).isEqualTo("10.0.0.1");
+    }
+
+    private static ClientIpResolver resolver(int trustedProxyHops) {
+        JHipsterProperties properties = new JHipsterProperties();
+        properties.getHttp().setTrustedProxyHops(trustedProxyHops);
+        return new ClientIpResolver(properties);
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader(ClientIpResolver.X_FORWARDED_FOR_HEADER, forwardedFor);
+        }
+        return request;
+    }
+}
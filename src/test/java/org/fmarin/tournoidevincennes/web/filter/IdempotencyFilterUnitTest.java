@@ -0,0 +1,329 @@
+package org.fmarin.tournoidevincennes.web.filter;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import org.fmarin.tournoidevincennes.security.AuthoritiesConstants;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the IdempotencyFilter.
+ *
+ * @see IdempotencyFilter
+ */
+public class IdempotencyFilterUnitTest {
+
+    private JHipsterProperties properties;
+
+    private MetricRegistry metricRegistry;
+
+    private IdempotencyFilter filter;
+
+    private AtomicInteger executions;
+
+    private int status;
+
+    private FilterChain chain;
+
+    @Before
+    public void setup() {
+        properties = new JHipsterProperties();
+        metricRegistry = new MetricRegistry();
+        filter = new IdempotencyFilter(properties, new ClientIpResolver(properties), metricRegistry);
+        executions = new AtomicInteger();
+        status = HttpServletResponse.SC_CREATED;
+        chain = (request, response) -> {
+            // Reads the body, as a controller would
+            StreamUtils.copyToByteArray(request.getInputStream());
+            int execution = executions.incrementAndGet();
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setStatus(status);
+            httpResponse.setHeader("Location", "/api/prospects/" + execution);
+            httpResponse.setContentType("application/json");
+            httpResponse.getWriter().write("{\"id\":" + execution + "}");
+        };
+    }
+
+    @After
+    public void cleanup() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testRetryIsReplayed() throws Exception {
+        MockHttpServletResponse first = send("key-1");
+        MockHttpServletResponse retry = send("key-1");
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(first.getStatus()).isEqualTo(HttpServletResponse.SC_CREATED);
+        assertThat(first.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(first.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        assertThat(retry.getStatus()).isEqualTo(HttpServletResponse.SC_CREATED);
+        assertThat(retry.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(retry.getHeader("Location")).isEqualTo("/api/prospects/1");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(meterCount("hits")).isEqualTo(1);
+        assertThat(meterCount("misses")).isEqualTo(1);
+    }
+
+    @Test
+    public void testDifferentKeysAreExecuted() throws Exception {
+        send("key-1");
+        MockHttpServletResponse other = send("key-2");
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(other.getContentAsString()).isEqualTo("{\"id\":2}");
+    }
+
+    @Test
+    public void testRequestWithoutKeyIsNotRemembered() throws Exception {
+        send(null);
+        send(null);
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(meterCount("misses")).isEqualTo(0);
+    }
+
+    @Test
+    public void testServerErrorIsNotRemembered() throws Exception {
+        status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+        MockHttpServletResponse first = send("key-1");
+        status = HttpServletResponse.SC_CREATED;
+        MockHttpServletResponse retry = send("key-1");
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(first.getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertThat(retry.getStatus()).isEqualTo(HttpServletResponse.SC_CREATED);
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+    }
+
+    @Test
+    public void testRetryWithAnotherBodyIsRejected() throws Exception {
+        send("key-1", "{\"email\":\"prospect@localhost\"}");
+        MockHttpServletResponse other = send("key-1", "{\"email\":\"other@localhost\"}");
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(other.getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY.value());
+        assertThat(meterCount("mismatches")).isEqualTo(1);
+        assertThat(meterCount("hits")).isEqualTo(0);
+    }
+
+    @Test
+    public void testConcurrentRetryWaitsForTheInFlightRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        chain = slowChain(started, release);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> first = executor.submit(() -> send("key-1"));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<MockHttpServletResponse> concurrent = executor.submit(() -> send("key-1"));
+            // The retry waits rather than getting a conflict
+            while (meterCount("collapsed") == 0) {
+                Thread.sleep(10);
+            }
+            assertThat(concurrent.isDone()).isFalse();
+
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).getContentAsString()).isEqualTo("{\"id\":1}");
+            MockHttpServletResponse replayed = concurrent.get(5, TimeUnit.SECONDS);
+            assertThat(replayed.getStatus()).isEqualTo(HttpServletResponse.SC_CREATED);
+            assertThat(replayed.getContentAsString()).isEqualTo("{\"id\":1}");
+            assertThat(replayed.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(meterCount("collapsed")).isEqualTo(1);
+        assertThat(meterCount("conflicts")).isEqualTo(0);
+    }
+
+    @Test
+    public void testConcurrentRetryIsAConflictPastTheInFlightTimeout() throws Exception {
+        properties.getHttp().getIdempotency().setInFlightTimeoutInSeconds(0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        chain = slowChain(started, release);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MockHttpServletResponse> first = executor.submit(() -> send("key-1"));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            MockHttpServletResponse concurrent = send("key-1");
+
+            assertThat(concurrent.getStatus()).isEqualTo(HttpServletResponse.SC_CONFLICT);
+            assertThat(concurrent.getHeader("Retry-After")).isEqualTo("1");
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS).getContentAsString()).isEqualTo("{\"id\":1}");
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+        assertThat(send("key-1").getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(meterCount("conflicts")).isEqualTo(1);
+    }
+
+    @Test
+    public void testAnonymousKeysAreScopedByClientIp() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken("key",
+            "anonymousUser", AuthorityUtils.createAuthorityList(AuthoritiesConstants.ANONYMOUS)));
+
+        MockHttpServletResponse first = sendFrom("key-1", "10.0.0.1");
+        MockHttpServletResponse other = sendFrom("key-1", "10.0.0.2");
+        MockHttpServletResponse retry = sendFrom("key-1", "10.0.0.1");
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(first.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(other.getContentAsString()).isEqualTo("{\"id\":2}");
+        assertThat(other.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        assertThat(retry.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    public void testUserKeysAreNotScopedByClientIp() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("user",
+            "password", AuthorityUtils.createAuthorityList(AuthoritiesConstants.USER)));
+
+        sendFrom("key-1", "10.0.0.1");
+        MockHttpServletResponse retry = sendFrom("key-1", "10.0.0.2");
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("other",
+            "password", AuthorityUtils.createAuthorityList(AuthoritiesConstants.USER)));
+        sendFrom("key-1", "10.0.0.1");
+
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAsynchronousResponseIsReplayed() throws Exception {
+        AsyncController controller = new AsyncController();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).addFilters(filter).build();
+
+        MvcResult started = mockMvc.perform(post("/api/async")
+                .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"prospect@localhost\"}"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isCreated())
+            .andExpect(content().string("{\"id\":1}"));
+
+        mockMvc.perform(post("/api/async")
+                .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"prospect@localhost\"}"))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+            .andExpect(content().string("{\"id\":1}"));
+        mockMvc.perform(post("/api/async")
+                .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"other@localhost\"}"))
+            .andExpect(status().isUnprocessableEntity());
+        assertThat(controller.calls.get()).isEqualTo(1);
+    }
+
+    private FilterChain slowChain(CountDownLatch started, CountDownLatch release) {
+        FilterChain slowChain = chain;
+        return (request, response) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            slowChain.doFilter(request, response);
+        };
+    }
+
+    private MockHttpServletResponse send(String idempotencyKey) throws Exception {
+        return send(idempotencyKey, "{\"email\":\"prospect@localhost\"}");
+    }
+
+    private MockHttpServletResponse send(String idempotencyKey, String body) throws Exception {
+        return send(idempotencyKey, body, "127.0.0.1");
+    }
+
+    private MockHttpServletResponse sendFrom(String idempotencyKey, String remoteAddr) throws Exception {
+        return send(idempotencyKey, "{\"email\":\"prospect@localhost\"}", remoteAddr);
+    }
+
+    private MockHttpServletResponse send(String idempotencyKey, String body, String remoteAddr) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/prospects");
+        request.setRemoteAddr(remoteAddr);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        if (idempotencyKey != null) {
+            request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private long meterCount(String name) {
+        return metricRegistry.meter(MetricRegistry.name(IdempotencyFilter.class, name)).getCount();
+    }
+
+    @RestController
+    static class AsyncController {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @PostMapping("/api/async")
+        public Callable<ResponseEntity<String>> create(@RequestBody String body) {
+            int call = calls.incrementAndGet();
+            return () -> ResponseEntity.status(HttpStatus.CREATED).body("{\"id\":" + call + "}");
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.fmarin.tournoidevincennes.web.filter;
+
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the RateLimitFilter.
+ *
+ * @see RateLimitFilter
+ */
+public class RateLimitFilterUnitTest {
+
+    private final Logger log = LoggerFactory.getLogger(RateLimitFilterUnitTest.class);
+
+    private static final FilterChain CHAIN = (request, response) -> ((HttpServletResponse) response).setStatus(200);
+
+    private JHipsterProperties properties;
+
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void setup() {
+        properties = new JHipsterProperties();
+        JHipsterProperties.Http.RateLimit.Limit limit = new JHipsterProperties.Http.RateLimit.Limit();
+        limit.setPath("/api/prospects");
+        limit.setCapacity(2);
+        limit.setRefillPerMinute(1);
+        properties.getHttp().getRateLimit().getLimits().add(limit);
+        properties.getHttp().getRateLimit().setSubnetMultiplier(2);
+        metricRegistry = new MetricRegistry();
+    }
+
+    @Test
+    public void testBurstThenThrottled() throws Exception {
+        RateLimitFilter filter = filter();
+
+        assertThat(request(filter, "/api/prospects", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(request(filter, "/api/prospects", "10.0.0.1").getStatus()).isEqualTo(200);
+        MockHttpServletResponse throttled = request(filter, "/api/prospects", "10.0.0.1");
+
+        assertThat(throttled.getStatus()).isEqualTo(RateLimitFilter.SC_TOO_MANY_REQUESTS);
+        assertThat(Long.parseLong(throttled.getHeader("Retry-After"))).isBetween(59L, 60L);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RateLimitFilter.class, "throttled")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RateLimitFilter.class, "throttled", "/api/prospects")).getCount())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void testOtherPathsAreNotLimited() throws Exception {
+        RateLimitFilter filter = filter();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(request(filter, "/api/account", "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void testPathVariantsShareTheLimit() throws Exception {
+        RateLimitFilter filter = filter();
+
+        assertThat(request(filter, "/api/prospects/", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(request(filter, "/api/prospects.json", "10.0.0.1").getStatus()).isEqualTo(200);
+
+        assertThat(request(filter, "/api/prospects", "10.0.0.1").getStatus())
+            .isEqualTo(RateLimitFilter.SC_TOO_MANY_REQUESTS);
+        assertThat(request(filter, "/api/prospects//", "10.0.0.1").getStatus())
+            .isEqualTo(RateLimitFilter.SC_TOO_MANY_REQUESTS);
+        assertThat(request(filter, "/api/prospects.xml", "10.0.0.1").getStatus())
+            .isEqualTo(RateLimitFilter.SC_TOO_MANY_REQUESTS);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RateLimitFilter.class, "throttled", "/api/prospects")).getCount())
+            .isEqualTo(3);
+    }
+
+    @Test
+    public void testNormalize() {
+        assertThat(RateLimitFilter.normalize("/api/authenticate")).isEqualTo("/api/authenticate");
+        assertThat(RateLimitFilter.normalize("/api/authenticate/")).isEqualTo("/api/authenticate");
+        assertThat(RateLimitFilter.normalize("/api/authenticate.json")).isEqualTo("/api/authenticate");
+        assertThat(RateLimitFilter.normalize("/api/authenticate.json/")).isEqualTo("/api/authenticate");
+        assertThat(RateLimitFilter.normalize("/api/account/reset_password/init.do"))
+            .isEqualTo("/api/account/reset_password/init");
+        // Only the last segment has an extension
+        assertThat(RateLimitFilter.normalize("/api/v1.0/authenticate")).isEqualTo("/api/v1.0/authenticate");
+        assertThat(RateLimitFilter.normalize("/")).isEqualTo("/");
+    }
+
+    @Test
+    public void testSubnetIsLimited() throws Exception {
+        RateLimitFilter filter = filter();
+
+        // The subnet gets twice the capacity of an IP
+        for (int i = 0; i < 2; i++) {
+            assertThat(request(filter, "/api/prospects", "10.0.0.1").getStatus()).isEqualTo(200);
+            assertThat(request(filter, "/api/prospects", "10.0.0.2").getStatus()).isEqualTo(200);
+        }
+
+        assertThat(request(filter, "/api/prospects", "10.0.0.3").getStatus())
+            .isEqualTo(RateLimitFilter.SC_TOO_MANY_REQUESTS);
+        assertThat(request(filter, "/api/prospects", "10.0.1.1").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void testSubnet() {
+        assertThat(RateLimitFilter.subnet("192.168.1.42")).isEqualTo("192.168.1");
+        assertThat(RateLimitFilter.subnet("2001:db8:0:1::42")).isEqualTo(RateLimitFilter.subnet("2001:db8:0:1:ffff::1"));
+        assertThat(RateLimitFilter.subnet("2001:db8:0:1::42")).isNotEqualTo(RateLimitFilter.subnet("2001:db8:0:2::42"));
+    }
+
+    @Test
+    public void testBucketsAreBounded() throws Exception {
+        properties.getHttp().getRateLimit().setMaxBuckets(100);
+        RateLimitFilter filter = filter();
+
+        for (int i = 0; i < 1000; i++) {
+            request(filter, "/api/prospects", "10.0." + (i / 250) + "." + (i % 250));
+        }
+
+        Gauge<?> buckets = metricRegistry.getGauges().get(MetricRegistry.name(RateLimitFilter.class, "buckets"));
+        assertThat((Integer) buckets.getValue()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void testTokenBucketRefills() {
+        long interval = TimeUnit.SECONDS.toNanos(1);
+        long now = System.nanoTime();
+        RateLimitFilter.TokenBucket bucket = new RateLimitFilter.TokenBucket(interval, 3 * interval, now);
+
+        assertThat(bucket.tryConsume(now)).isEqualTo(0);
+        assertThat(bucket.tryConsume(now)).isEqualTo(0);
+        assertThat(bucket.tryConsume(now)).isEqualTo(0);
+        assertThat(bucket.tryConsume(now)).isEqualTo(interval);
+        assertThat(bucket.tryConsume(now + interval)).isEqualTo(0);
+        assertThat(bucket.isFull(now + 3 * interval)).isFalse();
+        assertThat(bucket.isFull(now + 4 * interval)).isTrue();
+    }
+
+    @Test
+    public void testSubnetDenialDoesNotChargeTheIp() {
+        long interval = TimeUnit.SECONDS.toNanos(1);
+        long now = System.nanoTime();
+        RateLimitFilter.TokenBucket ipBucket = new RateLimitFilter.TokenBucket(interval, 2 * interval, now);
+        RateLimitFilter.TokenBucket subnetBucket = new RateLimitFilter.TokenBucket(interval, 2 * interval, now);
+        subnetBucket.tryConsume(now);
+        subnetBucket.tryConsume(now);
+
+        assertThat(RateLimitFilter.tryConsume(ipBucket, subnetBucket, now)).isEqualTo(interval);
+        assertThat(RateLimitFilter.tryConsume(ipBucket, subnetBucket, now)).isEqualTo(interval);
+
+        assertThat(ipBucket.isFull(now)).isTrue();
+        assertThat(RateLimitFilter.tryConsume(ipBucket, subnetBucket, now + interval)).isEqualTo(0);
+        assertThat(ipBucket.tryConsume(now + interval)).isEqualTo(0);
+    }
+
+    @Test
+    public void testForwardedClientsHaveTheirOwnBuckets() throws Exception {
+        properties.getHttp().setTrustedProxyHops(1);
+        RateLimitFilter filter = filter();
+
+        assertThat(forwarded(filter, "203.0.113.1").getStatus()).isEqualTo(200);
+        assertThat(forwarded(filter, "203.0.113.1").getStatus()).isEqualTo(200);
+        assertThat(forwarded(filter, "203.0.113.1").getStatus()).isEqualTo(RateLimitFilter.SC_TOO_MANY_REQUESTS);
+        assertThat(forwarded(filter, "198.51.100.1").getStatus()).isEqualTo(200);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRefillMustBePositive() {
+        properties.getHttp().getRateLimit().getLimits().get(0).setRefillPerMinute(0);
+
+        filter();
+    }
+
+    /**
+     * Measures the time the filter adds to a request on a limited path, on one of its variants and on a path which
+     * is not limited. The figures depend on the machine, so they are only logged, and the benchmark only runs with
+     * {@code -Dbenchmarks=true}.
+     */
+    @Test
+    public void measureFilterOverhead() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmarks"));
+        int requests = 1_000_000;
+        properties.getHttp().getRateLimit().getLimits().get(0).setCapacity(requests * 4);
+        RateLimitFilter filter = filter();
+        FilterChain chain = (request, response) -> { };
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        for (String path : new String[]{"/api/prospects", "/api/prospects/", "/api/account"}) {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+            request.setServletPath(path);
+            request.setRemoteAddr("10.0.0.1");
+            // Warms up, then measures
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < requests / 2; i++) {
+                    filter.doFilter(request, response, chain);
+                }
+                if (round == 1) {
+                    log.info("Rate limit filter on {}: {} ns per request", path,
+                        (System.nanoTime() - start) / (requests / 2));
+                }
+            }
+        }
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RateLimitFilter.class, "throttled")).getCount()).isEqualTo(0);
+    }
+
+    private RateLimitFilter filter() {
+        return new RateLimitFilter(properties, new ClientIpResolver(properties), metricRegistry);
+    }
+
+    private MockHttpServletResponse forwarded(RateLimitFilter filter, String forwardedFor) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/prospects");
+        request.setServletPath("/api/prospects");
+        request.setRemoteAddr("10.1.2.3");
+        request.addHeader(ClientIpResolver.X_FORWARDED_FOR_HEADER, forwardedFor);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, CHAIN);
+        return response;
+    }
+
+    private MockHttpServletResponse request(RateLimitFilter filter, String path, String ip) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, CHAIN);
+        return response;
+    }
+}
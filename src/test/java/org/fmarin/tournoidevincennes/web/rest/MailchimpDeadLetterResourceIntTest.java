@@ -0,0 +1,126 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.domain.MailchimpDeadLetter;
+import org.fmarin.tournoidevincennes.domain.MailchimpOutboxEntry;
+import org.fmarin.tournoidevincennes.domain.enumeration.OutboxStatus;
+import org.fmarin.tournoidevincennes.repository.MailchimpDeadLetterRepository;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.service.MailchimpDeadLetterService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.inject.Inject;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the MailchimpDeadLetterResource REST controller.
+ *
+ * @see MailchimpDeadLetterResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class MailchimpDeadLetterResourceIntTest {
+
+    @Inject
+    private MailchimpDeadLetterService deadLetterService;
+
+    @Inject
+    private MailchimpDeadLetterRepository deadLetterRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    @Inject
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Inject
+    private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
+
+    private MockMvc restDeadLetterMockMvc;
+
+    private List<MailchimpDeadLetter> deadLetters;
+
+    @Before
+    public void setup() {
+        MailchimpDeadLetterResource deadLetterResource = new MailchimpDeadLetterResource(deadLetterService);
+        this.restDeadLetterMockMvc = MockMvcBuilders.standaloneSetup(deadLetterResource)
+            .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setMessageConverters(jacksonMessageConverter).build();
+
+        List<MailchimpOutboxEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MailchimpOutboxEntry entry = new MailchimpOutboxEntry()
+                .email("dead-" + i + "@localhost")
+                .signupDate(ZonedDateTime.now());
+            entry.setAttempts(10);
+            entry.setLastError("Invalid Resource");
+            entries.add(outboxRepository.save(entry));
+        }
+        deadLetterService.deadLetter(entries);
+        deadLetters = deadLetterRepository.findAll();
+    }
+
+    @After
+    public void cleanup() {
+        deadLetterRepository.deleteAll();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    public void getAllDeadLetters() throws Exception {
+        restDeadLetterMockMvc.perform(get("/api/mailchimp/dead-letters?sort=id,asc"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "3"))
+            .andExpect(jsonPath("$.[0].email").value("dead-0@localhost"))
+            .andExpect(jsonPath("$.[0].attempts").value(10))
+            .andExpect(jsonPath("$.[0].lastError").value("Invalid Resource"));
+    }
+
+    @Test
+    public void replaySomeDeadLetters() throws Exception {
+        restDeadLetterMockMvc.perform(post("/api/mailchimp/dead-letters/replay")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[" + deadLetters.get(0).getId() + ", " + deadLetters.get(2).getId() + ", -1]"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("2"));
+
+        assertThat(deadLetterRepository.findAll()).extracting(MailchimpDeadLetter::getEmail)
+            .containsExactly("dead-1@localhost");
+        List<MailchimpOutboxEntry> entries = outboxRepository.findAll();
+        assertThat(entries).extracting(MailchimpOutboxEntry::getEmail)
+            .containsOnly("dead-0@localhost", "dead-2@localhost");
+        assertThat(entries).extracting(MailchimpOutboxEntry::getStatus).containsOnly(OutboxStatus.PENDING);
+        assertThat(entries).extracting(MailchimpOutboxEntry::getAttempts).containsOnly(0);
+    }
+
+    @Test
+    public void replayAllDeadLetters() throws Exception {
+        restDeadLetterMockMvc.perform(post("/api/mailchimp/dead-letters/replay"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("3"));
+
+        assertThat(deadLetterRepository.findAll()).isEmpty();
+        assertThat(outboxRepository.findAll()).hasSize(3);
+    }
+}
@@ -0,0 +1,120 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+import org.fmarin.tournoidevincennes.service.ProspectExportService;
+import org.fmarin.tournoidevincennes.service.ProspectService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the ProspectExportResource REST controller.
+ *
+ * @see ProspectExportResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class ProspectExportResourceIntTest {
+
+    private static final int PROSPECTS = 2500;
+
+    @Inject
+    private ProspectExportService prospectExportService;
+
+    @Inject
+    private ProspectService prospectService;
+
+    @Inject
+    private ProspectRepository prospectRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    private MockMvc restProspectExportMockMvc;
+
+    @Before
+    public void setup() {
+        ProspectExportResource prospectExportResource = new ProspectExportResource(prospectExportService);
+        this.restProspectExportMockMvc = MockMvcBuilders.standaloneSetup(prospectExportResource).build();
+
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < PROSPECTS; i++) {
+            emails.add("prospect-" + i + "@localhost");
+        }
+        prospectService.createProspects(emails);
+    }
+
+    @After
+    public void cleanup() {
+        outboxRepository.deleteAll();
+        prospectRepository.deleteAll();
+    }
+
+    @Test
+    public void exportCsvProspects() throws Exception {
+        String csv = restProspectExportMockMvc.perform(get("/api/prospects/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("text/csv;charset=UTF-8"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = csv.split("\n");
+        assertThat(lines).hasSize(PROSPECTS + 1);
+        assertThat(lines[0]).isEqualTo("id,email,created_date");
+        assertThat(lines[1]).contains(",prospect-0@localhost,");
+        assertThat(lines[PROSPECTS]).contains(",prospect-" + (PROSPECTS - 1) + "@localhost,");
+    }
+
+    @Test
+    public void exportNdjsonProspects() throws Exception {
+        String ndjson = restProspectExportMockMvc.perform(get("/api/prospects/export").param("format", "NDJSON"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = ndjson.split("\n");
+        assertThat(lines).hasSize(PROSPECTS);
+        assertThat(lines[0]).startsWith("{\"id\":").contains("\"email\":\"prospect-0@localhost\"");
+    }
+
+    @Test
+    public void exportProspectsSinceId() throws Exception {
+        Prospect watermark = prospectRepository.findOneByEmail("prospect-1999@localhost").get();
+
+        String csv = restProspectExportMockMvc.perform(get("/api/prospects/export")
+            .param("since-id", watermark.getId().toString()))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = csv.split("\n");
+        assertThat(lines).hasSize(PROSPECTS - 2000 + 1);
+        assertThat(lines[1]).contains(",prospect-2000@localhost,");
+    }
+
+    @Test
+    public void exportProspectsSinceCreatedDate() throws Exception {
+        String csv = restProspectExportMockMvc.perform(get("/api/prospects/export")
+            .param("since-created-date", "2100-01-01T00:00:00Z"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+        assertThat(csv).isEqualTo("id,email,created_date\n");
+    }
+}
@@ -0,0 +1,157 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+import org.fmarin.tournoidevincennes.service.ProspectFileFormat;
+import org.fmarin.tournoidevincennes.service.ProspectImportService;
+import org.fmarin.tournoidevincennes.service.ProspectService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.inject.Inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the ProspectImportResource REST controller.
+ *
+ * @see ProspectImportResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class ProspectImportResourceIntTest {
+
+    @Inject
+    private ProspectImportService prospectImportService;
+
+    @Inject
+    private ProspectService prospectService;
+
+    @Inject
+    private ProspectRepository prospectRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    @Inject
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    private MockMvc restProspectImportMockMvc;
+
+    @Before
+    public void setup() {
+        ProspectImportResource prospectImportResource = new ProspectImportResource(prospectImportService);
+        this.restProspectImportMockMvc = MockMvcBuilders.standaloneSetup(prospectImportResource)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @After
+    public void cleanup() {
+        outboxRepository.deleteAll();
+        prospectRepository.deleteAll();
+    }
+
+    @Test
+    public void importCsvProspects() throws Exception {
+        prospectService.createProspect("registered@localhost");
+
+        String csv = "name,email\n" +
+            "One,one@localhost\n" +
+            "\"Two, the second\",two@localhost\n" +
+            "\n" +
+            "Again,one@localhost\n" +
+            "Registered,registered@localhost\n" +
+            "Invalid,not-an-email\n" +
+            "Missing\n";
+
+        restProspectImportMockMvc.perform(post("/api/prospects/import")
+            .contentType(ProspectFileFormat.TEXT_CSV)
+            .content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.lines").value(8))
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.alreadyRegistered").value(1))
+            .andExpect(jsonPath("$.duplicates").value(1))
+            .andExpect(jsonPath("$.rejected").value(2))
+            .andExpect(jsonPath("$.rejections[0].line").value(7))
+            .andExpect(jsonPath("$.rejections[0].value").value("Invalid,not-an-email"))
+            .andExpect(jsonPath("$.rejections[1].reason").value("Missing email"));
+
+        assertThat(prospectRepository.count()).isEqualTo(3);
+        assertThat(outboxRepository.count()).isEqualTo(3);
+        assertThat(prospectRepository.findOneByEmail("two@localhost")).isPresent();
+    }
+
+    @Test
+    public void importNdjsonProspects() throws Exception {
+        String ndjson = "{\"email\":\"one@localhost\",\"name\":\"One\"}\n" +
+            "{\"email\":\"two@localhost\"}\n" +
+            "{\"email\":\"one@localhost\"}\n" +
+            "{\"email\":42}\n" +
+            "{\"email\":\n";
+
+        restProspectImportMockMvc.perform(post("/api/prospects/import")
+            .contentType(ProspectFileFormat.APPLICATION_NDJSON)
+            .content(ndjson))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.duplicates").value(1))
+            .andExpect(jsonPath("$.rejected").value(2))
+            .andExpect(jsonPath("$.rejections[1].reason").value("Invalid JSON"));
+
+        assertThat(prospectRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void rejectLinesTooLong() throws Exception {
+        StringBuilder csv = new StringBuilder("one@localhost\r\n");
+        for (int i = 0; i < 100000; i++) {
+            csv.append("too-long");
+        }
+        csv.append("@localhost\r\ntwo@localhost");
+
+        restProspectImportMockMvc.perform(post("/api/prospects/import")
+            .contentType(ProspectFileFormat.TEXT_CSV)
+            .content(csv.toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.lines").value(3))
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.rejected").value(1))
+            .andExpect(jsonPath("$.rejections[0].line").value(2))
+            .andExpect(jsonPath("$.rejections[0].reason").value("Line too long"));
+
+        assertThat(prospectRepository.findOneByEmail("two@localhost")).isPresent();
+    }
+
+    @Test
+    public void importProspectsInSeveralBatches() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            csv.append("prospect-").append(i).append("@localhost\n");
+        }
+        // Repeated in a later batch, so only the database can tell
+        csv.append("prospect-0@localhost\n");
+
+        restProspectImportMockMvc.perform(post("/api/prospects/import")
+            .contentType(ProspectFileFormat.TEXT_CSV)
+            .content(csv.toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(5000))
+            .andExpect(jsonPath("$.alreadyRegistered").value(1));
+
+        assertThat(prospectRepository.count()).isEqualTo(5000);
+        assertThat(outboxRepository.count()).isEqualTo(5000);
+    }
+}
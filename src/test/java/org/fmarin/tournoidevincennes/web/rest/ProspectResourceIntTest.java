@@ -1,8 +1,10 @@
 package org.fmarin.tournoidevincennes.web.rest;
 
 import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
 import org.fmarin.tournoidevincennes.domain.Prospect;
 import org.fmarin.tournoidevincennes.service.ProspectService;
+import org.fmarin.tournoidevincennes.service.ProspectWriteBuffer;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.runner.RunWith;
@@ -28,6 +30,12 @@ public class ProspectResourceIntTest {
     @Inject
     private ProspectService mockedProspectService;
 
+    @Inject
+    private ProspectWriteBuffer prospectWriteBuffer;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -44,7 +52,8 @@ public class ProspectResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        ProspectResource prospectResource = new ProspectResource(mockedProspectService);
+        ProspectResource prospectResource = new ProspectResource(mockedProspectService, prospectWriteBuffer,
+            jHipsterProperties);
         this.restProspectMockMvc = MockMvcBuilders.standaloneSetup(prospectResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setMessageConverters(jacksonMessageConverter).build();
@@ -0,0 +1,216 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.domain.Prospect;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+import org.fmarin.tournoidevincennes.service.ProspectService;
+import org.fmarin.tournoidevincennes.service.ProspectWriteBuffer;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the signups of the ProspectResource REST controller, which are written off the servlet threads.
+ *
+ * @see ProspectResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class ProspectSignupIntTest {
+
+    private final Logger log = LoggerFactory.getLogger(ProspectSignupIntTest.class);
+
+    private static final int SIGNUPS = 2000;
+
+    private static final int WORKERS = 8;
+
+    private static final int CLIENTS = 64;
+
+    @Inject
+    private ProspectService prospectService;
+
+    @Inject
+    private ProspectWriteBuffer prospectWriteBuffer;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private ProspectRepository prospectRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    @After
+    public void cleanup() {
+        outboxRepository.deleteAll();
+        prospectRepository.deleteAll();
+    }
+
+    @Test
+    public void createProspect() throws Exception {
+        MockMvc restProspectMockMvc = mockMvc(prospectService, jHipsterProperties);
+
+        MvcResult result = signup(restProspectMockMvc, "signup@localhost");
+
+        restProspectMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.email").value("signup@localhost"));
+        assertThat(prospectRepository.findOneByEmail("signup@localhost")).isPresent();
+
+        result = signup(restProspectMockMvc, "Signup@localhost");
+
+        restProspectMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void createProspectNotWrittenInTime() throws Exception {
+        ProspectService slowService = mock(ProspectService.class);
+        when(slowService.createProspectAsync("slow@localhost")).thenReturn(new CompletableFuture<>());
+        JHipsterProperties properties = new JHipsterProperties();
+        properties.getProspect().getSignup().setTimeoutMs(100);
+        MockMvc restProspectMockMvc = mockMvc(slowService, properties);
+
+        MvcResult result = signup(restProspectMockMvc, "slow@localhost");
+
+        restProspectMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void createProspectWithSaturatedExecutor() throws Exception {
+        ProspectService saturatedService = mock(ProspectService.class);
+        when(saturatedService.createProspectAsync("saturated@localhost"))
+            .thenThrow(new RejectedExecutionException("Saturated"));
+        MockMvc restProspectMockMvc = mockMvc(saturatedService, jHipsterProperties);
+
+        restProspectMockMvc.perform(post("/api/prospects")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(new Prospect().email("saturated@localhost"))))
+            .andExpect(status().isServiceUnavailable());
+    }
+
+    /**
+     * Compares signups holding a servlet worker until they are written, as they used to, with signups handed to
+     * the signup executor. The figures depend on the database and on the machine, so they are only logged, and the
+     * benchmark only runs with {@code -Dbenchmarks=true}.
+     */
+    @Test
+    public void compareBlockingAndAsynchronousSignups() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("benchmarks"));
+        ProspectResource prospectResource = new ProspectResource(prospectService, prospectWriteBuffer,
+            jHipsterProperties);
+
+        String blocking = load("blocking", email -> {
+            Prospect prospect = prospectService.createProspect(email);
+            return CompletableFuture.completedFuture(ResponseEntity.ok(prospect));
+        });
+        assertThat(prospectRepository.count()).isEqualTo(SIGNUPS);
+        cleanup();
+        String asynchronous = load("async", email -> prospectResource.createProspect(new Prospect().email(email)));
+        assertThat(prospectRepository.count()).isEqualTo(SIGNUPS);
+
+        log.info("Blocking: {}", blocking);
+        log.info("Asynchronous: {}", asynchronous);
+    }
+
+    private MockMvc mockMvc(ProspectService service, JHipsterProperties properties) {
+        ProspectResource prospectResource = new ProspectResource(service, prospectWriteBuffer, properties);
+        return MockMvcBuilders.standaloneSetup(prospectResource).build();
+    }
+
+    private MvcResult signup(MockMvc restProspectMockMvc, String email) throws Exception {
+        return restProspectMockMvc.perform(post("/api/prospects")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(new Prospect().email(email))))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    }
+
+    /**
+     * Runs the signups from {@link #CLIENTS} clients, on a pool of {@link #WORKERS} threads standing for the
+     * servlet workers.
+     *
+     * @return the throughput, the latency seen by the clients, and the time the signups held a worker
+     */
+    private String load(String prefix, Signup signup) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        AtomicLong held = new AtomicLong();
+        try {
+            List<Callable<Long>> calls = new ArrayList<>();
+            for (int i = 0; i < SIGNUPS; i++) {
+                String email = prefix + "-" + i + "@localhost";
+                calls.add(() -> {
+                    long start = System.nanoTime();
+                    CompletableFuture<ResponseEntity<Prospect>> response = workers.submit(() -> {
+                        long handled = System.nanoTime();
+                        try {
+                            return signup.create(email);
+                        } finally {
+                            held.addAndGet(System.nanoTime() - handled);
+                        }
+                    }).get();
+                    assertThat(response.get(10, TimeUnit.SECONDS).getStatusCode().is2xxSuccessful()).isTrue();
+                    return System.nanoTime() - start;
+                });
+            }
+            long start = System.nanoTime();
+            List<Future<Long>> results = clients.invokeAll(calls);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long[] latencies = new long[SIGNUPS];
+            for (int i = 0; i < SIGNUPS; i++) {
+                latencies[i] = results.get(i).get();
+            }
+            Arrays.sort(latencies);
+            return String.format("%d signups from %d clients on %d workers, %.0f signups/s, " +
+                    "p50 %.2f ms, p99 %.2f ms, worker held %.3f ms per signup",
+                SIGNUPS, CLIENTS, WORKERS, SIGNUPS / seconds, latencies[SIGNUPS / 2] / 1e6,
+                latencies[SIGNUPS * 99 / 100] / 1e6, held.get() / 1e6 / SIGNUPS);
+        } finally {
+            clients.shutdown();
+            workers.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Signup {
+
+        CompletableFuture<ResponseEntity<Prospect>> create(String email) throws Exception;
+    }
+}
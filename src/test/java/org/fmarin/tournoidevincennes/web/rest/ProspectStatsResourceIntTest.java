@@ -0,0 +1,96 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.repository.MailchimpOutboxRepository;
+import org.fmarin.tournoidevincennes.repository.ProspectRepository;
+import org.fmarin.tournoidevincennes.service.ProspectService;
+import org.fmarin.tournoidevincennes.service.ProspectSignupCounter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.inject.Inject;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the ProspectStatsResource REST controller.
+ *
+ * @see ProspectStatsResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class ProspectStatsResourceIntTest {
+
+    @Inject
+    private ProspectSignupCounter signupCounter;
+
+    @Inject
+    private ProspectService prospectService;
+
+    @Inject
+    private ProspectRepository prospectRepository;
+
+    @Inject
+    private MailchimpOutboxRepository outboxRepository;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    private MockMvc restProspectStatsMockMvc;
+
+    @Before
+    public void setup() {
+        ProspectStatsResource prospectStatsResource = new ProspectStatsResource(signupCounter, jHipsterProperties);
+        this.restProspectStatsMockMvc = MockMvcBuilders.standaloneSetup(prospectStatsResource).build();
+    }
+
+    @After
+    public void cleanup() {
+        outboxRepository.deleteAll();
+        prospectRepository.deleteAll();
+    }
+
+    @Test
+    public void getProspectStats() throws Exception {
+        long registered = signupCounter.getRegistered();
+
+        prospectService.createProspect("stats@localhost");
+        prospectService.createProspects(Arrays.asList("stats-1@localhost", "stats-2@localhost"));
+
+        restProspectStatsMockMvc.perform(get("/api/prospects/stats"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Cache-Control", "max-age=10, public"))
+            .andExpect(jsonPath("$.registered").value((int) registered + 3))
+            .andExpect(jsonPath("$.perMinute.length()").value(ProspectSignupCounter.MINUTES))
+            .andExpect(jsonPath("$.perHour.length()").value(ProspectSignupCounter.HOURS));
+    }
+
+    @Test
+    public void getNotModifiedProspectStats() throws Exception {
+        String eTag = restProspectStatsMockMvc.perform(get("/api/prospects/stats"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+
+        restProspectStatsMockMvc.perform(get("/api/prospects/stats").header("If-None-Match", eTag))
+            .andExpect(status().isNotModified());
+
+        prospectService.createProspect("stats@localhost");
+
+        restProspectStatsMockMvc.perform(get("/api/prospects/stats").header("If-None-Match", eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", not(eTag)));
+    }
+}
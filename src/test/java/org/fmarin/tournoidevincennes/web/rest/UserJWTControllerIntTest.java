@@ -0,0 +1,89 @@
+package org.fmarin.tournoidevincennes.web.rest;
+
+import org.fmarin.tournoidevincennes.TournoidevincennesApp;
+import org.fmarin.tournoidevincennes.config.JHipsterProperties;
+import org.fmarin.tournoidevincennes.security.LoginAttemptService;
+import org.fmarin.tournoidevincennes.security.jwt.TokenProvider;
+import org.fmarin.tournoidevincennes.web.filter.ClientIpResolver;
+import org.fmarin.tournoidevincennes.web.rest.vm.LoginVM;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.inject.Inject;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the UserJWTController REST controller.
+ *
+ * @see UserJWTController
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TournoidevincennesApp.class)
+public class UserJWTControllerIntTest {
+
+    @Inject
+    private TokenProvider tokenProvider;
+
+    @Inject
+    private AuthenticationManager authenticationManager;
+
+    private MockMvc restMvc;
+
+    @Before
+    public void setup() {
+        // Behind one proxy, like the Heroku router, with its own throttling so the other tests are not blocked
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getHttp().setTrustedProxyHops(1);
+        jHipsterProperties.getSecurity().getLoginThrottling().setMaxFailuresPerIp(2);
+        jHipsterProperties.getSecurity().getLoginThrottling().setBaseDelayInSeconds(60);
+
+        UserJWTController userJWTController = new UserJWTController();
+        ReflectionTestUtils.setField(userJWTController, "tokenProvider", tokenProvider);
+        ReflectionTestUtils.setField(userJWTController, "authenticationManager", authenticationManager);
+        ReflectionTestUtils.setField(userJWTController, "loginAttemptService",
+            new LoginAttemptService(jHipsterProperties, new MetricRegistry()));
+        ReflectionTestUtils.setField(userJWTController, "clientIpResolver", new ClientIpResolver(jHipsterProperties));
+        this.restMvc = MockMvcBuilders.standaloneSetup(userJWTController).build();
+    }
+
+    @Test
+    public void testFailedLoginsAreThrottledPerForwardedClient() throws Exception {
+        authenticate("unknown-0", "203.0.113.1").andExpect(status().isUnauthorized());
+        authenticate("unknown-1", "203.0.113.1").andExpect(status().isUnauthorized());
+
+        authenticate("unknown-2", "203.0.113.1")
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", "60"));
+        // Same proxy, same connection address, but another client
+        authenticate("unknown-2", "198.51.100.1").andExpect(status().isUnauthorized());
+        // A client cannot pass as another one by sending the header itself
+        authenticate("unknown-3", "198.51.100.1, 203.0.113.1").andExpect(status().isTooManyRequests());
+    }
+
+    private ResultActions authenticate(String login, String forwardedFor) throws Exception {
+        LoginVM loginVM = new LoginVM();
+        loginVM.setUsername(login);
+        loginVM.setPassword("wrong-password");
+        return restMvc.perform(post("/api/authenticate")
+            .with(request -> {
+                request.setRemoteAddr("10.1.2.3");
+                request.addHeader(ClientIpResolver.X_FORWARDED_FOR_HEADER, forwardedFor);
+                return request;
+            })
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(loginVM)));
+    }
+}
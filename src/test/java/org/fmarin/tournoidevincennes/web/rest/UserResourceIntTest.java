@@ -3,21 +3,42 @@ package org.fmarin.tournoidevincennes.web.rest;
 import org.fmarin.tournoidevincennes.TournoidevincennesApp;
 import org.fmarin.tournoidevincennes.domain.User;
 import org.fmarin.tournoidevincennes.repository.UserRepository;
+import org.fmarin.tournoidevincennes.service.UserSearchIndex;
 import org.fmarin.tournoidevincennes.service.UserService;
+import org.fmarin.tournoidevincennes.web.rest.vm.ManagedUserVM;
 
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.jayway.jsonpath.JsonPath;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -37,8 +58,16 @@ public class UserResourceIntTest {
     @Inject
     private UserService userService;
 
+    @Inject
+    private UserSearchIndex userSearchIndex;
+
+    @Inject
+    private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
+
     private MockMvc restUserMockMvc;
 
+    private final ListAppender<ILoggingEvent> hibernateWarnings = new ListAppender<>();
+
     /**
      * Create a User.
      *
@@ -64,7 +93,117 @@ public class UserResourceIntTest {
         UserResource userResource = new UserResource();
         ReflectionTestUtils.setField(userResource, "userRepository", userRepository);
         ReflectionTestUtils.setField(userResource, "userService", userService);
-        this.restUserMockMvc = MockMvcBuilders.standaloneSetup(userResource).build();
+        ReflectionTestUtils.setField(userResource, "userSearchIndex", userSearchIndex);
+        this.restUserMockMvc = MockMvcBuilders.standaloneSetup(userResource)
+            .setCustomArgumentResolvers(pageableArgumentResolver).build();
+        hibernateWarnings.start();
+        hibernateLogger().addAppender(hibernateWarnings);
+    }
+
+    @After
+    public void tearDown() {
+        hibernateLogger().detachAppender(hibernateWarnings);
+    }
+
+    @Test
+    public void testGetAllUsersIsPagedInTheDatabase() throws Exception {
+        List<String> logins = sortedLogins();
+
+        restUserMockMvc.perform(get("/api/users?page=1&size=2&sort=login,asc")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", Integer.toString(logins.size())))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].login").value(logins.get(2)))
+                .andExpect(jsonPath("$[1].login").value(logins.get(3)))
+                .andExpect(jsonPath("$[0].authorities").isNotEmpty());
+
+        assertThatNoPagingWasInMemory();
+    }
+
+    @Test
+    public void testGetUsersAfterCursor() throws Exception {
+        List<String> logins = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            MvcResult result = restUserMockMvc.perform(get("/api/users").param("cursor", cursor).param("size", "2")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            List<String> page = JsonPath.read(result.getResponse().getContentAsString(), "$[*].login");
+            assertThat(page.size()).isLessThanOrEqualTo(2);
+            logins.addAll(page);
+            cursor = nextCursor(result.getResponse().getHeader(HttpHeaders.LINK));
+        }
+
+        assertThat(logins).isEqualTo(sortedLogins());
+        assertThatNoPagingWasInMemory();
+    }
+
+    @Test
+    public void testGetUsersAfterInvalidCursor() throws Exception {
+        restUserMockMvc.perform(get("/api/users").param("cursor", "not a cursor")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<String> sortedLogins() {
+        return userRepository.findAll(new Sort("login")).stream().map(User::getLogin).collect(Collectors.toList());
+    }
+
+    private static String nextCursor(String link) {
+        Matcher next = Pattern.compile("<([^>]*)>; rel=\"next\"").matcher(link);
+        return next.find() ? UriComponentsBuilder.fromUriString(next.group(1)).build().getQueryParams().getFirst("cursor") : null;
+    }
+
+    private static Logger hibernateLogger() {
+        return (Logger) LoggerFactory.getLogger("org.hibernate");
+    }
+
+    /**
+     * Hibernate warns with HHH000104 when it pages a query fetching a collection in memory, after reading all its rows.
+     */
+    private void assertThatNoPagingWasInMemory() {
+        assertThat(hibernateWarnings.list).extracting(ILoggingEvent::getFormattedMessage)
+            .filteredOn(message -> message.contains("HHH000104")).isEmpty();
+    }
+
+    @Test
+    public void testSearchUsers() throws Exception {
+        restUserMockMvc.perform(get("/api/users").param("query", "ADM")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].login").value("admin"));
+
+        User user = userService.createUser(new ManagedUserVM(null, "searched", null, "Jean", "De Searchable",
+            "jean.searched@localhost", true, "fr", Collections.emptySet(), null, null, null, null));
+        try {
+            restUserMockMvc.perform(get("/api/users").param("query", "searcha")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(1))
+                    .andExpect(jsonPath("$[0].id").value(user.getId().intValue()))
+                    .andExpect(jsonPath("$[0].email").value("jean.searched@localhost"));
+            restUserMockMvc.perform(get("/api/users").param("query", "jean.s")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$[0].login").value("searched"));
+
+            userService.updateUser(user.getId(), "searched", "Jean", "Renamed", "jean.searched@localhost", true,
+                "fr", Collections.emptySet());
+
+            restUserMockMvc.perform(get("/api/users").param("query", "searcha")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$.length()").value(0));
+            restUserMockMvc.perform(get("/api/users").param("query", "renamed")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$[0].login").value("searched"));
+        } finally {
+            userService.deleteUser("searched");
+        }
+
+        restUserMockMvc.perform(get("/api/users").param("query", "renamed")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(0));
     }
 
     @Test